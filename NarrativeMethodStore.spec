@@ -17,6 +17,11 @@ module NarrativeMethodStore {
     using, and what commit it is on */
     funcdef status() returns (Status);
 
+    /* Returns version of the catalog (categories, methods, apps and types). It's changed
+    every time spec repository commit or any registered repo is changed, so clients could
+    skip reloading the catalog while the version stays the same. */
+    funcdef get_catalog_version() returns (string);
+
 
     /* @range [0,1] */
     typedef int boolean;
@@ -888,13 +893,54 @@ module NarrativeMethodStore {
 
     /****************************** Dynamic Repos API *******************************/
 
+    /*
+        git_url - url of git repository of the module;
+        git_commit_hash - optional commit to register (HEAD of default branch by default);
+        async - optional flag, if set to 1 registration runs in background and the method
+            returns right away, get_registration_status reports progress of registration.
+    */
     typedef structure {
         string git_url;
         string git_commit_hash;
+        boolean async;
     } RegisterRepoParams;
 
-    funcdef register_repo(RegisterRepoParams params) returns () authentication
-        required;
+    /* Registers the module repository and returns id of registration which can be
+    passed to get_registration_status. Unless async flag is set the method returns after
+    registration is finished. */
+    funcdef register_repo(RegisterRepoParams params) returns (string registration_id)
+        authentication required;
+
+    typedef structure {
+        string registration_id;
+    } GetRegistrationStatusParams;
+
+    /*
+        Status of repository registration.
+        module_name - name of the module, it's known after repository is cloned;
+        state - one of 'queued', 'cloning', 'parsing', 'saving', 'refreshing', 'done' or
+            'error';
+        queued_time, start_time, finish_time - times in milliseconds since epoch, start
+            and finish times are not defined until registration is started/finished;
+        version - version of registered repo, defined if state is 'done';
+        error - error message, defined if state is 'error'.
+    */
+    typedef structure {
+        string registration_id;
+        string git_url;
+        string git_commit_hash;
+        string user_id;
+        string module_name;
+        string state;
+        int queued_time;
+        int start_time;
+        int finish_time;
+        int version;
+        string error;
+    } RegistrationStatus;
+
+    funcdef get_registration_status(GetRegistrationStatusParams params) returns
+        (RegistrationStatus) authentication required;
 
     typedef structure {
         string module_name;
@@ -261,6 +261,77 @@ using, and what commit it is on
  
 
 
+=head2 get_catalog_version
+
+  $return = $obj->get_catalog_version()
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$return is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$return is a string
+
+
+=end text
+
+=item Description
+
+Returns version of the catalog (categories, methods, apps and types). It's changed
+every time spec repository commit or any registered repo is changed, so clients could
+skip reloading the catalog while the version stays the same.
+
+=back
+
+=cut
+
+ sub get_catalog_version
+{
+    my($self, @args) = @_;
+
+# Authentication: none
+
+    if ((my $n = @args) != 0)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function get_catalog_version (received $n, expecting 0)");
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "NarrativeMethodStore.get_catalog_version",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'get_catalog_version',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method get_catalog_version",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'get_catalog_version',
+				       );
+    }
+}
+ 
+
+
 =head2 list_categories
 
   $categories, $methods, $apps, $types = $obj->list_categories($params)
@@ -5144,7 +5215,7 @@ LoadWidgetParams is a reference to a hash where the following keys are defined:
 
 =head2 register_repo
 
-  $obj->register_repo($params)
+  $registration_id = $obj->register_repo($params)
 
 =over 4
 
@@ -5154,9 +5225,12 @@ LoadWidgetParams is a reference to a hash where the following keys are defined:
 
 <pre>
 $params is a NarrativeMethodStore.RegisterRepoParams
+$registration_id is a string
 RegisterRepoParams is a reference to a hash where the following keys are defined:
 	git_url has a value which is a string
 	git_commit_hash has a value which is a string
+	async has a value which is a NarrativeMethodStore.boolean
+boolean is an int
 
 </pre>
 
@@ -5165,16 +5239,21 @@ RegisterRepoParams is a reference to a hash where the following keys are defined
 =begin text
 
 $params is a NarrativeMethodStore.RegisterRepoParams
+$registration_id is a string
 RegisterRepoParams is a reference to a hash where the following keys are defined:
 	git_url has a value which is a string
 	git_commit_hash has a value which is a string
+	async has a value which is a NarrativeMethodStore.boolean
+boolean is an int
 
 
 =end text
 
 =item Description
 
-
+Registers the module repository and returns id of registration which can be
+passed to get_registration_status. Unless async flag is set the method returns after
+registration is finished.
 
 =back
 
@@ -5216,7 +5295,7 @@ RegisterRepoParams is a reference to a hash where the following keys are defined
 					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
 					      );
 	} else {
-	    return;
+	    return wantarray ? @{$result->result} : $result->result->[0];
 	}
     } else {
         Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method register_repo",
@@ -5228,6 +5307,116 @@ RegisterRepoParams is a reference to a hash where the following keys are defined
  
 
 
+=head2 get_registration_status
+
+  $return = $obj->get_registration_status($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a NarrativeMethodStore.GetRegistrationStatusParams
+$return is a NarrativeMethodStore.RegistrationStatus
+GetRegistrationStatusParams is a reference to a hash where the following keys are defined:
+	registration_id has a value which is a string
+RegistrationStatus is a reference to a hash where the following keys are defined:
+	registration_id has a value which is a string
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+	user_id has a value which is a string
+	module_name has a value which is a string
+	state has a value which is a string
+	queued_time has a value which is an int
+	start_time has a value which is an int
+	finish_time has a value which is an int
+	version has a value which is an int
+	error has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a NarrativeMethodStore.GetRegistrationStatusParams
+$return is a NarrativeMethodStore.RegistrationStatus
+GetRegistrationStatusParams is a reference to a hash where the following keys are defined:
+	registration_id has a value which is a string
+RegistrationStatus is a reference to a hash where the following keys are defined:
+	registration_id has a value which is a string
+	git_url has a value which is a string
+	git_commit_hash has a value which is a string
+	user_id has a value which is a string
+	module_name has a value which is a string
+	state has a value which is a string
+	queued_time has a value which is an int
+	start_time has a value which is an int
+	finish_time has a value which is an int
+	version has a value which is an int
+	error has a value which is a string
+
+
+=end text
+
+=item Description
+
+
+
+=back
+
+=cut
+
+ sub get_registration_status
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function get_registration_status (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to get_registration_status:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'get_registration_status');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "NarrativeMethodStore.get_registration_status",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'get_registration_status',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method get_registration_status",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'get_registration_status',
+				       );
+    }
+}
+ 
+
+
 =head2 disable_repo
 
   $obj->disable_repo($params)
@@ -7986,7 +8175,88 @@ tag has a value which is a string
 
 =item Description
 
-***************************** Dynamic Repos API ******************************
+git_url - url of git repository of the module;
+git_commit_hash - optional commit to register (HEAD of default branch by default);
+async - optional flag, if set to 1 registration runs in background and the method
+    returns right away, get_registration_status reports progress of registration.
+
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+git_commit_hash has a value which is a string
+async has a value which is a NarrativeMethodStore.boolean
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+git_url has a value which is a string
+git_commit_hash has a value which is a string
+async has a value which is a NarrativeMethodStore.boolean
+
+
+=end text
+
+=back
+
+
+
+=head2 GetRegistrationStatusParams
+
+=over 4
+
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+registration_id has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+registration_id has a value which is a string
+
+
+=end text
+
+=back
+
+
+
+=head2 RegistrationStatus
+
+=over 4
+
+
+
+=item Description
+
+Status of repository registration.
+module_name - name of the module, it's known after repository is cloned;
+state - one of 'queued', 'cloning', 'parsing', 'saving', 'refreshing', 'done' or
+    'error';
+queued_time, start_time, finish_time - times in milliseconds since epoch, start
+    and finish times are not defined until registration is started/finished;
+version - version of registered repo, defined if state is 'done';
+error - error message, defined if state is 'error'.
+
 
 
 =item Definition
@@ -7995,8 +8265,17 @@ tag has a value which is a string
 
 <pre>
 a reference to a hash where the following keys are defined:
+registration_id has a value which is a string
 git_url has a value which is a string
 git_commit_hash has a value which is a string
+user_id has a value which is a string
+module_name has a value which is a string
+state has a value which is a string
+queued_time has a value which is an int
+start_time has a value which is an int
+finish_time has a value which is an int
+version has a value which is an int
+error has a value which is a string
 
 </pre>
 
@@ -8005,8 +8284,17 @@ git_commit_hash has a value which is a string
 =begin text
 
 a reference to a hash where the following keys are defined:
+registration_id has a value which is a string
 git_url has a value which is a string
 git_commit_hash has a value which is a string
+user_id has a value which is a string
+module_name has a value which is a string
+state has a value which is a string
+queued_time has a value which is an int
+start_time has a value which is an int
+finish_time has a value which is an int
+version has a value which is an int
+error has a value which is a string
 
 
 =end text
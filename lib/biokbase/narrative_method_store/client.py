@@ -53,6 +53,16 @@ class NarrativeMethodStore(object):
         return self._client.call_method('NarrativeMethodStore.status',
                                         [], self._service_ver, context)
 
+    def get_catalog_version(self, context=None):
+        """
+        Returns version of the catalog (categories, methods, apps and types). It's changed
+        every time spec repository commit or any registered repo is changed, so clients could
+        skip reloading the catalog while the version stays the same.
+        :returns: instance of String
+        """
+        return self._client.call_method('NarrativeMethodStore.get_catalog_version',
+                                        [], self._service_ver, context)
+
     def list_categories(self, params, context=None):
         """
         :param params: instance of type "ListCategoriesParams" (List all the
@@ -2494,14 +2504,44 @@ class NarrativeMethodStore(object):
 
     def register_repo(self, params, context=None):
         """
-        :param params: instance of type "RegisterRepoParams"
-           (***************************** Dynamic Repos API
-           ******************************) -> structure: parameter "git_url"
-           of String, parameter "git_commit_hash" of String
+        Registers the module repository and returns id of registration which
+           can be passed to get_registration_status. Unless async flag is set
+           the method returns after registration is finished.
+        :param params: instance of type "RegisterRepoParams" (git_url - url of
+           git repository of the module; git_commit_hash - optional commit to
+           register (HEAD of default branch by default); async - optional flag,
+           if set to 1 registration runs in background and the method returns
+           right away, get_registration_status reports progress of
+           registration.) -> structure: parameter "git_url" of String,
+           parameter "git_commit_hash" of String, parameter "async" of type
+           "boolean" (@range [0,1])
+        :returns: instance of String
         """
         return self._client.call_method('NarrativeMethodStore.register_repo',
                                         [params], self._service_ver, context)
 
+    def get_registration_status(self, params, context=None):
+        """
+        :param params: instance of type "GetRegistrationStatusParams" ->
+           structure: parameter "registration_id" of String
+        :returns: instance of type "RegistrationStatus" (Status of repository
+           registration. module_name - name of the module, it's known after
+           repository is cloned; state - one of 'queued', 'cloning', 'parsing',
+           'saving', 'refreshing', 'done' or 'error'; queued_time, start_time,
+           finish_time - times in milliseconds since epoch, start and finish
+           times are not defined until registration is started/finished;
+           version - version of registered repo, defined if state is 'done';
+           error - error message, defined if state is 'error'.) -> structure:
+           parameter "registration_id" of String, parameter "git_url" of
+           String, parameter "git_commit_hash" of String, parameter "user_id"
+           of String, parameter "module_name" of String, parameter "state" of
+           String, parameter "queued_time" of Long, parameter "start_time" of
+           Long, parameter "finish_time" of Long, parameter "version" of Long,
+           parameter "error" of String
+        """
+        return self._client.call_method('NarrativeMethodStore.get_registration_status',
+                                        [params], self._service_ver, context)
+
     def disable_repo(self, params, context=None):
         """
         :param params: instance of type "DisableRepoParams" -> structure:
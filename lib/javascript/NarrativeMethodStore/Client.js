@@ -44,6 +44,17 @@ function NarrativeMethodStore(url, auth, auth_cb, timeout, async_job_check_time_
             [], 1, _callback, _errorCallback);
     };
  
+     this.get_catalog_version = function (_callback, _errorCallback) {
+        if (_callback && typeof _callback !== 'function')
+            throw 'Argument _callback must be a function if defined';
+        if (_errorCallback && typeof _errorCallback !== 'function')
+            throw 'Argument _errorCallback must be a function if defined';
+        if (typeof arguments === 'function' && arguments.length > 0+2)
+            throw 'Too many arguments ('+arguments.length+' instead of '+(0+2)+')';
+        return json_call_ajax(_url, "NarrativeMethodStore.get_catalog_version",
+            [], 1, _callback, _errorCallback);
+    };
+ 
      this.list_categories = function (params, _callback, _errorCallback) {
         if (typeof params === 'function')
             throw 'Argument params can not be a function';
@@ -338,7 +349,20 @@ function NarrativeMethodStore(url, auth, auth_cb, timeout, async_job_check_time_
         if (typeof arguments === 'function' && arguments.length > 1+2)
             throw 'Too many arguments ('+arguments.length+' instead of '+(1+2)+')';
         return json_call_ajax(_url, "NarrativeMethodStore.register_repo",
-            [params], 0, _callback, _errorCallback);
+            [params], 1, _callback, _errorCallback);
+    };
+ 
+     this.get_registration_status = function (params, _callback, _errorCallback) {
+        if (typeof params === 'function')
+            throw 'Argument params can not be a function';
+        if (_callback && typeof _callback !== 'function')
+            throw 'Argument _callback must be a function if defined';
+        if (_errorCallback && typeof _errorCallback !== 'function')
+            throw 'Argument _errorCallback must be a function if defined';
+        if (typeof arguments === 'function' && arguments.length > 1+2)
+            throw 'Too many arguments ('+arguments.length+' instead of '+(1+2)+')';
+        return json_call_ajax(_url, "NarrativeMethodStore.get_registration_status",
+            [params], 1, _callback, _errorCallback);
     };
  
      this.disable_repo = function (params, _callback, _errorCallback) {
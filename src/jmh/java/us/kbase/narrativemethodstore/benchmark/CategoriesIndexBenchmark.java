@@ -0,0 +1,112 @@
+package us.kbase.narrativemethodstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.db.CategoriesListing;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+
+/**
+ * Rebuild of categories index over synthetic spec-repo of given number of methods and
+ * building/serialization of list_categories response from the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CategoriesIndexBenchmark {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // background refresh must not interfere with measurements
+    private static final int REFRESH_MINUTES = 24 * 60;
+
+    @Param({"100", "1000"})
+    public int methodCount;
+
+    @Param({"1", "4"})
+    public int indexLoaderThreads;
+
+    private File workDir;
+    private LocalGitDB db;
+    private NarrativeCategoriesIndex index;
+
+    @Setup
+    public void setup() throws Exception {
+        workDir = new File(FileUtils.getTempDirectory(), "nms_jmh_" + System.nanoTime());
+        db = new LocalGitDB(new URL("https://github.com/kbase/narrative_method_specs"), "master",
+                new File(workDir, "specs"), REFRESH_MINUTES, 1000, null, new File(workDir, "temp"),
+                null, null, indexLoaderThreads, false, new SyntheticSpecRepo(methodCount));
+        index = db.getCategoriesIndex();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workDir);
+    }
+
+    @Benchmark
+    public NarrativeCategoriesIndex reloadCategoriesIndex() throws Exception {
+        db.reloadAll();
+        return db.getCategoriesIndex();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, MethodBriefInfo> getMethods() {
+        return index.getMethods(null);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<String, MethodBriefInfo> getMethodsOfReleaseTag() {
+        return index.getMethods(RepoTag.release.name());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long serializeListCategories() throws Exception {
+        // listing is serialized as the same array of four maps list_categories returns
+        CategoriesListing listing = new CategoriesListing(index, null, true, true, true);
+        CountingOutputStream os = new CountingOutputStream();
+        mapper.writeValue(os, listing);
+        return os.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package us.kbase.narrativemethodstore.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.db.FileLookup;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.db.github.YamlUtils;
+
+/**
+ * Parsing of spec.json/display.yaml of one method, the main part of index rebuild.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodParsingBenchmark {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private String specText;
+    private String displayText;
+    private JsonNode spec;
+    private Map<String, Object> display;
+    private FileLookup lookup;
+
+    @Setup
+    public void setup() throws Exception {
+        specText = SyntheticSpecRepo.loadTestFile("spec.json");
+        displayText = SyntheticSpecRepo.loadTestFile("display.yaml");
+        spec = mapper.readTree(specText);
+        display = YamlUtils.getDocumentAsYamlMap(displayText);
+        lookup = new FileLookup() {
+            @Override
+            public String loadFileContent(String fileName) {
+                return null;
+            }
+            @Override
+            public boolean fileExists(String fileName) {
+                return false;
+            }
+        };
+    }
+
+    @Benchmark
+    public Map<String, Object> parseDisplayYaml() throws Exception {
+        return YamlUtils.getDocumentAsYamlMap(displayText);
+    }
+
+    @Benchmark
+    public JsonNode parseSpecJson() throws Exception {
+        return mapper.readTree(specText);
+    }
+
+    @Benchmark
+    public NarrativeMethodData buildMethodData() throws Exception {
+        return new NarrativeMethodData("generate_heatmaps", spec, display, lookup, null);
+    }
+
+    @Benchmark
+    public NarrativeMethodData parseAndBuildMethodData() throws Exception {
+        return new NarrativeMethodData("generate_heatmaps", mapper.readTree(specText),
+                YamlUtils.getDocumentAsYamlMap(displayText), lookup, null);
+    }
+}
@@ -0,0 +1,58 @@
+package us.kbase.narrativemethodstore.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.kbase.narrativemethodstore.db.mongo.MongoUtils;
+
+/**
+ * Hex encoding and hashing of files stored in Mongo (specs, displays, screenshots).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoUtilsBenchmark {
+    @Param({"4096", "1048576"})
+    public int size;
+
+    private byte[] data;
+    private String hex;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        hex = MongoUtils.byteToHex(data);
+    }
+
+    @Benchmark
+    public String streamToHex() throws Exception {
+        return MongoUtils.streamToHex(new ByteArrayInputStream(data));
+    }
+
+    @Benchmark
+    public byte[] hexToBytes() {
+        return MongoUtils.hexToBytes(hex);
+    }
+
+    @Benchmark
+    public String getMD5() throws Exception {
+        return MongoUtils.getMD5(new ByteArrayInputStream(data));
+    }
+}
@@ -0,0 +1,93 @@
+package us.kbase.narrativemethodstore.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.commons.io.FileUtils;
+
+import us.kbase.narrativemethodstore.db.github.GitBackend;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Spec-repo with given number of copies of test/data/validation method spread over a few
+ * categories. It's "cloned" by {@link #cloneBranch(URL, String, File)} so that LocalGitDB
+ * can be created without git and network.
+ */
+public class SyntheticSpecRepo implements GitBackend {
+    public static final File TEST_METHOD_DIR = new File("test/data/validation/methods/generate_heatmaps");
+    public static final String COMMIT_HASH = "0123456789012345678901234567890123456789";
+    public static final int CATEGORY_COUNT = 10;
+
+    private final int methodCount;
+
+    public SyntheticSpecRepo(int methodCount) {
+        this.methodCount = methodCount;
+    }
+
+    public static String loadTestFile(String fileName) throws IOException {
+        return FileUtils.readFileToString(new File(TEST_METHOD_DIR, fileName), "UTF-8");
+    }
+
+    @Override
+    public String cloneBranch(URL gitRepoUrl, String gitBranch, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            String spec = loadTestFile("spec.json");
+            String display = loadTestFile("display.yaml");
+            for (int i = 0; i < CATEGORY_COUNT; i++) {
+                File catDir = new File(gitLocalPath, "categories/category_" + i);
+                FileUtils.writeStringToFile(new File(catDir, "spec.json"), "{\"name\": \"Category " +
+                        i + "\", \"ver\": \"1.0.0\", \"tooltip\": \"Category " + i + "\", " +
+                        "\"parent\": []}", "UTF-8");
+            }
+            for (int i = 0; i < methodCount; i++) {
+                File methodDir = new File(gitLocalPath, "methods/method_" + i);
+                String methodSpec = spec.replace("\"categories\" : [\"active\"]",
+                        "\"categories\" : [\"category_" + (i % CATEGORY_COUNT) + "\"]");
+                FileUtils.writeStringToFile(new File(methodDir, "spec.json"), methodSpec, "UTF-8");
+                FileUtils.writeStringToFile(new File(methodDir, "display.yaml"), display, "UTF-8");
+            }
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreInitializationException(
+                    "Error generating synthetic spec-repo: " + ex.getMessage(), ex);
+        }
+        return "Synthetic spec-repo with " + methodCount + " methods is generated in " + gitLocalPath;
+    }
+
+    @Override
+    public String pull(File gitLocalPath, URL gitRepoUrl) {
+        return "Already up-to-date.";
+    }
+
+    @Override
+    public String fetch(File gitLocalPath, URL gitRepoUrl, String gitBranch) {
+        return "";
+    }
+
+    @Override
+    public String mergeFetchHead(File gitLocalPath, URL gitRepoUrl) {
+        return "Already up-to-date.";
+    }
+
+    @Override
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl) {
+        return COMMIT_HASH;
+    }
+
+    @Override
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl) {
+        return null;
+    }
+
+    @Override
+    public String getCommitInfo(File gitLocalPath, URL gitRepoUrl) {
+        return "commit " + COMMIT_HASH;
+    }
+
+    @Override
+    public String listTree(File gitLocalPath, URL gitRepoUrl, String dirName) {
+        // no tree hashes, LocalGitDB falls back to file fingerprints
+        return "";
+    }
+}
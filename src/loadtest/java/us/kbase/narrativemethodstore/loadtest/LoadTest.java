@@ -0,0 +1,461 @@
+package us.kbase.narrativemethodstore.loadtest;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.ini4j.Ini;
+import org.ini4j.Profile.Section;
+
+import us.kbase.common.service.JsonServerSyslog;
+import us.kbase.narrativemethodstore.GetMethodParams;
+import us.kbase.narrativemethodstore.ImageServlet;
+import us.kbase.narrativemethodstore.ListCategoriesParams;
+import us.kbase.narrativemethodstore.NarrativeMethodStoreClient;
+import us.kbase.narrativemethodstore.NarrativeMethodStoreServer;
+import us.kbase.test.narrativemethodstore.db.mongo.MongoDBHelper;
+
+/**
+ * Load generator replaying Narrative-like mix of requests against local server. Server is
+ * started in this JVM (RPC on /rpc, images on /img) with synthetic spec-repo and local
+ * mongod (the same way as FullServerTest does), so heap and GC figures reported at the end
+ * are the ones of the server under given number of concurrent clients.
+ * <p>
+ * Options are given as key=value arguments (see {@link #DEFAULT_OPTIONS}), test.temp-dir,
+ * test.mongo-exe-path and auth settings are read from test.cfg. Mix is either a list of
+ * operation:weight pairs or a file with one operation name per line (for instance method
+ * names extracted from server log), in the latter case weights are numbers of lines.
+ * Registrations are done directly through LocalGitDB since register_repo RPC requires
+ * admin token.
+ */
+public class LoadTest {
+    public static final String OP_LIST_CATEGORIES = "list_categories";
+    public static final String OP_GET_METHOD_SPEC = "get_method_spec";
+    public static final String OP_GET_METHOD_FULL_INFO = "get_method_full_info";
+    public static final String OP_IMG = "img";
+    public static final String OP_REGISTER_REPO = "register_repo";
+
+    public static final Map<String, String> DEFAULT_OPTIONS = new LinkedHashMap<String, String>();
+    static {
+        // number of methods in synthetic spec-repo
+        DEFAULT_OPTIONS.put("methods", "1000");
+        // number of concurrent clients
+        DEFAULT_OPTIONS.put("clients", "16");
+        // max number of jetty threads, the same as server-threads of deployment config
+        DEFAULT_OPTIONS.put("server-threads", "20");
+        DEFAULT_OPTIONS.put("warmup-sec", "30");
+        DEFAULT_OPTIONS.put("duration-sec", "120");
+        // number of method ids in one get_method_spec/get_method_full_info call
+        DEFAULT_OPTIONS.put("ids-per-call", "5");
+        DEFAULT_OPTIONS.put("mix", OP_LIST_CATEGORIES + ":30," + OP_GET_METHOD_SPEC + ":30," +
+                OP_GET_METHOD_FULL_INFO + ":20," + OP_IMG + ":19," + OP_REGISTER_REPO + ":1");
+        DEFAULT_OPTIONS.put("cache-size", "5000");
+        DEFAULT_OPTIONS.put("cache-memory-mb", "0");
+        DEFAULT_OPTIONS.put("cache-compact", "false");
+        DEFAULT_OPTIONS.put("index-loader-threads", "4");
+    }
+
+    private static final String ADMIN_USER = "load_test_admin";
+    private static final String DB_NAME = "method_store_load_test_temp_db";
+
+    private final Map<String, String> opts;
+    private final List<String> methodIds;
+    private final String[] mixOps;
+    private final int[] mixCumulativeWeights;
+    private URL rpcUrl;
+    private URL imgUrl;
+    private String moduleRepoUrl;
+
+    public LoadTest(Map<String, String> opts) throws Exception {
+        this.opts = opts;
+        this.methodIds = SyntheticRepos.getMethodIds(intOpt("methods"));
+        Map<String, Integer> mix = parseMix(opts.get("mix"));
+        this.mixOps = mix.keySet().toArray(new String[mix.size()]);
+        this.mixCumulativeWeights = new int[mixOps.length];
+        int sum = 0;
+        for (int i = 0; i < mixOps.length; i++) {
+            sum += mix.get(mixOps[i]);
+            mixCumulativeWeights[i] = sum;
+        }
+        if (sum <= 0)
+            throw new IllegalArgumentException("Mix of operations is empty: " + opts.get("mix"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<String, String>(DEFAULT_OPTIONS);
+        for (String arg : args) {
+            int pos = arg.indexOf('=');
+            if (pos <= 0 || !DEFAULT_OPTIONS.containsKey(arg.substring(0, pos)))
+                throw new IllegalArgumentException("Unexpected argument: " + arg +
+                        ", supported options: " + DEFAULT_OPTIONS.keySet());
+            opts.put(arg.substring(0, pos), arg.substring(pos + 1));
+        }
+        System.out.println("Load test options: " + opts);
+        new LoadTest(opts).run();
+        System.exit(0);
+    }
+
+    private int intOpt(String key) {
+        return Integer.parseInt(opts.get(key).trim());
+    }
+
+    static Map<String, Integer> parseMix(String mix) throws Exception {
+        Map<String, Integer> ret = new LinkedHashMap<String, Integer>();
+        List<String> known = Arrays.asList(OP_LIST_CATEGORIES, OP_GET_METHOD_SPEC,
+                OP_GET_METHOD_FULL_INFO, OP_IMG, OP_REGISTER_REPO);
+        File mixFile = new File(mix);
+        if (mixFile.isFile()) {
+            for (String line : FileUtils.readLines(mixFile, "UTF-8")) {
+                String op = line.trim();
+                // method names may come with service prefix: NarrativeMethodStore.list_categories
+                op = op.substring(op.lastIndexOf('.') + 1);
+                if (!known.contains(op))
+                    continue;
+                Integer prev = ret.get(op);
+                ret.put(op, prev == null ? 1 : (prev + 1));
+            }
+            return ret;
+        }
+        for (String item : mix.split(",")) {
+            String[] parts = item.trim().split(":");
+            if (parts.length != 2 || !known.contains(parts[0].trim()))
+                throw new IllegalArgumentException("Wrong mix item [" + item + "], expected " +
+                        "<operation>:<weight> where operation is one of " + known);
+            ret.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return ret;
+    }
+
+    public void run() throws Exception {
+        final String testcfg = System.getProperty("test.cfg");
+        Section sec = new Ini(new File(testcfg)).get("NarrativeMethodStoreTest");
+        if (sec == null)
+            throw new IllegalStateException("Missing section NarrativeMethodStoreTest in " +
+                    "config file " + testcfg);
+        String tempDirName = sec.get("test.temp-dir");
+        File tempDir = new File(tempDirName, "load_test");
+        tempDir.mkdirs();
+        log("generating spec-repo with " + methodIds.size() + " methods");
+        File specRepo = SyntheticRepos.createSpecRepo(tempDir, methodIds.size());
+        moduleRepoUrl = SyntheticRepos.createModuleRepo(tempDir).toURI().toURL().toString();
+        MongoDBHelper dbHelper = new MongoDBHelper("narrative_method_load_test",
+                tempDir.getAbsolutePath());
+        dbHelper.startup(sec.get("test.mongo-exe-path"));
+        Server jettyServer = null;
+        try {
+            Ini ini = new Ini();
+            Section ws = ini.add("NarrativeMethodStore");
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_GIT_REPO, specRepo.toURI().toURL().toString());
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_GIT_BRANCH, SyntheticRepos.SPEC_REPO_BRANCH);
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_GIT_LOCAL_DIR,
+                    new File(tempDir, "narrative_method_specs").getAbsolutePath());
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_GIT_REFRESH_RATE, "2");
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_CACHE_SIZE, opts.get("cache-size"));
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_CACHE_MEMORY, opts.get("cache-memory-mb"));
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_CACHE_COMPACT, opts.get("cache-compact"));
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_INDEX_LOADER_THREADS,
+                    opts.get("index-loader-threads"));
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_TEMP_DIR, dbHelper.getWorkDir().getAbsolutePath());
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_MONGO_HOST, "localhost:" + dbHelper.getMongoPort());
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_MONGO_DBNAME, DB_NAME);
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_ADMIN_USERS, ADMIN_USER);
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_ENDPOINT_HOST, "https://ci.kbase.us");
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_ENDPOINT_BASE, "/services");
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_DEFAULT_TAG, "release");
+            ws.add(NarrativeMethodStoreServer.CFG_PROP_AUTH_SERVICE_URL, sec.get("test.auth-service-url"));
+            String authInsecure = sec.get("test.auth-service-url-allow-insecure");
+            if (authInsecure != null)
+                ws.add(NarrativeMethodStoreServer.CFG_PROP_AUTH_INSECURE, authInsecure);
+            File iniFile = new File(tempDir, "deploy.cfg");
+            ini.store(iniFile);
+            System.setProperty("KB_DEPLOYMENT_CONFIG", iniFile.getAbsolutePath());
+            System.setProperty("KB_SERVICE_NAME", "NarrativeMethodStore");
+            JsonServerSyslog.setStaticUseSyslog(false);
+            JsonServerSyslog.setStaticMlogFile(new File(tempDir, "service.log").getAbsolutePath());
+
+            jettyServer = new Server(0);
+            jettyServer.setThreadPool(new QueuedThreadPool(intOpt("server-threads")));
+            ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+            context.setContextPath("/");
+            jettyServer.setHandler(context);
+            context.addServlet(new ServletHolder(new NarrativeMethodStoreServer()), "/rpc");
+            context.addServlet(new ServletHolder(new ImageServlet()), "/img");
+            jettyServer.start();
+            int port = jettyServer.getConnectors()[0].getLocalPort();
+            rpcUrl = new URL("http://localhost:" + port + "/rpc");
+            imgUrl = new URL("http://localhost:" + port + "/img");
+            log("server is listening on port " + port);
+            // module is registered before the run so dynamic methods take part in listings
+            NarrativeMethodStoreServer.getLocalGitDB().registerRepo(ADMIN_USER, moduleRepoUrl, null);
+            runClients();
+        } finally {
+            if (jettyServer != null)
+                jettyServer.stop();
+            dbHelper.shutdown(true);
+            FileUtils.deleteDirectory(tempDir);
+        }
+    }
+
+    private void runClients() throws Exception {
+        final int clients = intOpt("clients");
+        final long now = System.nanoTime();
+        final long measureStart = now + intOpt("warmup-sec") * 1000000000L;
+        final long end = measureStart + intOpt("duration-sec") * 1000000000L;
+        final List<Map<String, Samples>> results = new ArrayList<Map<String, Samples>>();
+        final Map<String, String> firstErrors = new LinkedHashMap<String, String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < clients; i++) {
+            final Map<String, Samples> samples = new LinkedHashMap<String, Samples>();
+            for (String op : mixOps)
+                samples.put(op, new Samples());
+            results.add(samples);
+            final Random rnd = new Random(i);
+            Thread t = new Thread("load-test-client-" + i) {
+                @Override
+                public void run() {
+                    NarrativeMethodStoreClient client = new NarrativeMethodStoreClient(rpcUrl);
+                    while (true) {
+                        String op = nextOp(rnd);
+                        long start = System.nanoTime();
+                        if (start >= end)
+                            break;
+                        boolean error = false;
+                        try {
+                            execute(client, op, rnd);
+                        } catch (Exception ex) {
+                            error = true;
+                            synchronized (firstErrors) {
+                                if (!firstErrors.containsKey(op))
+                                    firstErrors.put(op, ex.getClass().getSimpleName() + ": " +
+                                            ex.getMessage());
+                            }
+                        }
+                        if (start >= measureStart)
+                            samples.get(op).add(System.nanoTime() - start, error);
+                    }
+                }
+            };
+            threads.add(t);
+        }
+        HeapSampler heap = new HeapSampler();
+        log("starting " + clients + " clients, warm-up " + intOpt("warmup-sec") + " sec");
+        for (Thread t : threads)
+            t.start();
+        long sleepMs = (measureStart - System.nanoTime()) / 1000000;
+        if (sleepMs > 0)
+            Thread.sleep(sleepMs);
+        log("measuring for " + intOpt("duration-sec") + " sec");
+        Map<String, long[]> gcBefore = getGcCounters();
+        heap.start();
+        for (Thread t : threads)
+            t.join();
+        heap.finish();
+        Map<String, long[]> gcAfter = getGcCounters();
+        report(results, firstErrors, heap, gcBefore, gcAfter,
+                (System.nanoTime() - measureStart) / 1e9);
+    }
+
+    private String nextOp(Random rnd) {
+        int value = rnd.nextInt(mixCumulativeWeights[mixCumulativeWeights.length - 1]);
+        for (int i = 0; i < mixOps.length; i++)
+            if (value < mixCumulativeWeights[i])
+                return mixOps[i];
+        return mixOps[mixOps.length - 1];
+    }
+
+    private List<String> randomMethodIds(Random rnd) {
+        int count = Math.min(intOpt("ids-per-call"), methodIds.size());
+        List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+            ret.add(methodIds.get(rnd.nextInt(methodIds.size())));
+        return ret;
+    }
+
+    private void execute(NarrativeMethodStoreClient client, String op, Random rnd)
+            throws Exception {
+        if (op.equals(OP_LIST_CATEGORIES)) {
+            // the way Narrative loads its method panel
+            client.listCategories(new ListCategoriesParams().withLoadMethods(1L)
+                    .withLoadApps(0L).withLoadTypes(0L).withTag("release"));
+        } else if (op.equals(OP_GET_METHOD_SPEC)) {
+            client.getMethodSpec(new GetMethodParams().withIds(randomMethodIds(rnd)));
+        } else if (op.equals(OP_GET_METHOD_FULL_INFO)) {
+            client.getMethodFullInfo(new GetMethodParams().withIds(randomMethodIds(rnd)));
+        } else if (op.equals(OP_IMG)) {
+            String methodId = methodIds.get(rnd.nextInt(methodIds.size()));
+            HttpURLConnection conn = (HttpURLConnection)new URL(imgUrl + "?method_id=" +
+                    methodId + "&image_name=" + SyntheticRepos.IMAGE_NAME).openConnection();
+            try {
+                if (conn.getResponseCode() != 200)
+                    throw new IllegalStateException("Unexpected response code: " +
+                            conn.getResponseCode());
+                InputStream is = conn.getInputStream();
+                try {
+                    IOUtils.copy(is, NullOutputStream.NULL_OUTPUT_STREAM);
+                } finally {
+                    is.close();
+                }
+            } finally {
+                conn.disconnect();
+            }
+        } else if (op.equals(OP_REGISTER_REPO)) {
+            NarrativeMethodStoreServer.getLocalGitDB().registerRepo(ADMIN_USER, moduleRepoUrl, null);
+        } else {
+            throw new IllegalStateException("Unsupported operation: " + op);
+        }
+    }
+
+    private void report(List<Map<String, Samples>> results, Map<String, String> firstErrors,
+            HeapSampler heap, Map<String, long[]> gcBefore, Map<String, long[]> gcAfter,
+            double seconds) {
+        System.out.println();
+        System.out.println(String.format("%-22s %10s %8s %10s %10s %10s %10s", "operation",
+                "count", "errors", "ops/sec", "p50_ms", "p99_ms", "max_ms"));
+        Samples total = new Samples();
+        for (String op : mixOps) {
+            Samples merged = new Samples();
+            for (Map<String, Samples> clientResults : results)
+                merged.addAll(clientResults.get(op));
+            total.addAll(merged);
+            printRow(op, merged, seconds);
+        }
+        printRow("total", total, seconds);
+        for (Map.Entry<String, String> entry : firstErrors.entrySet())
+            System.out.println("First error of " + entry.getKey() + ": " + entry.getValue());
+        System.out.println();
+        long mb = 1024 * 1024;
+        synchronized (heap) {
+            System.out.println("Heap used: average " + (heap.getAverageUsed() / mb) + " MB, " +
+                    "max " + (heap.maxUsed / mb) + " MB, committed " + (heap.maxCommitted / mb) +
+                    " MB, max available " + (Runtime.getRuntime().maxMemory() / mb) + " MB");
+        }
+        for (String gcName : gcAfter.keySet()) {
+            long[] before = gcBefore.get(gcName);
+            long[] after = gcAfter.get(gcName);
+            long count = after[0] - (before == null ? 0 : before[0]);
+            long timeMs = after[1] - (before == null ? 0 : before[1]);
+            System.out.println("GC " + gcName + ": " + count + " collections, " + timeMs +
+                    " ms (" + String.format("%.2f", timeMs / 10.0 / seconds) + "% of time)");
+        }
+    }
+
+    private static void printRow(String name, Samples samples, double seconds) {
+        System.out.println(String.format("%-22s %10d %8d %10.1f %10.1f %10.1f %10.1f", name,
+                samples.size, samples.errors, samples.size / seconds,
+                samples.percentile(0.5) / 1e6, samples.percentile(0.99) / 1e6,
+                samples.percentile(1.0) / 1e6));
+    }
+
+    private static Map<String, long[]> getGcCounters() {
+        Map<String, long[]> ret = new LinkedHashMap<String, long[]>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            ret.put(gc.getName(), new long[] {gc.getCollectionCount(), gc.getCollectionTime()});
+        return ret;
+    }
+
+    private static void log(String message) {
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.LoadTest: " + message);
+    }
+
+    /**
+     * Latencies of one operation in nanoseconds, filled by single client thread.
+     */
+    private static class Samples {
+        private long[] values = new long[1024];
+        private int size = 0;
+        private long errors = 0;
+        private boolean sorted = false;
+
+        public void add(long nanos, boolean error) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+            if (error)
+                errors++;
+            sorted = false;
+        }
+
+        public void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.values[i], false);
+            errors += other.errors;
+        }
+
+        public long percentile(double q) {
+            if (size == 0)
+                return 0;
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            int pos = (int)Math.ceil(size * q) - 1;
+            return values[Math.max(0, Math.min(size - 1, pos))];
+        }
+    }
+
+    /**
+     * Samples heap usage while clients are measured.
+     */
+    private static class HeapSampler extends Thread {
+        private static final long PERIOD_MS = 200;
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile boolean finished = false;
+        private long samples = 0;
+        private long usedSum = 0;
+        private long maxUsed = 0;
+        private long maxCommitted = 0;
+
+        public HeapSampler() {
+            super("load-test-heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!finished) {
+                long used = memory.getHeapMemoryUsage().getUsed();
+                long committed = memory.getHeapMemoryUsage().getCommitted();
+                synchronized (this) {
+                    usedSum += used;
+                    maxUsed = Math.max(maxUsed, used);
+                    maxCommitted = Math.max(maxCommitted, committed);
+                    samples++;
+                }
+                try {
+                    Thread.sleep(PERIOD_MS);
+                } catch (InterruptedException ex) {
+                    break;
+                }
+            }
+        }
+
+        public void finish() throws InterruptedException {
+            finished = true;
+            interrupt();
+            join();
+        }
+
+        public synchronized long getAverageUsed() {
+            return samples == 0 ? 0 : usedSum / samples;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package us.kbase.narrativemethodstore.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Local git repos used by load test: spec-repo with given number of copies of
+ * test/data/validation method (each with a screenshot) and module repo made of
+ * test/data/test_repo_1 which is registered as dynamic repo.
+ */
+public class SyntheticRepos {
+    public static final String SPEC_REPO_BRANCH = "master";
+    public static final String IMAGE_NAME = "screenshot.jpg";
+    public static final int CATEGORY_COUNT = 10;
+
+    private static final File TEST_METHOD_DIR = new File("test/data/validation/methods/generate_heatmaps");
+    private static final File TEST_MODULE_DIR = new File("test/data/test_repo_1");
+    private static final File TEST_IMAGE = new File(TEST_MODULE_DIR,
+            "ui/narrative/methods/compare_genome_features/img/compare_genome_features_input1.jpg");
+
+    public static List<String> getMethodIds(int methodCount) {
+        List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < methodCount; i++)
+            ret.add("method_" + i);
+        return ret;
+    }
+
+    /**
+     * Generates spec-repo and commits it into new git repo.
+     * @return folder of git repo
+     */
+    public static File createSpecRepo(File parentDir, int methodCount) throws IOException {
+        File repoDir = new File(parentDir, "load_test_specs");
+        FileUtils.deleteDirectory(repoDir);
+        String spec = FileUtils.readFileToString(new File(TEST_METHOD_DIR, "spec.json"), "UTF-8");
+        File display = new File(TEST_METHOD_DIR, "display.yaml");
+        for (int i = 0; i < CATEGORY_COUNT; i++) {
+            File catDir = new File(repoDir, "categories/category_" + i);
+            FileUtils.writeStringToFile(new File(catDir, "spec.json"), "{\"name\": \"Category " +
+                    i + "\", \"ver\": \"1.0.0\", \"tooltip\": \"Category " + i + "\", " +
+                    "\"parent\": []}", "UTF-8");
+        }
+        List<String> methodIds = getMethodIds(methodCount);
+        for (int i = 0; i < methodIds.size(); i++) {
+            File methodDir = new File(repoDir, "methods/" + methodIds.get(i));
+            String methodSpec = spec.replace("\"categories\" : [\"active\"]",
+                    "\"categories\" : [\"category_" + (i % CATEGORY_COUNT) + "\"]");
+            FileUtils.writeStringToFile(new File(methodDir, "spec.json"), methodSpec, "UTF-8");
+            FileUtils.copyFile(display, new File(methodDir, "display.yaml"));
+            FileUtils.copyFile(TEST_IMAGE, new File(methodDir, "img/" + IMAGE_NAME));
+        }
+        commitAll(repoDir);
+        return repoDir;
+    }
+
+    /**
+     * Copies test module into new git repo.
+     * @return folder of git repo
+     */
+    public static File createModuleRepo(File parentDir) throws IOException {
+        File repoDir = new File(parentDir, "load_test_module");
+        FileUtils.deleteDirectory(repoDir);
+        FileUtils.copyDirectory(TEST_MODULE_DIR, repoDir);
+        commitAll(repoDir);
+        return repoDir;
+    }
+
+    private static void commitAll(File repoDir) throws IOException {
+        git(repoDir, "init", "-q");
+        git(repoDir, "symbolic-ref", "HEAD", "refs/heads/" + SPEC_REPO_BRANCH);
+        git(repoDir, "add", "-A");
+        git(repoDir, "-c", "user.name=NMS load test", "-c", "user.email=nms@localhost",
+                "commit", "-q", "-m", "Generated by load test");
+    }
+
+    private static void git(File dir, String... args) throws IOException {
+        List<String> cmd = new ArrayList<String>();
+        cmd.add("git");
+        cmd.addAll(Arrays.asList(args));
+        Process p = new ProcessBuilder(cmd).directory(dir).redirectErrorStream(true).start();
+        InputStream is = p.getInputStream();
+        String out;
+        try {
+            out = IOUtils.toString(is, "UTF-8");
+        } finally {
+            is.close();
+        }
+        try {
+            if (p.waitFor() != 0)
+                throw new IOException("Error running " + cmd + " in " + dir + ": " + out);
+        } catch (InterruptedException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -3,17 +3,27 @@ package us.kbase.narrativemethodstore;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+
 public class AppEventListener implements ServletContextListener {
     
     @Override
     public void contextInitialized(ServletContextEvent arg0) {
-        // do nothing
+        try {
+            ServiceMetrics.register();
+        } catch (Exception ex) {
+            System.err.println("Error registering metrics MBean: " + ex.getMessage());
+        }
     }
     
     @Override
     public void contextDestroyed(ServletContextEvent arg0) {
         try {
-            NarrativeMethodStoreServer.getLocalGitDB().stopRefreshingThread();
+            LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
+            db.stopRefreshingThread();
+            // keep everything loaded into caches for the next start
+            db.saveCatalogSnapshot();
+            ServiceMetrics.unregister();
         } catch (Exception ex) {
             throw new IllegalStateException(ex);
         }
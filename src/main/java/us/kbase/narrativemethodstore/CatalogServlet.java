@@ -0,0 +1,146 @@
+package us.kbase.narrativemethodstore;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.db.PrerenderedJson;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Serves results of list_categories, list_methods and list_apps (without offset and limit)
+ * as JSON rendered once per categories index, gzipped if client accepts it. Parameters are
+ * the same as in RPC methods: call=list_categories|list_methods|list_apps, tag, 
+ * load_methods, load_apps, load_types. Response body contains the values RPC methods 
+ * return (array of four maps for list_categories, array of method or app brief infos for
+ * list_methods and list_apps). Responses are tagged by
+ * catalog version (ETag), so polling clients get "304 Not Modified" without body until 
+ * catalog is changed.
+ * Calls get_method_spec and get_method_full_info (parameters ids, comma separated, and tag)
+ * return arrays of method specs or full infos. Specs kept in compact form are copied into 
+ * response as JSON without being parsed.
+ */
+public class CatalogServlet extends HttpServlet {
+	
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doOptions(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		setupResponseHeaders(request, response);
+		response.setContentLength(0);
+		response.getOutputStream().print("");
+		response.getOutputStream().flush();
+	}
+
+	private static void setupResponseHeaders(HttpServletRequest request,
+			HttpServletResponse response) {
+		response.setHeader("Access-Control-Allow-Origin", "*");
+		String allowedHeaders = request.getHeader("HTTP_ACCESS_CONTROL_REQUEST_HEADERS");
+		response.setHeader("Access-Control-Allow-Headers", allowedHeaders == null ? "authorization" : allowedHeaders);
+	}
+	
+	private static boolean flag(HttpServletRequest request, String name) {
+		String value = request.getParameter(name);
+		return value != null && (value.equals("1") || value.equals("true"));
+	}
+
+	@Override
+	public void doGet(HttpServletRequest request, HttpServletResponse response)  
+			throws IOException {
+		String call = request.getParameter("call");
+		String tag = request.getParameter("tag");
+		if (tag != null && tag.trim().isEmpty())
+			tag = null;
+		PrerenderedJson<?> listing;
+		try {
+			LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
+			if ("list_categories".equals(call)) {
+				listing = db.listCategories(tag, flag(request, "load_methods"), 
+						flag(request, "load_apps"), flag(request, "load_types"));
+			} else if ("list_methods".equals(call)) {
+				listing = db.listMethods(tag);
+			} else if ("list_apps".equals(call)) {
+				listing = db.listApps();
+			} else if ("get_method_spec".equals(call) || "get_method_full_info".equals(call)) {
+				String ids = request.getParameter("ids");
+				if (ids == null || ids.trim().isEmpty()) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter ids is not set");
+					return;
+				}
+				List<NarrativeMethodData> methods;
+				try {
+					methods = db.getMethodData(Arrays.asList(ids.trim().split("\\s*,\\s*")), tag);
+				} catch (NarrativeMethodStoreException ex) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+					return;
+				}
+				writeMethods(request, response, methods, "get_method_spec".equals(call));
+				return;
+			} else {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, 
+						"Parameter call should be one of list_categories, list_methods, " +
+						"list_apps, get_method_spec, get_method_full_info");
+				return;
+			}
+		} catch (IllegalArgumentException ex) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tag: " + tag);
+			return;
+		} catch (Exception ex) {
+			throw new IllegalStateException(ex);
+		}
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+		String etag = "\"" + listing.getCatalogVersion() + (gzip ? "-gzip" : "") + "\"";
+		setupResponseHeaders(request, response);
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "no-cache");
+		response.setHeader("Vary", "Accept-Encoding");
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		byte[] data;
+		try {
+			data = gzip ? listing.getGzippedJson() : listing.getJson();
+		} catch (Exception ex) {
+			throw new IllegalStateException(ex);
+		}
+		response.setContentType("application/json");
+		if (gzip)
+			response.setHeader("Content-Encoding", "gzip");
+		response.setContentLength(data.length);
+		OutputStream os = response.getOutputStream();
+		os.write(data);
+		os.flush();
+	}
+
+	private static void writeMethods(HttpServletRequest request, HttpServletResponse response,
+			List<NarrativeMethodData> methods, boolean specs) throws IOException {
+		setupResponseHeaders(request, response);
+		response.setContentType("application/json");
+		OutputStream os = new BufferedOutputStream(response.getOutputStream());
+		os.write('[');
+		for (int i = 0; i < methods.size(); i++) {
+			if (i > 0)
+				os.write(',');
+			if (specs) {
+				methods.get(i).writeMethodSpecJson(os);
+			} else {
+				methods.get(i).writeMethodFullInfoJson(os);
+			}
+		}
+		os.write(']');
+		os.flush();
+	}
+}
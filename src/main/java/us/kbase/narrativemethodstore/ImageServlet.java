@@ -3,8 +3,6 @@ package us.kbase.narrativemethodstore;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -16,12 +14,14 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 
+import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.github.LocalGitDB;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 
 public class ImageServlet extends HttpServlet {
 	
 	private static final long serialVersionUID = 1L;
+	public static final int MAX_AGE_SECONDS = 300;
 
 	public static void main(String[] args) throws Exception {
 		int port = 8888;
@@ -45,6 +45,31 @@ public class ImageServlet extends HttpServlet {
 		response.getOutputStream().flush();
 	}
 
+	/**
+	 * Sets caching headers and answers with 304 if client has the same version of image.
+	 * Images are revalidated after {@link #MAX_AGE_SECONDS} since the same url could point
+	 * to another image after spec repo update or repo registration.
+	 * @return true if response is already sent
+	 */
+	private static boolean checkNotModified(HttpServletRequest request,
+			HttpServletResponse response, String etag) {
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE_SECONDS);
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch == null)
+			return false;
+		for (String item : ifNoneMatch.split(",")) {
+			item = item.trim();
+			if (item.startsWith("W/"))
+				item = item.substring(2);
+			if (item.equals(etag) || item.equals("*")) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private static void setupResponseHeaders(HttpServletRequest request,
 			HttpServletResponse response) {
 		response.setHeader("Access-Control-Allow-Origin", "*");
@@ -80,15 +105,24 @@ public class ImageServlet extends HttpServlet {
 		if (imageName == null || imageName.contains("../") || imageName.trim().isEmpty())
 			throw new IllegalStateException("Parameter image_name is wrong");
 		String imageExt = imageName.contains(".") ? imageName.substring(imageName.indexOf('.') + 1).toLowerCase() : "png";
+		setupResponseHeaders(request, response);
 		if (methodId != null && methodId.contains("/")) {
-            String[] moduleNameAndMethodId = methodId.split("/");
-            OutputStream os = response.getOutputStream();
-		    try {
-		        LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
-		        db.saveScreenshotIntoStream(moduleNameAndMethodId[0], moduleNameAndMethodId[1], imageName, tag, os);
-		    } catch (Exception ex) {
-		        throw new IllegalStateException(ex);
-		    }
+			String[] moduleNameAndMethodId = methodId.split("/");
+			try {
+				LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
+				FilePointer fp = db.getScreenshot(moduleNameAndMethodId[0], 
+						moduleNameAndMethodId[1], imageName, tag);
+				// content of file with given id never changes
+				String etag = "\"" + fp.getFileId().getId() + "\"";
+				if (checkNotModified(request, response, etag))
+					return;
+				response.setContentType("image/" + imageExt);
+				// small files are cached by dynamic repo storage
+				response.setHeader("Content-Length", Long.toString(fp.length()));
+				fp.saveToStream(response.getOutputStream());
+			} catch (Exception ex) {
+				throw new IllegalStateException(ex);
+			}
 		} else {
 		    String path = null;
 		    try {
@@ -107,11 +141,25 @@ public class ImageServlet extends HttpServlet {
 		        innerDir = new File(new File(path, "types"), typeName);
 		    }
 		    File imageFile = new File(new File(innerDir, "img"), imageName);
-		    setupResponseHeaders(request, response);
+		    if (!imageFile.isFile()) {
+		        response.sendError(HttpServletResponse.SC_NOT_FOUND, "Image is not found: " + imageName);
+		        return;
+		    }
+		    // spec repo files are replaced (not modified in place) by git pull
+		    long lastModified = imageFile.lastModified();
+		    long length = imageFile.length();
+		    String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+		    response.setDateHeader("Last-Modified", lastModified);
+		    if (checkNotModified(request, response, etag))
+		        return;
 		    response.setContentType("image/" + imageExt);
-		    OutputStream os = response.getOutputStream();
-		    InputStream is = new FileInputStream(imageFile);
-		    IOUtils.copy(is, os);
+		    response.setHeader("Content-Length", Long.toString(length));
+		    FileInputStream is = new FileInputStream(imageFile);
+		    try {
+		        IOUtils.copyLarge(is, response.getOutputStream(), 0, length);
+		    } finally {
+		        is.close();
+		    }
 		}
 	}
 }
@@ -0,0 +1,35 @@
+package us.kbase.narrativemethodstore;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Returns service metrics (see {@link ServiceMetrics}) as JSON document with groups 
+ * rpc, mongo, git, index and caches. Endpoint is disabled (404) unless 
+ * method-spec-metrics-endpoint is set to true, since it's not protected by authentication.
+ */
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+	
+	private static final ObjectMapper mapper = new ObjectMapper().configure(
+			SerializationFeature.INDENT_OUTPUT, true);
+
+	@Override
+	public void doGet(HttpServletRequest request, HttpServletResponse response)  
+			throws IOException {
+		if (!NarrativeMethodStoreServer.isMetricsEndpointEnabled()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		response.setContentType("application/json");
+		response.setHeader("Cache-Control", "no-cache");
+		mapper.writeValue(response.getOutputStream(), new ServiceMetrics().getAll());
+	}
+}
@@ -230,6 +230,24 @@ public class NarrativeMethodStoreClient {
         return res.get(0);
     }
 
+    /**
+     * <p>Original spec-file function name: get_catalog_version</p>
+     * <pre>
+     * Returns version of the catalog (categories, methods, apps and types). It's changed
+     * every time spec repository commit or any registered repo is changed, so clients could
+     * skip reloading the catalog while the version stays the same.
+     * </pre>
+     * @return   instance of String
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public String getCatalogVersion(RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        TypeReference<List<String>> retType = new TypeReference<List<String>>() {};
+        List<String> res = caller.jsonrpcCall("NarrativeMethodStore.get_catalog_version", args, retType, true, false, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
     /**
      * <p>Original spec-file function name: list_categories</p>
      * <pre>
@@ -605,16 +623,38 @@ public class NarrativeMethodStoreClient {
     /**
      * <p>Original spec-file function name: register_repo</p>
      * <pre>
+     * Registers the module repository and returns id of registration which can be
+     * passed to get_registration_status. Unless async flag is set the method returns after
+     * registration is finished.
      * </pre>
      * @param   params   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoParams RegisterRepoParams}
+     * @return   parameter "registration_id" of String
      * @throws IOException if an IO exception occurs
      * @throws JsonClientException if a JSON RPC exception occurs
      */
-    public void registerRepo(RegisterRepoParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+    public String registerRepo(RegisterRepoParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
         List<Object> args = new ArrayList<Object>();
         args.add(params);
-        TypeReference<Object> retType = new TypeReference<Object>() {};
-        caller.jsonrpcCall("NarrativeMethodStore.register_repo", args, retType, false, true, jsonRpcContext, this.serviceVersion);
+        TypeReference<List<String>> retType = new TypeReference<List<String>>() {};
+        List<String> res = caller.jsonrpcCall("NarrativeMethodStore.register_repo", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: get_registration_status</p>
+     * <pre>
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRegistrationStatusParams GetRegistrationStatusParams}
+     * @return   instance of type {@link us.kbase.narrativemethodstore.RegistrationStatus RegistrationStatus}
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public RegistrationStatus getRegistrationStatus(GetRegistrationStatusParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<RegistrationStatus>> retType = new TypeReference<List<RegistrationStatus>>() {};
+        List<RegistrationStatus> res = caller.jsonrpcCall("NarrativeMethodStore.get_registration_status", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
     }
 
     /**
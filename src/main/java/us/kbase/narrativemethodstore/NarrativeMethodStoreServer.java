@@ -11,21 +11,34 @@ import us.kbase.common.service.RpcContext;
 import us.kbase.common.service.Tuple4;
 
 //BEGIN_HEADER
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.TreeMap;
 import java.util.regex.Pattern;
 
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.ini4j.Ini;
 
-import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.CategoriesListing;
 import us.kbase.narrativemethodstore.db.ServiceUrlTemplateEvaluater;
 import us.kbase.narrativemethodstore.db.Validator;
+import us.kbase.narrativemethodstore.db.github.CacheSettings;
+import us.kbase.narrativemethodstore.db.github.CommandLineGitBackend;
+import us.kbase.narrativemethodstore.db.github.GitBackend;
 import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.JGitBackend;
+import us.kbase.narrativemethodstore.db.github.LocalRefsGitBackend;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.metrics.TimedDynamicRepoDB;
+import us.kbase.narrativemethodstore.metrics.TimedGitBackend;
 //END_HEADER
 
 /**
@@ -60,13 +73,23 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     public static final String      CFG_PROP_DEFAULT_TAG = "method-spec-default-tag";
     public static final String CFG_PROP_AUTH_SERVICE_URL = "auth-service-url";
     public static final String    CFG_PROP_AUTH_INSECURE = "auth-service-url-allow-insecure";
+    public static final String CFG_PROP_INDEX_LOADER_THREADS = "method-spec-index-loader-threads";
+    public static final String CFG_PROP_CATALOG_SNAPSHOT = "method-spec-catalog-snapshot";
+    public static final String CFG_PROP_GIT_BACKEND = "method-spec-git-backend";
+    public static final String CFG_PROP_CACHE_MEMORY = "method-spec-cache-memory-mb";
+    public static final String CFG_PROP_CACHE_SOFT_VALUES = "method-spec-cache-soft-values";
+    public static final String CFG_PROP_CACHE_COMPACT = "method-spec-cache-compact";
+    public static final String CFG_PROP_REGISTRATION_THREADS = "method-spec-registration-threads";
+    public static final String CFG_PROP_REGISTRATION_QUEUE_SIZE = "method-spec-registration-queue-size";
+    public static final String CFG_PROP_METRICS_ENDPOINT = "method-spec-metrics-endpoint";
 
     public static final String VERSION = "0.3.12";
 
     private static Throwable configError = null;
     private static Map<String, String> config = null;
 
-    private static LocalGitDB localGitDB;
+    private static volatile LocalGitDB localGitDB;
+    private static volatile RepoRegistrationQueue registrations;
 
     public static Map<String, String> config() {
     	if (config != null)
@@ -158,6 +181,81 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     private static String getDefaultTag() {
         return config().get(CFG_PROP_DEFAULT_TAG);
     }
+    private static boolean getCatalogSnapshot() {
+        String ret = config().get(CFG_PROP_CATALOG_SNAPSHOT);
+        return ret == null || ret.trim().isEmpty() || ret.trim().equals("true");
+    }
+    private static int getCacheMemoryMb() {
+        String ret = config().get(CFG_PROP_CACHE_MEMORY);
+        if (ret == null || ret.trim().isEmpty())
+            return 0;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_CACHE_MEMORY + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static boolean getCacheSoftValues() {
+        String ret = config().get(CFG_PROP_CACHE_SOFT_VALUES);
+        return ret != null && ret.trim().equals("true");
+    }
+    private static boolean getCacheCompact() {
+        String ret = config().get(CFG_PROP_CACHE_COMPACT);
+        return ret != null && ret.trim().equals("true");
+    }
+    public static boolean isMetricsEndpointEnabled() {
+        String ret = config().get(CFG_PROP_METRICS_ENDPOINT);
+        return ret != null && ret.trim().equals("true");
+    }
+    private static CacheSettings getCacheSettings() {
+        return new CacheSettings(getCacheSize(), getCacheMemoryMb() * 1024L * 1024L,
+                getCacheSoftValues(), getCacheCompact());
+    }
+    private static String getGitBackendName() {
+        String ret = config().get(CFG_PROP_GIT_BACKEND);
+        return ret == null || ret.trim().isEmpty() ? "jgit" : ret.trim();
+    }
+    private static GitBackend getGitBackend() {
+        String name = getGitBackendName();
+        if (name.equals("jgit"))
+            return new JGitBackend();
+        if (name.equals("local-refs"))
+            return new LocalRefsGitBackend();
+        if (name.equals("command-line"))
+            return new CommandLineGitBackend();
+        throw new IllegalStateException("Parameter " + CFG_PROP_GIT_BACKEND + " should be one of " +
+                "'jgit', 'local-refs' or 'command-line': " + name);
+    }
+    private static int getIndexLoaderThreads() {
+        String ret = config().get(CFG_PROP_INDEX_LOADER_THREADS);
+        if (ret == null || ret.trim().isEmpty())
+            return 1;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_INDEX_LOADER_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static int getRegistrationThreads() {
+        String ret = config().get(CFG_PROP_REGISTRATION_THREADS);
+        if (ret == null || ret.trim().isEmpty())
+            return 2;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_REGISTRATION_THREADS + " is not defined in configuration as integer: " + ret);
+        }
+    }
+    private static int getRegistrationQueueSize() {
+        String ret = config().get(CFG_PROP_REGISTRATION_QUEUE_SIZE);
+        if (ret == null || ret.trim().isEmpty())
+            return 50;
+        try {
+            return Integer.parseInt(ret.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalStateException("Parameter " + CFG_PROP_REGISTRATION_QUEUE_SIZE + " is not defined in configuration as integer: " + ret);
+        }
+    }
 
     private static <T> List<T> trim(List<T> data, ListParams params) {
     	if (params.getOffset() == null && params.getLimit() == null)
@@ -175,15 +273,35 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     }
 
 
-    public static synchronized LocalGitDB getLocalGitDB() throws Exception {
+    public static LocalGitDB getLocalGitDB() throws Exception {
+        // LocalGitDB getters don't lock, so only initialization is synchronized
+        LocalGitDB ret = localGitDB;
+        if (ret != null)
+            return ret;
+        return initLocalGitDB();
+    }
+
+    /**
+     * @return null if LocalGitDB is not initialized yet (it's never initialized here)
+     */
+    public static LocalGitDB getLocalGitDBIfInitialized() {
+        return localGitDB;
+    }
+
+    private static synchronized LocalGitDB initLocalGitDB() throws Exception {
         if (localGitDB == null) {
-            // TODO: Make sure LocalGitDB doesn't require synchronization for when shared between servlet threads (including ImageServlet).
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_REPO +" = " + getGitRepo());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_BRANCH +" = " + getGitBranch());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_LOCAL_DIR +" = " + getGitLocalDir());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_REFRESH_RATE +" = " + getGitRefreshRate());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_CACHE_SIZE +" = " + getCacheSize());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_CACHE_MEMORY +" = " + getCacheMemoryMb());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_CACHE_SOFT_VALUES +" = " + getCacheSoftValues());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_CACHE_COMPACT +" = " + getCacheCompact());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_TEMP_DIR +" = " + getTempDir());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_INDEX_LOADER_THREADS +" = " + getIndexLoaderThreads());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_CATALOG_SNAPSHOT +" = " + getCatalogSnapshot());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_GIT_BACKEND +" = " + getGitBackendName());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_MONGO_HOST +" = " + getMongoHost());
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_MONGO_DBNAME +" = " + getMongoDbname());
             String dbUser = nullIfWhitespace(config().get(CFG_PROP_MONGO_USER));
@@ -212,13 +330,53 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
             String authAllowInsecure = config().get(CFG_PROP_AUTH_INSECURE);
             System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_AUTH_INSECURE +" = " +
                     (authAllowInsecure == null ? "<not-set> ('false' will be used)" : authAllowInsecure));
-            localGitDB = new LocalGitDB(new URL(getGitRepo()), getGitBranch(), new File(getGitLocalDir()), getGitRefreshRate(), getCacheSize(),
-                    new MongoDynamicRepoDB(getMongoHost(), getMongoDbname(), dbUser, dbPwd, adminUsers, mongoRO),
+            localGitDB = new LocalGitDB(new URL(getGitRepo()), getGitBranch(), new File(getGitLocalDir()), getGitRefreshRate(), getCacheSettings(),
+                    new TimedDynamicRepoDB(new MongoDynamicRepoDB(getMongoHost(), getMongoDbname(), dbUser, dbPwd, adminUsers, mongoRO)),
                     new File(getTempDir()),
-                    new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag));
+                    new ServiceUrlTemplateEvaluater(endpointHost, endpointBase), RepoTag.valueOf(defaultTag),
+                    getIndexLoaderThreads(), getCatalogSnapshot(), new TimedGitBackend(getGitBackend()));
         }
         return localGitDB;
     }
+
+    public static RepoRegistrationQueue getRegistrations() throws Exception {
+        RepoRegistrationQueue ret = registrations;
+        if (ret != null)
+            return ret;
+        return initRegistrations();
+    }
+
+    private static synchronized RepoRegistrationQueue initRegistrations() throws Exception {
+        if (registrations == null) {
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_REGISTRATION_THREADS +" = " + getRegistrationThreads());
+            System.out.println(NarrativeMethodStoreServer.class.getName() + ": " + CFG_PROP_REGISTRATION_QUEUE_SIZE +" = " + getRegistrationQueueSize());
+            final LocalGitDB db = getLocalGitDB();
+            registrations = new RepoRegistrationQueue(new RepoRegistrationQueue.Registrar() {
+                @Override
+                public long registerRepo(String userId, String url, String commitHash,
+                        RepoRegistrationQueue.Registration registration)
+                        throws NarrativeMethodStoreException {
+                    return db.registerRepo(userId, url, commitHash, registration);
+                }
+            }, getRegistrationThreads(), getRegistrationQueueSize());
+        }
+        return registrations;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        RpcMetrics.Call call = RpcMetrics.start(request, response);
+        try {
+            // listings are sent as prerendered JSON, other calls go through Jackson
+            byte[] body = call.getBody();
+            if (body == null || !PrerenderedRpcCalls.write(body, call.getRequest(), 
+                    call.getResponse()))
+                super.doPost(call.getRequest(), call.getResponse());
+        } finally {
+            call.finish();
+        }
+    }
     //END_CLASS_HEADER
 
     public NarrativeMethodStoreServer() throws Exception {
@@ -267,6 +425,25 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         return returnVal;
     }
 
+    /**
+     * <p>Original spec-file function name: get_catalog_version</p>
+     * <pre>
+     * Returns version of the catalog (categories, methods, apps and types). It's changed
+     * every time spec repository commit or any registered repo is changed, so clients could
+     * skip reloading the catalog while the version stays the same.
+     * </pre>
+     * @return   instance of String
+     */
+    @JsonServerMethod(rpc = "NarrativeMethodStore.get_catalog_version", async=true)
+    public String getCatalogVersion(RpcContext jsonRpcContext) throws Exception {
+        String returnVal = null;
+        //BEGIN get_catalog_version
+        config();
+        returnVal = getLocalGitDB().getCatalogVersion();
+        //END get_catalog_version
+        return returnVal;
+    }
+
     /**
      * <p>Original spec-file function name: list_categories</p>
      * <pre>
@@ -300,23 +477,13 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         		returnLoadedTypes = true;
         	}
         }
-        NarrativeCategoriesIndex narCatIndex = getLocalGitDB().getCategoriesIndex();
-        return1 = narCatIndex.getCategories();
-        if(returnLoadedMethods) {
-        	return2 = narCatIndex.getMethods(params.getTag());
-        } else {
-        	return2 = new HashMap<String,MethodBriefInfo>();
-        }
-        if (returnLoadedApps) {
-        	return3 = narCatIndex.getApps();
-        } else {
-        	return3 = new HashMap<String, AppBriefInfo>();
-        }
-        if (returnLoadedTypes) {
-        	return4 = narCatIndex.getTypes();
-        } else {
-        	return4 = new HashMap<String, TypeInfo>();
-        }
+        // listing is built once per index generation and shared between requests
+        CategoriesListing listing = getLocalGitDB().listCategories(params.getTag(), 
+                returnLoadedMethods, returnLoadedApps, returnLoadedTypes).getValue();
+        return1 = listing.getCategories();
+        return2 = listing.getMethods();
+        return3 = listing.getApps();
+        return4 = listing.getTypes();
         //END list_categories
         Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>> returnVal = new Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>>();
         returnVal.setE1(return1);
@@ -361,8 +528,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodBriefInfo> returnVal = null;
         //BEGIN list_methods
         config();
-        returnVal = new ArrayList<MethodBriefInfo>(getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).values());
-        returnVal = trim(returnVal, params);
+        returnVal = trim(getLocalGitDB().listMethods(params.getTag()).getValue(), params);
         //END list_methods
         return returnVal;
     }
@@ -379,8 +545,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN list_methods_full_info
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
+        List<String> methodIds = trim(getLocalGitDB().listMethodIds(false, params.getTag()), params);
         returnVal = getMethodFullInfo(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
         //END list_methods_full_info
         return returnVal;
@@ -398,8 +563,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN list_methods_spec
         config();
-        List<String> methodIds = new ArrayList<String>(getLocalGitDB().listMethodIds(false, params.getTag()));
-        methodIds = trim(methodIds, params);
+        List<String> methodIds = trim(getLocalGitDB().listMethodIds(false, params.getTag()), params);
         returnVal = getMethodSpec(new GetMethodParams().withIds(methodIds).withTag(params.getTag()), jsonRpcContext);
         //END list_methods_spec
         return returnVal;
@@ -417,9 +581,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         Map<String,String> returnVal = null;
         //BEGIN list_method_ids_and_names
         config();
-        returnVal = new TreeMap<String, String>();
-        for (Map.Entry<String, MethodBriefInfo> entry : getLocalGitDB().getCategoriesIndex().getMethods(params.getTag()).entrySet())
-        	returnVal.put(entry.getKey(), entry.getValue().getName());
+        returnVal = getLocalGitDB().getCategoriesIndex().getMethodIdsToNames(params.getTag());
         //END list_method_ids_and_names
         return returnVal;
     }
@@ -436,8 +598,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppBriefInfo> returnVal = null;
         //BEGIN list_apps
         config();
-        returnVal = new ArrayList<AppBriefInfo>(getLocalGitDB().getCategoriesIndex().getApps().values());
-        returnVal = trim(returnVal, params);
+        returnVal = trim(getLocalGitDB().listApps().getValue(), params);
         //END list_apps
         return returnVal;
     }
@@ -549,11 +710,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodFullInfo> returnVal = null;
         //BEGIN get_method_full_info
         config();
-        List <String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodFullInfo>(methodIds.size());
-        for(String id: methodIds) {
-        	returnVal.add(getLocalGitDB().getMethodFullInfo(id, params.getTag()));
-        }
+        returnVal = getLocalGitDB().getMethodFullInfos(params.getIds(), params.getTag());
         //END get_method_full_info
         return returnVal;
     }
@@ -570,10 +727,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<MethodSpec> returnVal = null;
         //BEGIN get_method_spec
         config();
-        List<String> methodIds = params.getIds();
-        returnVal = new ArrayList<MethodSpec>(methodIds.size());
-        for (String id : methodIds)
-        	returnVal.add(getLocalGitDB().getMethodSpec(id, params.getTag()));
+        returnVal = getLocalGitDB().getMethodSpecs(params.getIds(), params.getTag());
         //END get_method_spec
         return returnVal;
     }
@@ -610,11 +764,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppFullInfo> returnVal = null;
         //BEGIN get_app_full_info
         config();
-        List <String> appIds = params.getIds();
-        returnVal = new ArrayList<AppFullInfo>(appIds.size());
-        for(String id: appIds) {
-        	returnVal.add(getLocalGitDB().getAppFullInfo(id));
-        }
+        returnVal = getLocalGitDB().getAppFullInfos(params.getIds());
         //END get_app_full_info
         return returnVal;
     }
@@ -631,10 +781,7 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
         List<AppSpec> returnVal = null;
         //BEGIN get_app_spec
         config();
-        List<String> appIds = params.getIds();
-        returnVal = new ArrayList<AppSpec>(appIds.size());
-        for (String id : appIds)
-        	returnVal.add(getLocalGitDB().getAppSpec(id));
+        returnVal = getLocalGitDB().getAppSpecs(params.getIds());
         //END get_app_spec
         return returnVal;
     }
@@ -727,14 +874,43 @@ public class NarrativeMethodStoreServer extends JsonServerServlet {
     /**
      * <p>Original spec-file function name: register_repo</p>
      * <pre>
+     * Registers the module repository and returns id of registration which can be
+     * passed to get_registration_status. Unless async flag is set the method returns after
+     * registration is finished.
      * </pre>
      * @param   params   instance of type {@link us.kbase.narrativemethodstore.RegisterRepoParams RegisterRepoParams}
+     * @return   parameter "registration_id" of String
      */
     @JsonServerMethod(rpc = "NarrativeMethodStore.register_repo", async=true)
-    public void registerRepo(RegisterRepoParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+    public String registerRepo(RegisterRepoParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        String returnVal = null;
         //BEGIN register_repo
-        getLocalGitDB().registerRepo(authPart.getUserName(), params.getGitUrl(), params.getGitCommitHash());
+        // registrations run in bounded pool of background threads, synchronous calls wait
+        if (params.getAsync() != null && params.getAsync() == 1L) {
+            returnVal = getRegistrations().submit(authPart.getUserName(), params.getGitUrl(), 
+                    params.getGitCommitHash());
+        } else {
+            returnVal = getRegistrations().run(authPart.getUserName(), params.getGitUrl(), 
+                    params.getGitCommitHash());
+        }
         //END register_repo
+        return returnVal;
+    }
+
+    /**
+     * <p>Original spec-file function name: get_registration_status</p>
+     * <pre>
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.narrativemethodstore.GetRegistrationStatusParams GetRegistrationStatusParams}
+     * @return   instance of type {@link us.kbase.narrativemethodstore.RegistrationStatus RegistrationStatus}
+     */
+    @JsonServerMethod(rpc = "NarrativeMethodStore.get_registration_status", async=true)
+    public RegistrationStatus getRegistrationStatus(GetRegistrationStatusParams params, AuthToken authPart, RpcContext jsonRpcContext) throws Exception {
+        RegistrationStatus returnVal = null;
+        //BEGIN get_registration_status
+        returnVal = getRegistrations().getStatus(params.getRegistrationId());
+        //END get_registration_status
+        return returnVal;
     }
 
     /**
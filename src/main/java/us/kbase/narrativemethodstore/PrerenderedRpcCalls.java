@@ -0,0 +1,114 @@
+package us.kbase.narrativemethodstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.db.PrerenderedJson;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+
+/**
+ * Answers JSON-RPC calls list_categories, list_methods and list_apps (without offset and
+ * limit) by JSON rendered once per categories index. Prerendered JSON is copied into 
+ * JSON-RPC envelope as is (or as prerendered deflate blocks if client accepts gzip), so 
+ * large listings are not serialized by Jackson on every call. Any other call, as well as any
+ * call failing before response is written, is left to {@link us.kbase.common.service.JsonServerServlet}
+ * which reports errors in usual way.
+ */
+public class PrerenderedRpcCalls {
+    private static final String LIST_CATEGORIES = "NarrativeMethodStore.list_categories";
+    private static final String LIST_METHODS = "NarrativeMethodStore.list_methods";
+    private static final String LIST_APPS = "NarrativeMethodStore.list_apps";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param body complete request body (only small bodies are buffered by caller)
+     * @return true if response is written, false if call should be processed by servlet
+     */
+    public static boolean write(byte[] body, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        PrerenderedJson<?> listing;
+        boolean tuple;
+        JsonNode id;
+        try {
+            JsonNode rpc = mapper.readTree(body);
+            if (rpc == null || !rpc.isObject() || rpc.has("jsonrpc"))
+                return false;
+            String method = rpc.path("method").asText();
+            JsonNode params = rpc.get("params");
+            if (params == null || !params.isArray() || params.size() != 1 ||
+                    !params.get(0).isObject())
+                return false;
+            LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDB();
+            if (method.equals(LIST_CATEGORIES)) {
+                ListCategoriesParams p = mapper.treeToValue(params.get(0),
+                        ListCategoriesParams.class);
+                listing = db.listCategories(p.getTag(), flag(p.getLoadMethods()),
+                        flag(p.getLoadApps()), flag(p.getLoadTypes()));
+                // result of tuple method is array of its elements which is listing itself
+                tuple = true;
+            } else if (method.equals(LIST_METHODS)) {
+                ListParams p = mapper.treeToValue(params.get(0), ListParams.class);
+                if (p.getOffset() != null || p.getLimit() != null)
+                    return false;
+                listing = db.listMethods(p.getTag());
+                tuple = false;
+            } else if (method.equals(LIST_APPS)) {
+                ListParams p = mapper.treeToValue(params.get(0), ListParams.class);
+                if (p.getOffset() != null || p.getLimit() != null)
+                    return false;
+                listing = db.listApps();
+                tuple = false;
+            } else {
+                return false;
+            }
+            id = rpc.get("id");
+            // render now to fail before anything is written
+            listing.getJson();
+        } catch (Exception ex) {
+            return false;
+        }
+        byte[] prefix = ("{\"version\":\"1.1\",\"result\":" + (tuple ? "" : "[")).getBytes("utf-8");
+        byte[] suffix = ((tuple ? "" : "]") + ",\"id\":" +
+                (id == null ? "null" : mapper.writeValueAsString(id)) + "}").getBytes("utf-8");
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        ByteArrayOutputStream data;
+        try {
+            if (gzip) {
+                data = new ByteArrayOutputStream(listing.getDeflatedJson().length + 64);
+                listing.writeGzippedJson(prefix, suffix, data);
+            } else {
+                data = new ByteArrayOutputStream(listing.getJson().length +
+                        prefix.length + suffix.length);
+                data.write(prefix);
+                data.write(listing.getJson());
+                data.write(suffix);
+            }
+        } catch (Exception ex) {
+            return false;
+        }
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        String allowedHeaders = request.getHeader("HTTP_ACCESS_CONTROL_REQUEST_HEADERS");
+        response.setHeader("Access-Control-Allow-Headers", allowedHeaders == null ? "authorization" : allowedHeaders);
+        response.setHeader("Vary", "Accept-Encoding");
+        response.setContentType("application/json");
+        if (gzip)
+            response.setHeader("Content-Encoding", "gzip");
+        response.setContentLength(data.size());
+        OutputStream os = response.getOutputStream();
+        data.writeTo(os);
+        os.flush();
+        return true;
+    }
+
+    private static boolean flag(Long value) {
+        return value != null && value == 1;
+    }
+}
@@ -14,7 +14,10 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 /**
  * <p>Original spec-file type: RegisterRepoParams</p>
  * <pre>
- * ***************************** Dynamic Repos API ******************************
+ * git_url - url of git repository of the module;
+ * git_commit_hash - optional commit to register (HEAD of default branch by default);
+ * async - optional flag, if set to 1 registration runs in background and the method
+ *     returns right away, get_registration_status reports progress of registration.
  * </pre>
  * 
  */
@@ -22,7 +25,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
     "git_url",
-    "git_commit_hash"
+    "git_commit_hash",
+    "async"
 })
 public class RegisterRepoParams {
 
@@ -30,6 +34,8 @@ public class RegisterRepoParams {
     private String gitUrl;
     @JsonProperty("git_commit_hash")
     private String gitCommitHash;
+    @JsonProperty("async")
+    private Long async;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("git_url")
@@ -62,6 +68,21 @@ public class RegisterRepoParams {
         return this;
     }
 
+    @JsonProperty("async")
+    public Long getAsync() {
+        return async;
+    }
+
+    @JsonProperty("async")
+    public void setAsync(Long async) {
+        this.async = async;
+    }
+
+    public RegisterRepoParams withAsync(Long async) {
+        this.async = async;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -74,7 +95,7 @@ public class RegisterRepoParams {
 
     @Override
     public String toString() {
-        return ((((((("RegisterRepoParams"+" [gitUrl=")+ gitUrl)+", gitCommitHash=")+ gitCommitHash)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((("RegisterRepoParams"+" [gitUrl=")+ gitUrl)+", gitCommitHash=")+ gitCommitHash)+", async=")+ async)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -0,0 +1,267 @@
+package us.kbase.narrativemethodstore;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.io.IOUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import us.kbase.common.service.JsonServerMethod;
+import us.kbase.narrativemethodstore.metrics.Metrics;
+
+/**
+ * Measures latency, errors and payload sizes of JSON-RPC calls per method. Only first
+ * {@link #MAX_BUFFERED_BODY} bytes of request body are read into memory to find method
+ * name, the rest is streamed to the servlet as is (so its limit of RPC package size and
+ * disk cache of large requests still work). Response is counted while it's written.
+ */
+public class RpcMetrics {
+    public static final int MAX_BUFFERED_BODY = 64 * 1024;
+    private static final String UNKNOWN_METHOD = "unknown";
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    // Names of RPC methods, only these are used as metric names
+    private static final Set<String> rpcMethods = getRpcMethods();
+
+    private static Set<String> getRpcMethods() {
+        Set<String> ret = new HashSet<String>();
+        for (Method m : NarrativeMethodStoreServer.class.getMethods()) {
+            JsonServerMethod ann = m.getAnnotation(JsonServerMethod.class);
+            if (ann != null)
+                ret.add(getShortName(ann.rpc()));
+        }
+        return Collections.unmodifiableSet(ret);
+    }
+
+    private static String getShortName(String rpcMethod) {
+        int pos = rpcMethod.lastIndexOf('.');
+        return pos < 0 ? rpcMethod : rpcMethod.substring(pos + 1);
+    }
+
+    public static Call start(HttpServletRequest request, HttpServletResponse response) 
+            throws IOException {
+        return new Call(request, response);
+    }
+
+    /**
+     * Method name from JSON-RPC request body (or its beginning) or "unknown".
+     */
+    protected static String getMethodName(byte[] body) {
+        try {
+            JsonParser jp = jsonFactory.createParser(body);
+            try {
+                if (jp.nextToken() != JsonToken.START_OBJECT)
+                    return UNKNOWN_METHOD;
+                while (jp.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = jp.getCurrentName();
+                    JsonToken value = jp.nextToken();
+                    if (field.equals("method") && value == JsonToken.VALUE_STRING) {
+                        String name = getShortName(jp.getText());
+                        return rpcMethods.contains(name) ? name : UNKNOWN_METHOD;
+                    }
+                    jp.skipChildren();
+                }
+            } finally {
+                jp.close();
+            }
+        } catch (IOException ignore) {}
+        return UNKNOWN_METHOD;
+    }
+
+    public static class Call {
+        private final long start = System.nanoTime();
+        private final BufferedRequest request;
+        private final CountingResponse response;
+        private final String method;
+
+        private Call(HttpServletRequest request, HttpServletResponse response) 
+                throws IOException {
+            this.request = new BufferedRequest(request);
+            this.response = new CountingResponse(response);
+            this.method = getMethodName(this.request.prefix);
+        }
+
+        public HttpServletRequest getRequest() {
+            return request;
+        }
+
+        /**
+         * @return whole request body or null if it's longer than {@link #MAX_BUFFERED_BODY}
+         */
+        public byte[] getBody() {
+            return request.complete ? request.prefix : null;
+        }
+
+        public HttpServletResponse getResponse() {
+            return response;
+        }
+
+        public void finish() throws IOException {
+            response.flushWriter();
+            long time = System.nanoTime() - start;
+            boolean error = response.status >= 400;
+            Metrics.get(Metrics.GROUP_RPC, method).record(time, error);
+            Metrics.get(Metrics.GROUP_RPC, method).recordPayload(request.getBodySize(), 
+                    response.count);
+        }
+    }
+
+    /**
+     * Request with first bytes of the body read ahead. Complete (small) body can be read
+     * any number of times, longer body is read once: buffered prefix and then the rest 
+     * of original stream.
+     */
+    private static class BufferedRequest extends HttpServletRequestWrapper {
+        private final byte[] prefix;
+        private final boolean complete;
+        private long readSize = 0;
+
+        public BufferedRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            byte[] buf = new byte[MAX_BUFFERED_BODY + 1];
+            int len = IOUtils.read(request.getInputStream(), buf);
+            this.complete = len <= MAX_BUFFERED_BODY;
+            // one byte over the limit is kept as well, it's a part of the body
+            this.prefix = len < buf.length ? Arrays.copyOf(buf, len) : buf;
+        }
+
+        private long getBodySize() {
+            // servlet could stop reading long body (it's over size limit)
+            return complete ? prefix.length : Math.max(prefix.length, readSize);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            final InputStream is = complete ? new ByteArrayInputStream(prefix) : 
+                new SequenceInputStream(new ByteArrayInputStream(prefix), 
+                        super.getInputStream());
+            return new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    int ret = is.read();
+                    if (ret >= 0 && !complete)
+                        readSize++;
+                    return ret;
+                }
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int ret = is.read(b, off, len);
+                    if (ret > 0 && !complete)
+                        readSize += ret;
+                    return ret;
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String enc = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(), 
+                    enc == null ? "utf-8" : enc));
+        }
+
+        @Override
+        public int getContentLength() {
+            return complete ? prefix.length : super.getContentLength();
+        }
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private int status = SC_OK;
+        private long count = 0;
+        private ServletOutputStream os = null;
+        private PrintWriter writer = null;
+
+        public CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            status = sc;
+            super.setStatus(sc);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setStatus(int sc, String sm) {
+            status = sc;
+            super.setStatus(sc, sm);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            status = sc;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            status = sc;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (os == null) {
+                final ServletOutputStream target = super.getOutputStream();
+                os = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        count++;
+                        target.write(b);
+                    }
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        count += len;
+                        target.write(b, off, len);
+                    }
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+                };
+            }
+            return os;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String enc = getCharacterEncoding();
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), 
+                        enc == null ? "utf-8" : enc));
+            }
+            return writer;
+        }
+
+        private void flushWriter() {
+            if (writer != null)
+                writer.flush();
+        }
+    }
+}
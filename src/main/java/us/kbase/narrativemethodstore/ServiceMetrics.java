@@ -0,0 +1,101 @@
+package us.kbase.narrativemethodstore;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.cache.CacheStats;
+
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.metrics.Metrics;
+import us.kbase.narrativemethodstore.metrics.MetricsMXBean;
+
+/**
+ * Metrics of RPC methods, dynamic repo storage, git operations, index rebuilds and caches
+ * of the service. They are available through JMX and /metrics endpoint (if it's enabled by
+ * method-spec-metrics-endpoint configuration parameter).
+ */
+public class ServiceMetrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "us.kbase.narrativemethodstore:type=Metrics";
+
+    @Override
+    public Map<String, Map<String, Long>> getRpc() {
+        return Metrics.getGroup(Metrics.GROUP_RPC);
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getMongo() {
+        return Metrics.getGroup(Metrics.GROUP_MONGO);
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getGit() {
+        return Metrics.getGroup(Metrics.GROUP_GIT);
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getIndex() {
+        return Metrics.getGroup(Metrics.GROUP_INDEX);
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getCaches() {
+        Map<String, Map<String, Long>> ret = new LinkedHashMap<String, Map<String, Long>>();
+        // metrics don't start loading of the catalog, there are no caches before that
+        LocalGitDB db = NarrativeMethodStoreServer.getLocalGitDBIfInitialized();
+        if (db == null)
+            return ret;
+        Map<String, CacheStats> caches = db.getCacheStats();
+        for (Map.Entry<String, CacheStats> entry : caches.entrySet()) {
+            CacheStats cs = entry.getValue();
+            Map<String, Long> stats = new LinkedHashMap<String, Long>();
+            stats.put("hits", cs.hitCount());
+            stats.put("misses", cs.missCount());
+            stats.put("hit_rate_percent", Math.round(cs.hitRate() * 100));
+            stats.put("evictions", cs.evictionCount());
+            stats.put("load_errors", cs.loadExceptionCount());
+            stats.put("load_time_ms", cs.totalLoadTime() / 1000000);
+            ret.put(entry.getKey(), stats);
+        }
+        return ret;
+    }
+
+    /**
+     * Resets latency statistics, cache statistics are counted since start of the service.
+     */
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+
+    public Map<String, Map<String, Map<String, Long>>> getAll() {
+        Map<String, Map<String, Map<String, Long>>> ret = 
+                new LinkedHashMap<String, Map<String, Map<String, Long>>>();
+        ret.put(Metrics.GROUP_RPC, getRpc());
+        ret.put(Metrics.GROUP_MONGO, getMongo());
+        ret.put(Metrics.GROUP_GIT, getGit());
+        ret.put(Metrics.GROUP_INDEX, getIndex());
+        ret.put("caches", getCaches());
+        return ret;
+    }
+
+    public static void register() throws Exception {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new ServiceMetrics(), 
+                    new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException ignore) {
+            // registered by another instance of web application
+        }
+    }
+
+    public static void unregister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+    }
+}
@@ -0,0 +1,63 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.Category;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.TypeInfo;
+
+/**
+ * Result of list_categories for given tag and load flags. Collections which were not 
+ * requested are empty. It's serialized into JSON as array of four maps in the same order 
+ * as list_categories returns them.
+ */
+public class CategoriesListing {
+    private final Map<String, Category> categories;
+    private final Map<String, MethodBriefInfo> methods;
+    private final Map<String, AppBriefInfo> apps;
+    private final Map<String, TypeInfo> types;
+    
+    public CategoriesListing(NarrativeCategoriesIndex index, String tag, boolean loadMethods,
+            boolean loadApps, boolean loadTypes) {
+        this.categories = Collections.unmodifiableMap(index.getCategories());
+        this.methods = loadMethods ? Collections.unmodifiableMap(index.getMethods(tag)) :
+            Collections.<String, MethodBriefInfo>emptyMap();
+        this.apps = loadApps ? Collections.unmodifiableMap(index.getApps()) :
+            Collections.<String, AppBriefInfo>emptyMap();
+        this.types = loadTypes ? Collections.unmodifiableMap(index.getTypes()) :
+            Collections.<String, TypeInfo>emptyMap();
+    }
+    
+    public static String getKey(String tag, boolean loadMethods, boolean loadApps, 
+            boolean loadTypes) {
+        return tag + "/" + (loadMethods ? "m" : "") + (loadApps ? "a" : "") + 
+                (loadTypes ? "t" : "");
+    }
+    
+    public Map<String, Category> getCategories() {
+        return categories;
+    }
+    
+    public Map<String, MethodBriefInfo> getMethods() {
+        return methods;
+    }
+    
+    public Map<String, AppBriefInfo> getApps() {
+        return apps;
+    }
+    
+    public Map<String, TypeInfo> getTypes() {
+        return types;
+    }
+    
+    @JsonValue
+    public List<Object> asList() {
+        return Arrays.<Object>asList(categories, methods, apps, types);
+    }
+}
@@ -0,0 +1,113 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.util.ByteBufferInputStream;
+
+/**
+ * Method data keeping full info and spec as deflated JSON in direct (off-heap) buffers 
+ * instead of object graphs. They are parsed on every call of getter, or copied as JSON 
+ * without parsing. Brief info stays on heap since it's used by categories index anyway.
+ */
+public class CompactMethodData extends NarrativeMethodData {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ByteBuffer fullInfoBlob;
+    private final ByteBuffer specBlob;
+
+    public CompactMethodData(NarrativeMethodData data) throws IOException {
+        super(data.methodId, data.getMethodBriefInfo(), null, null);
+        this.sourceSize = data.getSourceSize();
+        this.fullInfoBlob = pack(data.getMethodFullInfo());
+        this.specBlob = pack(data.getMethodSpec());
+    }
+
+    @Override
+    public MethodFullInfo getMethodFullInfo() {
+        return unpack(fullInfoBlob, MethodFullInfo.class);
+    }
+
+    @Override
+    public MethodSpec getMethodSpec() {
+        return unpack(specBlob, MethodSpec.class);
+    }
+
+    @Override
+    public void writeMethodFullInfoJson(OutputStream os) throws IOException {
+        copy(fullInfoBlob, os);
+    }
+
+    @Override
+    public void writeMethodSpecJson(OutputStream os) throws IOException {
+        copy(specBlob, os);
+    }
+
+    /**
+     * Returns number of bytes kept in off-heap buffers.
+     */
+    public int getCompactSize() {
+        return (fullInfoBlob == null ? 0 : fullInfoBlob.capacity()) + 
+                (specBlob == null ? 0 : specBlob.capacity());
+    }
+
+    private static ByteBuffer pack(Object value) throws IOException {
+        if (value == null)
+            return null;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream dos = new DeflaterOutputStream(baos, deflater);
+            mapper.writeValue(dos, value);
+            dos.close();
+        } finally {
+            deflater.end();
+        }
+        byte[] data = baos.toByteArray();
+        ByteBuffer ret = ByteBuffer.allocateDirect(data.length);
+        ret.put(data);
+        ret.flip();
+        return ret.asReadOnlyBuffer();
+    }
+
+    private static InputStream open(ByteBuffer blob) {
+        // duplicate has its own position so concurrent readers don't interfere
+        return new InflaterInputStream(new ByteBufferInputStream(blob.duplicate()));
+    }
+
+    private static <T> T unpack(ByteBuffer blob, Class<T> type) {
+        if (blob == null)
+            return null;
+        try {
+            return mapper.readValue(open(blob), type);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error unpacking " + type.getSimpleName() + ": " + 
+                    ex.getMessage(), ex);
+        }
+    }
+
+    private static void copy(ByteBuffer blob, OutputStream os) throws IOException {
+        if (blob == null) {
+            os.write("null".getBytes("utf-8"));
+            return;
+        }
+        InputStream is = open(blob);
+        try {
+            IOUtils.copy(is, os);
+        } finally {
+            is.close();
+        }
+    }
+}
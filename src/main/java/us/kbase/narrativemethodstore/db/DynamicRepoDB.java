@@ -1,8 +1,11 @@
 package us.kbase.narrativemethodstore.db;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import us.kbase.narrativemethodstore.db.github.RepoTag;
@@ -24,6 +27,22 @@ public interface DynamicRepoDB {
     
     public RepoProvider getRepoDetailsHistory(String repoModuleName, long version) throws NarrativeMethodStoreException;
     
+    /**
+     * Lists versions of dev, beta and release tags of all repos which are not disabled 
+     * (tags which were never set are skipped).
+     * @return map from module name to versions of its tags
+     */
+    public Map<String, Map<RepoTag, Long>> listRepoTagVersions() throws NarrativeMethodStoreException;
+    
+    /**
+     * Loads details of several versions of several repos at once.
+     * @param moduleToVersions map from module name to versions
+     * @return map from module name to map from version to details (versions which 
+     * are not found are skipped)
+     */
+    public Map<String, Map<Long, RepoProvider>> getRepoDetailsHistory(
+            Map<String, Set<Long>> moduleToVersions) throws NarrativeMethodStoreException;
+    
     public void pushRepoToTag(String repoModuleName, RepoTag tag, String userId) throws NarrativeMethodStoreException;
 
     public Set<String> listRepoOwners(String repoModuleName) throws NarrativeMethodStoreException;
@@ -38,6 +57,11 @@ public interface DynamicRepoDB {
 
     public FileId saveFile(String moduleName, FileProvider file) throws NarrativeMethodStoreException;
 
+    /**
+     * Saves files in one batch, result contains ids in the same order as files.
+     */
+    public List<FileId> saveFiles(String moduleName, List<FileProvider> files) throws NarrativeMethodStoreException;
+
     public FilePointer loadFile(FileId fileId) throws NarrativeMethodStoreException;
     
     public enum RepoState {
@@ -59,4 +83,31 @@ public interface DynamicRepoDB {
         public long length() throws NarrativeMethodStoreException;
         public InputStream openStream() throws NarrativeMethodStoreException;
     }
+    
+    public static class LocalFileProvider implements FileProvider {
+        private final File file;
+        
+        public LocalFileProvider(File file) {
+            this.file = file;
+        }
+        
+        @Override
+        public String getName() {
+            return file.getName();
+        }
+        
+        @Override
+        public long length() {
+            return file.length();
+        }
+        
+        @Override
+        public InputStream openStream() throws NarrativeMethodStoreException {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
+    }
 }
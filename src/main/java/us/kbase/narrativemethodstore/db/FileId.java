@@ -15,4 +15,19 @@ public class FileId {
     public String getId() {
         return id;
     }
+    
+    @Override
+    public int hashCode() {
+        return id == null ? 0 : id.hashCode();
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        FileId other = (FileId)obj;
+        return id == null ? other.id == null : id.equals(other.id);
+    }
 }
@@ -2,6 +2,7 @@ package us.kbase.narrativemethodstore.db;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -183,10 +184,22 @@ public class JsonRepoProvider implements RepoProvider {
         }
     }
     
-    private static String fId(DynamicRepoDB db, String moduleName, FilePointer fp) throws NarrativeMethodStoreException {
-        if (fp.getFileId() != null)
-            return fp.getFileId().getId();
-        return db.saveFile(moduleName, fp.getFile()).getId();
+    /**
+     * Stores files which are not in DB yet in one batch.
+     * @return file ids in the same order as file pointers
+     */
+    private static List<String> fIds(DynamicRepoDB db, String moduleName, 
+            List<FilePointer> fps) throws NarrativeMethodStoreException {
+        List<DynamicRepoDB.FileProvider> toSave = new ArrayList<DynamicRepoDB.FileProvider>();
+        for (FilePointer fp : fps)
+            if (fp.getFileId() == null)
+                toSave.add(new DynamicRepoDB.LocalFileProvider(fp.getFile()));
+        Iterator<FileId> saved = toSave.isEmpty() ? Collections.<FileId>emptyIterator() :
+            db.saveFiles(moduleName, toSave).iterator();
+        List<String> ret = new ArrayList<String>();
+        for (FilePointer fp : fps)
+            ret.add((fp.getFileId() != null ? fp.getFileId() : saved.next()).getId());
+        return ret;
     }
     
     /**
@@ -206,31 +219,49 @@ public class JsonRepoProvider implements RepoProvider {
         ret.serviceLanguage = repo.getServiceLanguage();
         ret.moduleVersion = repo.getModuleVersion();
         ret.owners = repo.listOwners();
-        ret.readmeFile = fId(db, mn, repo.getReadmeFile());
         ret.uiNarrativeMethodIds = repo.listUINarrativeMethodIDs();
+        // all files are collected first and then stored into DB in one batch
+        List<FilePointer> fps = new ArrayList<FilePointer>();
+        fps.add(repo.getReadmeFile());
+        Map<String, List<String>> methodToScreenshotIds = new TreeMap<String, List<String>>();
+        for (String methodId : ret.uiNarrativeMethodIds) {
+            fps.add(repo.getUINarrativeMethodSpec(methodId));
+            fps.add(repo.getUINarrativeMethodDisplay(methodId));
+            List<String> screenshotIds = repo.listScreenshotIDs(methodId);
+            methodToScreenshotIds.put(methodId, screenshotIds);
+            for (String screenshotId : screenshotIds)
+                fps.add(repo.getScreenshot(methodId, screenshotId));
+        }
+        List<String> widgetIds = repo.listUIWidgetIds();
+        for (String widgetId : widgetIds)
+            fps.add(repo.getUIWidgetJS(widgetId));
+        FilePointer zipFp = repo.getRepoZip();
+        if (zipFp != null)
+            fps.add(zipFp);
+        Iterator<String> fileIds = fIds(db, mn, fps).iterator();
+        ret.readmeFile = fileIds.next();
         ret.uiNarrativeMethods = new TreeMap<String, MethodData>();
         for (String methodId : ret.uiNarrativeMethodIds) {
             MethodData md = new MethodData();
             ret.uiNarrativeMethods.put(methodId, md);
-            md.specFile = fId(db, mn, repo.getUINarrativeMethodSpec(methodId));
-            md.displayFile = fId(db, mn, repo.getUINarrativeMethodDisplay(methodId));
+            md.specFile = fileIds.next();
+            md.displayFile = fileIds.next();
             md.imageFileRefs = new ArrayList<FileRef>();
-            for (String screenshotId : repo.listScreenshotIDs(methodId)) {
+            for (String screenshotId : methodToScreenshotIds.get(methodId)) {
                 FileRef fr = new FileRef();
                 fr.fileName = screenshotId;
-                fr.innerRef = fId(db, mn, repo.getScreenshot(methodId, screenshotId));
+                fr.innerRef = fileIds.next();
                 md.imageFileRefs.add(fr);
             }
         }
         ret.uiWidgetFileRefs = new ArrayList<FileRef>();
-        for (String widgetId : repo.listUIWidgetIds()) {
+        for (String widgetId : widgetIds) {
             FileRef fr = new FileRef();
             fr.fileName = widgetId;
-            fr.innerRef = fId(db, mn, repo.getUIWidgetJS(widgetId));
+            fr.innerRef = fileIds.next();
             ret.uiWidgetFileRefs.add(fr);
         }
-        FilePointer zipFp = repo.getRepoZip();
-        ret.repoZip = zipFp == null ? null : fId(db, mn, zipFp);
+        ret.repoZip = zipFp == null ? null : fileIds.next();
         return ret;
     }
 
@@ -1,6 +1,7 @@
 package us.kbase.narrativemethodstore.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -26,8 +27,17 @@ public class NarrativeCategoriesIndex {
 	protected Map<String, TypeInfo> types;
 	protected Set<MethodId> dynamicRepoMethods;
     protected Map<String, Exception> dynamicRepoModuleNameToLoadingError;
+    protected Map<String, String> fileFingerprints;
+    protected Map<String, Long> dynamicRepoVersions;
     protected boolean invalid = false;
     protected final RepoTag defaultTagForGetters;
+    // Immutable views of methods for dev, beta and release tags, they are built by
+    // prepareTagViews() before index is published (or on first access after methods were
+    // changed while index is still being built).
+    protected volatile Map<RepoTag, TagView> tagViews = null;
+    // Dynamic repo methods grouped by getRepoVersionKey(module, tag), built on first access
+    // after dynamic repo methods were changed.
+    protected volatile Map<String, List<MethodId>> dynamicRepoMethodsByRepoTag = null;
     
 	public NarrativeCategoriesIndex(RepoTag defaultTagForGetters) {
 		categories = new HashMap<String,Category>();
@@ -36,6 +46,8 @@ public class NarrativeCategoriesIndex {
 		types = new HashMap<String, TypeInfo>();
 	    dynamicRepoMethods = new TreeSet<MethodId>();
 	    dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>();
+	    fileFingerprints = new HashMap<String, String>();
+	    dynamicRepoVersions = new TreeMap<String, Long>();
 	    this.defaultTagForGetters = defaultTagForGetters;
 	}
 	
@@ -45,6 +57,7 @@ public class NarrativeCategoriesIndex {
 	
 	public void updateAllMethods(Map<MethodId,MethodBriefInfo> methods) {
 		this.methods = methods;
+		this.tagViews = null;
 	}
 
 	public void updateAllApps(Map<String, AppBriefInfo> apps) {
@@ -58,9 +71,22 @@ public class NarrativeCategoriesIndex {
 	public void updateAllDynamicRepoMethods(Set<MethodId> dynamicRepoMethods,
 	        Map<String, Exception> dynamicRepoModuleNameToLoadingError) {
 	    this.dynamicRepoMethods = dynamicRepoMethods;
+	    this.dynamicRepoMethodsByRepoTag = null;
 	    this.dynamicRepoModuleNameToLoadingError = dynamicRepoModuleNameToLoadingError;
 	}
 	
+	/**
+	 * Stores the state the index was built from: fingerprints of the files of every
+	 * method/app/type folder in the spec repo (keyed by "methods/&lt;id&gt;" and so on) and
+	 * the versions of the dynamic repos keyed by {@link #getRepoVersionKey(String, RepoTag)}.
+	 * They are compared with the current state when the next index is built from this one.
+	 */
+	public void updateAllSources(Map<String, String> fileFingerprints,
+	        Map<String, Long> dynamicRepoVersions) {
+	    this.fileFingerprints = fileFingerprints;
+	    this.dynamicRepoVersions = dynamicRepoVersions;
+	}
+	
 	public boolean isInvalid() {
         return invalid;
     }
@@ -92,6 +118,7 @@ public class NarrativeCategoriesIndex {
 	
 	public void addOrUpdateMethod(MethodId methodId, MethodBriefInfo briefInfo) {
 		methods.put(methodId, briefInfo);
+		tagViews = null;
 	}
 
 	public void addOrUpdateApp(String appId, AppBriefInfo briefInfo) {
@@ -106,13 +133,107 @@ public class NarrativeCategoriesIndex {
 		return categories;
 	}
 	
+	/**
+	 * @return unmodifiable map from external method id to brief info of static methods 
+	 * and dynamic methods of given tag (default tag if it's null).
+	 */
 	public Map<String,MethodBriefInfo> getMethods(String tagName) {
+	    return getTagView(tagName).methods;
+	}
+	
+	/**
+	 * @return unmodifiable list of external ids of methods of given tag, with or without 
+	 * methods which were loaded with errors.
+	 */
+	public List<String> getMethodIds(String tagName, boolean withErrors) {
+	    TagView view = getTagView(tagName);
+	    return withErrors ? view.methodIds : view.validMethodIds;
+	}
+	
+	/**
+	 * @return unmodifiable sorted map from external method id to method name.
+	 */
+	public Map<String, String> getMethodIdsToNames(String tagName) {
+	    return getTagView(tagName).methodIdsToNames;
+	}
+	
+	/**
+	 * Builds views of methods for dev, beta and release tags so that getters of published
+	 * index don't need to do it on first call. Index shouldn't be changed after that.
+	 */
+	public void prepareTagViews() {
+	    if (tagViews == null)
+	        tagViews = buildTagViews();
+	}
+	
+	/**
+	 * Returns view of methods of given tag. Views of commit hash tags are not kept, any 
+	 * hash is accepted as tag so there is no bound on number of them, and they are rarely 
+	 * requested, so such view is built by scanning all methods on every call.
+	 */
+	protected TagView getTagView(String tagName) {
 	    RepoTag tag = tagName == null ? defaultTagForGetters : RepoTag.valueOf(tagName);
-	    Map<String, MethodBriefInfo> ret = new LinkedHashMap<String, MethodBriefInfo>();
-	    for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet())
-	        if ((!entry.getKey().isDynamic()) || entry.getKey().getTag().equals(tag))
-	            ret.put(entry.getKey().getExternalId(), entry.getValue());
-		return ret;
+	    Map<RepoTag, TagView> views = tagViews;
+	    if (views == null) {
+	        views = buildTagViews();
+	        tagViews = views;
+	    }
+	    TagView ret = views.get(tag);
+	    if (ret == null) {
+	        // dynamic methods of commit hash tags are not kept in index, so only static 
+	        // methods are here
+	        Map<String, MethodBriefInfo> tagMethods = new LinkedHashMap<String, MethodBriefInfo>();
+	        for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet())
+	            if ((!entry.getKey().isDynamic()) || entry.getKey().getTag().equals(tag))
+	                tagMethods.put(entry.getKey().getExternalId(), entry.getValue());
+	        ret = new TagView(tagMethods);
+	    }
+	    return ret;
+	}
+	
+	private Map<RepoTag, TagView> buildTagViews() {
+	    Map<RepoTag, Map<String, MethodBriefInfo>> tagToMethods = 
+	            new HashMap<RepoTag, Map<String, MethodBriefInfo>>();
+	    for (RepoTag tag : RepoTag.values())
+	        tagToMethods.put(tag, new LinkedHashMap<String, MethodBriefInfo>());
+	    for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet()) {
+	        MethodId mId = entry.getKey();
+	        if (mId.isDynamic()) {
+	            Map<String, MethodBriefInfo> tagMethods = tagToMethods.get(mId.getTag());
+	            if (tagMethods != null)
+	                tagMethods.put(mId.getExternalId(), entry.getValue());
+	        } else {
+	            for (Map<String, MethodBriefInfo> tagMethods : tagToMethods.values())
+	                tagMethods.put(mId.getExternalId(), entry.getValue());
+	        }
+	    }
+	    Map<RepoTag, TagView> ret = new HashMap<RepoTag, TagView>();
+	    for (Map.Entry<RepoTag, Map<String, MethodBriefInfo>> entry : tagToMethods.entrySet())
+	        ret.put(entry.getKey(), new TagView(entry.getValue()));
+	    return Collections.unmodifiableMap(ret);
+	}
+	
+	protected static class TagView {
+	    protected final Map<String, MethodBriefInfo> methods;
+	    protected final List<String> methodIds;
+	    protected final List<String> validMethodIds;
+	    protected final Map<String, String> methodIdsToNames;
+	    
+	    protected TagView(Map<String, MethodBriefInfo> methods) {
+	        this.methods = Collections.unmodifiableMap(methods);
+	        List<String> methodIds = new ArrayList<String>();
+	        List<String> validMethodIds = new ArrayList<String>();
+	        Map<String, String> methodIdsToNames = new TreeMap<String, String>();
+	        for (Map.Entry<String, MethodBriefInfo> entry : methods.entrySet()) {
+	            methodIds.add(entry.getKey());
+	            if (entry.getValue().getLoadingError() == null)
+	                validMethodIds.add(entry.getKey());
+	            methodIdsToNames.put(entry.getKey(), entry.getValue().getName());
+	        }
+	        this.methodIds = Collections.unmodifiableList(methodIds);
+	        this.validMethodIds = Collections.unmodifiableList(validMethodIds);
+	        this.methodIdsToNames = Collections.unmodifiableMap(methodIdsToNames);
+	    }
 	}
 
 	public Map<MethodId,MethodBriefInfo> getAllMethods() {
@@ -131,7 +252,41 @@ public class NarrativeCategoriesIndex {
         return dynamicRepoMethods;
     }
 	
+	/**
+	 * @return methods of given tag of dynamic repo (empty list if there are none)
+	 */
+	public List<MethodId> getDynamicRepoMethods(String repoModuleName, RepoTag tag) {
+	    Map<String, List<MethodId>> ret = dynamicRepoMethodsByRepoTag;
+	    if (ret == null) {
+	        ret = new HashMap<String, List<MethodId>>();
+	        for (MethodId mId : dynamicRepoMethods) {
+	            String key = getRepoVersionKey(mId.getRepoModuleName(), mId.getTag());
+	            List<MethodId> list = ret.get(key);
+	            if (list == null) {
+	                list = new ArrayList<MethodId>();
+	                ret.put(key, list);
+	            }
+	            list.add(mId);
+	        }
+	        dynamicRepoMethodsByRepoTag = ret;
+	    }
+	    List<MethodId> list = ret.get(getRepoVersionKey(repoModuleName, tag));
+	    return list == null ? Collections.<MethodId>emptyList() : list;
+	}
+	
 	public Map<String, Exception> getDynamicRepoModuleNameToLoadingError() {
         return dynamicRepoModuleNameToLoadingError;
     }
+	
+	public Map<String, String> getFileFingerprints() {
+	    return fileFingerprints;
+	}
+	
+	public Map<String, Long> getDynamicRepoVersions() {
+	    return dynamicRepoVersions;
+	}
+	
+	public static String getRepoVersionKey(String repoModuleName, RepoTag tag) {
+	    return repoModuleName + "/" + tag;
+	}
 }
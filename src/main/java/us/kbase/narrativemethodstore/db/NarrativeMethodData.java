@@ -1,5 +1,7 @@
 package us.kbase.narrativemethodstore.db;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -9,8 +11,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.*;
@@ -24,6 +28,10 @@ public class NarrativeMethodData {
 	protected MethodBriefInfo briefInfo;
 	protected MethodFullInfo fullInfo;
 	protected MethodSpec methodSpec;
+	protected long sourceSize;
+
+	private static final ObjectMapper jsonWriter = new ObjectMapper().configure(
+			JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 
 	public NarrativeMethodData(String methodId, JsonNode spec, Map<String, Object> display,
 	        FileLookup lookup, RepoTag tag) throws NarrativeMethodStoreException {
@@ -48,6 +56,17 @@ public class NarrativeMethodData {
 		}
 	}
 
+	/**
+	 * Restores method data which was already parsed before (for instance from catalog snapshot).
+	 */
+	public NarrativeMethodData(String methodId, MethodBriefInfo briefInfo,
+	        MethodFullInfo fullInfo, MethodSpec methodSpec) {
+	    this.methodId = methodId;
+	    this.briefInfo = briefInfo;
+	    this.fullInfo = fullInfo;
+	    this.methodSpec = methodSpec;
+	}
+
 	public MethodBriefInfo getMethodBriefInfo() {
 		return briefInfo;
 	}
@@ -60,6 +79,33 @@ public class NarrativeMethodData {
 		return methodSpec;
 	}
 
+	/**
+	 * Returns size in bytes of spec and display files this data was parsed from, or 0 if
+	 * it's unknown. It's used as cheap estimate of memory taken by parsed data.
+	 */
+	public long getSourceSize() {
+		return sourceSize;
+	}
+
+	public NarrativeMethodData withSourceSize(long sourceSize) {
+		this.sourceSize = sourceSize;
+		return this;
+	}
+
+	/**
+	 * Writes JSON of full info into stream (stream is not closed).
+	 */
+	public void writeMethodFullInfoJson(OutputStream os) throws IOException {
+		jsonWriter.writeValue(os, getMethodFullInfo());
+	}
+
+	/**
+	 * Writes JSON of spec into stream (stream is not closed).
+	 */
+	public void writeMethodSpecJson(OutputStream os) throws IOException {
+		jsonWriter.writeValue(os, getMethodSpec());
+	}
+
 
 	public void update(String methodId, JsonNode spec, Map<String, Object> display,
 			FileLookup lookup, String namespace, String serviceVersion,
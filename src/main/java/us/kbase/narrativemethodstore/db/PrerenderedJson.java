@@ -0,0 +1,145 @@
+package us.kbase.narrativemethodstore.db;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Immutable value built from one categories index together with its JSON form. JSON 
+ * (plain and gzipped) is rendered at most once, so it can be sent to any number of 
+ * clients without repeated serialization. Catalog version of the index is kept as well,
+ * it can be used as a tag of the content.
+ */
+public class PrerenderedJson<T> {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // magic, deflate method, no flags, no modification time, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte)0x8b, 8, 0, 0, 0, 0, 0, 0, (byte)0xff};
+    
+    private final T value;
+    private final String catalogVersion;
+    private volatile byte[] json = null;
+    private volatile byte[] gzippedJson = null;
+    // raw deflate blocks of JSON which are not final, so other blocks can follow them
+    private volatile byte[] deflatedJson = null;
+    
+    public PrerenderedJson(T value, String catalogVersion) {
+        this.value = value;
+        this.catalogVersion = catalogVersion;
+    }
+    
+    public T getValue() {
+        return value;
+    }
+    
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+    
+    public byte[] getJson() throws NarrativeMethodStoreException {
+        byte[] ret = json;
+        if (ret == null) {
+            try {
+                ret = mapper.writeValueAsBytes(value);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException("Error rendering JSON: " + 
+                        ex.getMessage(), ex);
+            }
+            json = ret;
+        }
+        return ret;
+    }
+    
+    public byte[] getGzippedJson() throws NarrativeMethodStoreException {
+        byte[] ret = gzippedJson;
+        if (ret == null) {
+            byte[] data = getJson();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 4 + 64);
+            try {
+                GZIPOutputStream gos = new GZIPOutputStream(baos);
+                gos.write(data);
+                gos.close();
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException("Error compressing JSON: " + 
+                        ex.getMessage(), ex);
+            }
+            ret = baos.toByteArray();
+            gzippedJson = ret;
+        }
+        return ret;
+    }
+    
+    public byte[] getDeflatedJson() throws NarrativeMethodStoreException {
+        byte[] ret = deflatedJson;
+        if (ret == null) {
+            byte[] data = getJson();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 4 + 64);
+            try {
+                deflate(data, false, baos);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException("Error compressing JSON: " + 
+                        ex.getMessage(), ex);
+            }
+            ret = baos.toByteArray();
+            deflatedJson = ret;
+        }
+        return ret;
+    }
+    
+    /**
+     * Writes one gzip member containing JSON surrounded by given prefix and suffix (like
+     * an envelope of JSON-RPC response). Only prefix and suffix are compressed here, 
+     * prerendered deflate blocks of JSON are copied as is. 
+     */
+    public void writeGzippedJson(byte[] prefix, byte[] suffix, OutputStream os) 
+            throws NarrativeMethodStoreException, IOException {
+        byte[] data = getJson();
+        byte[] deflated = getDeflatedJson();
+        CRC32 crc = new CRC32();
+        crc.update(prefix);
+        crc.update(data);
+        crc.update(suffix);
+        os.write(GZIP_HEADER);
+        deflate(prefix, false, os);
+        os.write(deflated);
+        deflate(suffix, true, os);
+        writeIntLE((int)crc.getValue(), os);
+        writeIntLE(prefix.length + data.length + suffix.length, os);
+    }
+    
+    /**
+     * Compresses data into raw deflate blocks. Blocks of not last part end with sync flush
+     * (byte aligned), so blocks of next part compressed separately can follow them.
+     */
+    private static void deflate(byte[] data, boolean last, OutputStream os) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            byte[] buf = new byte[8192];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished())
+                    os.write(buf, 0, deflater.deflate(buf));
+            } else {
+                int len;
+                do {
+                    len = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    os.write(buf, 0, len);
+                } while (len == buf.length);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static void writeIntLE(int value, OutputStream os) throws IOException {
+        for (int i = 0; i < 4; i++)
+            os.write((value >>> (8 * i)) & 0xff);
+    }
+}
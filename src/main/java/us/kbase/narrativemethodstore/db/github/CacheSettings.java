@@ -0,0 +1,89 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
+/**
+ * Limits of caches of full infos and specs. If memory budget is set caches are bounded
+ * by estimated size of entries (see {@link #estimateSize(long)}), otherwise by number
+ * of entries. Values can be additionally held through soft references so that GC can
+ * drop them under memory pressure. In compact mode full infos and specs of methods are
+ * kept serialized off heap (see {@link us.kbase.narrativemethodstore.db.CompactMethodData}).
+ */
+public class CacheSettings {
+    // Rough ratio between heap footprint of parsed beans and size of files they come from
+    public static final int HEAP_TO_SOURCE_RATIO = 4;
+    // Weight used when size of source files is unknown
+    public static final int DEFAULT_WEIGHT = 64 * 1024;
+
+    private final int maxEntries;
+    private final long memoryBudgetBytes;
+    private final boolean softValues;
+    private final boolean compact;
+
+    public CacheSettings(int maxEntries) {
+        this(maxEntries, 0, false, false);
+    }
+
+    /**
+     * @param maxEntries limit of number of entries used when memory budget is not set.
+     * @param memoryBudgetBytes estimated memory available for all caches of one categories
+     * index, 0 means caches are bounded by maxEntries.
+     * @param softValues if true values are held through soft references.
+     * @param compact if true method data is stored as compressed JSON in off-heap buffers.
+     */
+    public CacheSettings(int maxEntries, long memoryBudgetBytes, boolean softValues,
+            boolean compact) {
+        this.maxEntries = maxEntries;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.softValues = softValues;
+        this.compact = compact;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    public boolean isSoftValues() {
+        return softValues;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Builds cache with statistics recording.
+     * @param budgetShare part of memory budget given to this cache.
+     * @param weigher estimates size of entry in bytes, used only if memory budget is set.
+     */
+    public <K, V> LoadingCache<K, V> build(double budgetShare, Weigher<? super K, ? super V> weigher,
+            CacheLoader<? super K, V> loader) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (softValues)
+            builder.softValues();
+        if (memoryBudgetBytes <= 0)
+            return builder.maximumSize(maxEntries).build(loader);
+        long maxWeight = Math.max(1, (long)(memoryBudgetBytes * budgetShare));
+        CacheBuilder<K, V> weighted = builder.maximumWeight(maxWeight).weigher(weigher);
+        return weighted.build(loader);
+    }
+
+    /**
+     * Estimates heap size of beans parsed from spec and display files by size of these
+     * files (so that weighing of cache entry doesn't need to serialize it).
+     * @param sourceSize size of source files in bytes, 0 if unknown.
+     */
+    public static int estimateSize(long sourceSize) {
+        if (sourceSize <= 0)
+            return DEFAULT_WEIGHT;
+        return (int)Math.min(Integer.MAX_VALUE / HEAP_TO_SOURCE_RATIO, sourceSize) *
+                HEAP_TO_SOURCE_RATIO;
+    }
+}
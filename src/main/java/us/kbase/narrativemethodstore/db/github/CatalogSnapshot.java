@@ -0,0 +1,246 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.AppFullInfo;
+import us.kbase.narrativemethodstore.AppSpec;
+import us.kbase.narrativemethodstore.Category;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Parsed catalog (categories index together with loaded full infos and specs) stored
+ * in a file so that service can start serving requests without re-parsing spec-repo.
+ * File starts with magic number, format version and commit hash of spec-repo, the rest
+ * is gzipped JSON document. Snapshot is only a hint, it should be validated against
+ * spec-repo and dynamic repos after it's loaded.
+ */
+public class CatalogSnapshot {
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x4E4D5343;  // "NMSC"
+    private static final String FILE_PREFIX = "catalog_";
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    private static final ObjectMapper mapper = new ObjectMapper().configure(
+            DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String commitHash;
+    private final NarrativeCategoriesIndex index;
+    private final Map<MethodId, NarrativeMethodData> methodData;
+    private final Map<String, AppFullInfo> appFullInfos;
+    private final Map<String, AppSpec> appSpecs;
+
+    public CatalogSnapshot(String commitHash, NarrativeCategoriesIndex index,
+            Map<MethodId, NarrativeMethodData> methodData,
+            Map<String, AppFullInfo> appFullInfos, Map<String, AppSpec> appSpecs) {
+        this.commitHash = commitHash;
+        this.index = index;
+        this.methodData = methodData;
+        this.appFullInfos = appFullInfos;
+        this.appSpecs = appSpecs;
+    }
+
+    public String getCommitHash() {
+        return commitHash;
+    }
+
+    public NarrativeCategoriesIndex getIndex() {
+        return index;
+    }
+
+    public Map<MethodId, NarrativeMethodData> getMethodData() {
+        return methodData;
+    }
+
+    public Map<String, AppFullInfo> getAppFullInfos() {
+        return appFullInfos;
+    }
+
+    public Map<String, AppSpec> getAppSpecs() {
+        return appSpecs;
+    }
+
+    public static File getSnapshotFile(File dir, String commitHash) {
+        return new File(dir, FILE_PREFIX + commitHash + FILE_SUFFIX);
+    }
+
+    /**
+     * Writes snapshot into temporary file which then atomically replaces snapshot file for
+     * the same commit (where file system supports it), so that reader never sees partially
+     * written or missing snapshot. Snapshots of other commits are deleted.
+     */
+    public void save(File dir) throws NarrativeMethodStoreException {
+        if (!dir.exists())
+            dir.mkdirs();
+        File target = getSnapshotFile(dir, commitHash);
+        File temp = new File(dir, target.getName() + ".tmp");
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temp)));
+            try {
+                dos.writeInt(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeUTF(commitHash);
+                GZIPOutputStream gos = new GZIPOutputStream(dos);
+                mapper.writeValue(gos, toData());
+                gos.finish();
+            } finally {
+                dos.close();
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            temp.delete();
+            throw new NarrativeMethodStoreException("Error saving catalog snapshot: " +
+                    ex.getMessage(), ex);
+        }
+        for (File f : dir.listFiles())
+            if (f.getName().startsWith(FILE_PREFIX) && f.getName().endsWith(FILE_SUFFIX) &&
+                    !f.equals(target))
+                f.delete();
+    }
+
+    /**
+     * Loads snapshot stored for given commit hash of spec-repo.
+     * @return snapshot or null if there is no snapshot for this commit or it has
+     * different format version
+     */
+    public static CatalogSnapshot load(File dir, String commitHash,
+            RepoTag defaultTagForGetters) throws NarrativeMethodStoreException {
+        File f = getSnapshotFile(dir, commitHash);
+        if (!f.exists())
+            return null;
+        try {
+            // whole document is parsed into beans anyway, so file is just streamed
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(f)));
+            try {
+                if (dis.readInt() != MAGIC || dis.readInt() != FORMAT_VERSION ||
+                        !commitHash.equals(dis.readUTF()))
+                    return null;
+                SnapshotData data = mapper.readValue(new GZIPInputStream(dis),
+                        SnapshotData.class);
+                return fromData(commitHash, data, defaultTagForGetters);
+            } finally {
+                dis.close();
+            }
+        } catch (IOException ex) {
+            throw new NarrativeMethodStoreException("Error loading catalog snapshot " + f +
+                    ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private SnapshotData toData() {
+        SnapshotData ret = new SnapshotData();
+        ret.categories = index.getCategories();
+        ret.methods = new LinkedHashMap<String, MethodBriefInfo>();
+        for (Map.Entry<MethodId, MethodBriefInfo> entry : index.getAllMethods().entrySet())
+            ret.methods.put(entry.getKey().toString(), entry.getValue());
+        ret.apps = index.getApps();
+        ret.types = index.getTypes();
+        ret.dynamicRepoMethods = new ArrayList<String>();
+        for (MethodId mId : index.getDynamicRepoMethods())
+            ret.dynamicRepoMethods.add(mId.toString());
+        ret.dynamicRepoLoadingErrors = new TreeMap<String, String>();
+        for (Map.Entry<String, Exception> entry :
+                index.getDynamicRepoModuleNameToLoadingError().entrySet())
+            ret.dynamicRepoLoadingErrors.put(entry.getKey(), entry.getValue().getMessage());
+        ret.fileFingerprints = index.getFileFingerprints();
+        ret.dynamicRepoVersions = index.getDynamicRepoVersions();
+        ret.methodData = new LinkedHashMap<String, MethodDataEntry>();
+        for (Map.Entry<MethodId, NarrativeMethodData> entry : methodData.entrySet()) {
+            MethodDataEntry md = new MethodDataEntry();
+            md.briefInfo = entry.getValue().getMethodBriefInfo();
+            md.fullInfo = entry.getValue().getMethodFullInfo();
+            md.spec = entry.getValue().getMethodSpec();
+            md.sourceSize = entry.getValue().getSourceSize();
+            ret.methodData.put(entry.getKey().toString(), md);
+        }
+        ret.appFullInfos = appFullInfos;
+        ret.appSpecs = appSpecs;
+        return ret;
+    }
+
+    private static CatalogSnapshot fromData(String commitHash, SnapshotData data,
+            RepoTag defaultTagForGetters) {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(defaultTagForGetters);
+        index.updateAllCategories(data.categories);
+        Map<MethodId, MethodBriefInfo> methods = new TreeMap<MethodId, MethodBriefInfo>();
+        for (Map.Entry<String, MethodBriefInfo> entry : data.methods.entrySet())
+            methods.put(new MethodId(entry.getKey()), entry.getValue());
+        index.updateAllMethods(methods);
+        index.updateAllApps(data.apps);
+        index.updateAllTypes(data.types);
+        TreeSet<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
+        for (String mId : data.dynamicRepoMethods)
+            dynamicRepoMethods.add(new MethodId(mId));
+        Map<String, Exception> errors = new TreeMap<String, Exception>();
+        for (Map.Entry<String, String> entry : data.dynamicRepoLoadingErrors.entrySet())
+            errors.put(entry.getKey(), new NarrativeMethodStoreException(entry.getValue()));
+        index.updateAllDynamicRepoMethods(dynamicRepoMethods, errors);
+        index.updateAllSources(data.fileFingerprints, data.dynamicRepoVersions);
+        Map<MethodId, NarrativeMethodData> methodData =
+                new LinkedHashMap<MethodId, NarrativeMethodData>();
+        for (Map.Entry<String, MethodDataEntry> entry : data.methodData.entrySet()) {
+            MethodId mId = new MethodId(entry.getKey());
+            MethodDataEntry md = entry.getValue();
+            methodData.put(mId, new NarrativeMethodData(mId.getExternalId(), md.briefInfo,
+                    md.fullInfo, md.spec).withSourceSize(md.sourceSize));
+        }
+        return new CatalogSnapshot(commitHash, index, methodData, data.appFullInfos,
+                data.appSpecs);
+    }
+
+    public static class SnapshotData {
+        public Map<String, Category> categories;
+        public Map<String, MethodBriefInfo> methods;
+        public Map<String, AppBriefInfo> apps;
+        public Map<String, TypeInfo> types;
+        public List<String> dynamicRepoMethods;
+        public Map<String, String> dynamicRepoLoadingErrors;
+        public Map<String, String> fileFingerprints;
+        public Map<String, Long> dynamicRepoVersions;
+        public Map<String, MethodDataEntry> methodData;
+        public Map<String, AppFullInfo> appFullInfos;
+        public Map<String, AppSpec> appSpecs;
+    }
+
+    public static class MethodDataEntry {
+        public MethodBriefInfo briefInfo;
+        public MethodFullInfo fullInfo;
+        public MethodSpec spec;
+        // size of spec and display files used for weighing cache entries
+        public long sourceSize;
+    }
+}
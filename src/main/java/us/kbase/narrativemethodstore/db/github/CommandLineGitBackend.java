@@ -0,0 +1,68 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Runs every operation as git command in separate process.
+ */
+public class CommandLineGitBackend implements GitBackend {
+    
+    @Override
+    public String cloneBranch(URL gitRepoUrl, String gitBranch, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitClone(gitRepoUrl, gitBranch, gitLocalPath);
+    }
+    
+    @Override
+    public String pull(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitPull(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String fetch(File gitLocalPath, URL gitRepoUrl, String gitBranch)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitCommand("git fetch origin " + gitBranch, "fetch", gitLocalPath, 
+                gitRepoUrl);
+    }
+    
+    @Override
+    public String mergeFetchHead(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitCommand("git merge FETCH_HEAD", "merge FETCH_HEAD", gitLocalPath, 
+                gitRepoUrl);
+    }
+    
+    @Override
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.getCommitHash(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            return GitUtils.gitCommand("git rev-parse FETCH_HEAD", "rev-parse FETCH_HEAD", 
+                    gitLocalPath, gitRepoUrl).trim();
+        } catch (NarrativeMethodStoreInitializationException ex) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String getCommitInfo(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String listTree(File gitLocalPath, URL gitRepoUrl, String dirName)
+            throws NarrativeMethodStoreInitializationException {
+        return GitUtils.gitCommand("git ls-tree HEAD " + dirName + "/", "ls-tree", gitLocalPath, 
+                gitRepoUrl);
+    }
+}
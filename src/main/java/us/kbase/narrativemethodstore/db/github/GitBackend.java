@@ -0,0 +1,53 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Git operations used by LocalGitDB for the local copy of spec-repo.
+ */
+public interface GitBackend {
+    
+    /**
+     * Clones branch of git repo into local folder.
+     * @return output of the operation
+     */
+    public String cloneBranch(URL gitRepoUrl, String gitBranch, File gitLocalPath) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    public String pull(File gitLocalPath, URL gitRepoUrl) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    public String fetch(File gitLocalPath, URL gitRepoUrl, String gitBranch) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    public String mergeFetchHead(File gitLocalPath, URL gitRepoUrl) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    /**
+     * @return hash of commit HEAD points to
+     */
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    /**
+     * @return hash of commit fetched last time to be merged or null if nothing was fetched
+     */
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    /**
+     * @return description of HEAD commit (the same as 'git log -n 1' prints)
+     */
+    public String getCommitInfo(File gitLocalPath, URL gitRepoUrl) 
+            throws NarrativeMethodStoreInitializationException;
+    
+    /**
+     * @return lines of 'git ls-tree HEAD' for given folder in form 
+     * "&lt;mode&gt; &lt;type&gt; &lt;object&gt;\t&lt;path&gt;"
+     */
+    public String listTree(File gitLocalPath, URL gitRepoUrl, String dirName) 
+            throws NarrativeMethodStoreInitializationException;
+}
@@ -3,36 +3,179 @@ package us.kbase.narrativemethodstore.db.github;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.lib.Constants;
 
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
 
 public class GitHubRepoProvider extends FileRepoProvider {
+    public static final String MIRRORS_DIR = "git_mirrors";
+    // Only these paths are checked out, other files of module repo are not used
+    private static final List<String> USED_PATHS = Arrays.asList(
+            "kbase.yml", "kbase.yaml", "README.md", "ui");
+    // Cached copies not used for longer time or beyond this count (least recently used 
+    // first) are removed after each checkout
+    public static final int MAX_MIRRORS = 100;
+    public static final long MAX_MIRROR_AGE_MS = 30L * 24 * 3600 * 1000;
+    // Locks of cached copies by folder name, lock is removed together with its folder
+    private static final ConcurrentHashMap<String, Object> mirrorLocks = 
+            new ConcurrentHashMap<String, Object>();
+    
     protected String commitHash;
 
     public GitHubRepoProvider(URL url, String commitHash, File parentTempDir) throws NarrativeMethodStoreException {
-        super(prepareGitClone(url, generateTempDir(parentTempDir), commitHash), url);
+        this(prepareGitClone(url, generateTempDir(parentTempDir), commitHash), url);
+    }
+
+    private GitHubRepoProvider(Checkout checkout, URL url) throws NarrativeMethodStoreException {
+        super(checkout.rootDir, url);
+        this.commitHash = checkout.commitHash;
+    }
+
+    private static Checkout prepareGitClone(URL url, File rootDir, String commitHash) throws NarrativeMethodStoreException {
+        Checkout ret = null;
+        File parentTempDir = rootDir.getParentFile();
         try {
-            this.commitHash = GitUtils.getCommitHash(rootDir, url);
+            File mirrorDir = getMirrorDir(url, parentTempDir);
+            String key = mirrorDir.getName();
+            while (ret == null) {
+                Object lock = getMirrorLock(key);
+                synchronized (lock) {
+                    // lock could be removed together with evicted copy before we got it
+                    if (mirrorLocks.get(key) != lock)
+                        continue;
+                    try {
+                        updateMirror(url, parentTempDir, commitHash);
+                        String resolvedHash = JGitUtils.resolveCommit(mirrorDir, url, 
+                                commitHash == null ? Constants.HEAD : commitHash);
+                        if (resolvedHash == null)
+                            throw new NarrativeMethodStoreInitializationException("Cannot checkout " + 
+                                    url + ": commit " + commitHash + " is not found");
+                        JGitUtils.exportFiles(mirrorDir, url, resolvedHash, USED_PATHS, rootDir);
+                        mirrorDir.setLastModified(System.currentTimeMillis());
+                        ret = new Checkout(rootDir, resolvedHash);
+                    } finally {
+                        if (!mirrorDir.exists())
+                            mirrorLocks.remove(key, lock);
+                    }
+                }
+            }
+            evictMirrors(parentTempDir, key);
+            return ret;
         } catch (NarrativeMethodStoreException ex) {
             dispose(rootDir);
             throw ex;
         }
     }
 
-    private static File prepareGitClone(URL url, File rootDir, String commitHash) throws NarrativeMethodStoreException {
+    /**
+     * Removes cached copies (and their locks) which were not used for longer than
+     * {@link #MAX_MIRROR_AGE_MS} or are beyond {@link #MAX_MIRRORS} most recently used ones.
+     */
+    private static void evictMirrors(File parentTempDir, String usedKey) {
+        File[] mirrors = new File(parentTempDir, MIRRORS_DIR).listFiles();
+        if (mirrors == null)
+            return;
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        for (File mirror : mirrors)
+            lastUsed.put(mirror, mirror.lastModified());
+        Arrays.sort(mirrors, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(lastUsed.get(o2), lastUsed.get(o1));
+            }
+        });
+        long minTime = System.currentTimeMillis() - MAX_MIRROR_AGE_MS;
+        for (int i = 0; i < mirrors.length; i++) {
+            File mirror = mirrors[i];
+            String key = mirror.getName();
+            if (key.equals(usedKey) || (i < MAX_MIRRORS && lastUsed.get(mirror) >= minTime))
+                continue;
+            Object lock = getMirrorLock(key);
+            synchronized (lock) {
+                // skip if it was evicted or used by another thread meanwhile
+                if (mirrorLocks.get(key) != lock || mirror.lastModified() != lastUsed.get(mirror))
+                    continue;
+                try {
+                    dispose(mirror);
+                    System.out.println("[" + new Date() + "] NarrativeMethodStore.GitHubRepoProvider: " +
+                            "removed cached copy " + mirror);
+                } catch (NarrativeMethodStoreException ex) {
+                    System.err.println("[" + new Date() + "] NarrativeMethodStore.GitHubRepoProvider: " +
+                            "error removing cached copy " + mirror + ": " + ex.getMessage());
+                }
+                if (!mirror.exists())
+                    mirrorLocks.remove(key, lock);
+            }
+        }
+    }
+
+    /**
+     * Makes sure that bare copy of repo cached in temporary folder contains required commit 
+     * (or last commits of all branches if commit is not defined). Only objects which are not
+     * in cache yet are fetched from remote repo.
+     * @return folder of bare copy
+     */
+    private static File updateMirror(URL url, File parentTempDir, String commitHash) 
+            throws NarrativeMethodStoreException {
+        File mirrorDir = getMirrorDir(url, parentTempDir);
+        if (mirrorDir.exists()) {
+            if (commitHash != null && JGitUtils.resolveCommit(mirrorDir, url, commitHash) != null)
+                return mirrorDir;
+            try {
+                JGitUtils.gitFetchBare(mirrorDir, url);
+                return mirrorDir;
+            } catch (NarrativeMethodStoreException ex) {
+                // Cache could be broken, let's clone it again
+                System.out.println("[" + new Date() + "] NarrativeMethodStore.GitHubRepoProvider: " +
+                        "error fetching into cached copy of " + url + ", it will be cloned again (" + 
+                        ex.getMessage() + ")");
+                dispose(mirrorDir);
+            }
+        }
+        mirrorDir.getParentFile().mkdirs();
         try {
-            GitUtils.gitClone(url, rootDir);
-            if (commitHash != null)
-                GitUtils.gitCheckout(rootDir, url, commitHash);
-            return rootDir;
+            JGitUtils.gitCloneBare(url, mirrorDir);
         } catch (NarrativeMethodStoreException ex) {
-            dispose(rootDir);
+            dispose(mirrorDir);
             throw ex;
         }
+        return mirrorDir;
+    }
+
+    public static File getMirrorDir(URL url, File parentTempDir) throws NarrativeMethodStoreException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    String.valueOf(url).getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest)
+                name.append(String.format("%02x", b & 0xff));
+            return new File(new File(parentTempDir, MIRRORS_DIR), name + ".git");
+        } catch (Exception ex) {
+            throw new NarrativeMethodStoreException(ex.getMessage(), ex);
+        }
+    }
+
+    private static Object getMirrorLock(String key) {
+        Object lock = mirrorLocks.get(key);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = mirrorLocks.putIfAbsent(key, newLock);
+            if (lock == null)
+                lock = newLock;
+        }
+        return lock;
     }
 
     private static File generateTempDir(File parentTempDir) throws NarrativeMethodStoreException {
@@ -43,6 +186,16 @@ public class GitHubRepoProvider extends FileRepoProvider {
         }
     }
     
+    private static class Checkout {
+        final File rootDir;
+        final String commitHash;
+
+        Checkout(File rootDir, String commitHash) {
+            this.rootDir = rootDir;
+            this.commitHash = commitHash;
+        }
+    }
+
     @Override
     public String getGitCommitHash() {
         return commitHash;
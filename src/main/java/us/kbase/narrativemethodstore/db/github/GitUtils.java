@@ -16,7 +16,7 @@ public class GitUtils {
      */
     public static String gitClone(URL gitRepoUrl, String gitBranch, File gitLocalPath) throws NarrativeMethodStoreInitializationException {
         try {
-            return gitCommand("git clone --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
+            return gitCommand("git clone --branch "+gitBranch+" "+toGitUrl(gitRepoUrl)+" "+gitLocalPath.getAbsolutePath(), 
                     "clone", gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
         } catch (IOException e) {
             throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
@@ -29,13 +29,22 @@ public class GitUtils {
      */
     public static String gitClone(URL gitRepoUrl, File gitLocalPath) throws NarrativeMethodStoreInitializationException {
         try {
-            return gitCommand("git clone "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
+            return gitCommand("git clone "+toGitUrl(gitRepoUrl)+" "+gitLocalPath.getAbsolutePath(), 
                     "clone", gitLocalPath.getCanonicalFile().getParentFile(), gitRepoUrl);
         } catch (IOException e) {
             throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Java keeps local file URLs in "file:/path" form which is not accepted by git.
+     */
+    public static String toGitUrl(URL gitRepoUrl) {
+        if ("file".equals(gitRepoUrl.getProtocol()))
+            return "file://" + gitRepoUrl.getPath();
+        return gitRepoUrl.toString();
+    }
+
     /**
      * Runs a git pull on the local git spec repo.
      */
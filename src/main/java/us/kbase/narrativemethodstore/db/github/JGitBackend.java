@@ -0,0 +1,63 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+
+import org.eclipse.jgit.lib.Constants;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Runs every operation in process by JGit, so neither refresh of spec-repo nor reading its
+ * objects forks git processes.
+ */
+public class JGitBackend implements GitBackend {
+    
+    @Override
+    public String cloneBranch(URL gitRepoUrl, String gitBranch, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.gitClone(gitRepoUrl, gitBranch, gitLocalPath);
+    }
+    
+    @Override
+    public String pull(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.gitPull(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String fetch(File gitLocalPath, URL gitRepoUrl, String gitBranch)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.gitFetch(gitLocalPath, gitRepoUrl, gitBranch);
+    }
+    
+    @Override
+    public String mergeFetchHead(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.gitMergeFetchHead(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.getCommitHash(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.resolveCommit(gitLocalPath, gitRepoUrl, Constants.FETCH_HEAD);
+    }
+    
+    @Override
+    public String getCommitInfo(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String listTree(File gitLocalPath, URL gitRepoUrl, String dirName)
+            throws NarrativeMethodStoreInitializationException {
+        return JGitUtils.listTree(gitLocalPath, gitRepoUrl, dirName);
+    }
+}
@@ -0,0 +1,300 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Git operations done in process by JGit. Methods have the same meaning and output format
+ * as corresponding methods of {@link GitUtils} which run git commands.
+ */
+public class JGitUtils {
+
+    /**
+     * Clones branch of the git repo to the target local file location.
+     */
+    public static String gitClone(URL gitRepoUrl, String gitBranch, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            Git git = Git.cloneRepository().setURI(GitUtils.toGitUrl(gitRepoUrl))
+                    .setBranch(gitBranch).setDirectory(gitLocalPath).call();
+            git.close();
+            return "Cloned " + gitRepoUrl + " (branch " + gitBranch + ") into " + gitLocalPath;
+        } catch (Exception e) {
+            throw error("clone", gitRepoUrl, e);
+        }
+    }
+
+    /**
+     * Creates bare copy of the git repo (branches and tags only) in the target local file
+     * location.
+     */
+    public static String gitCloneBare(URL gitRepoUrl, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            Git git = Git.cloneRepository().setURI(GitUtils.toGitUrl(gitRepoUrl)).setBare(true)
+                    .setCloneAllBranches(true).setDirectory(gitLocalPath).call();
+            git.close();
+            return "Cloned " + gitRepoUrl + " into " + gitLocalPath;
+        } catch (Exception e) {
+            throw error("clone", gitRepoUrl, e);
+        }
+    }
+
+    /**
+     * Fetches new branches, tags and commits into the bare copy of the git repo.
+     */
+    public static String gitFetchBare(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        try {
+            return git.fetch().setRemote(GitUtils.toGitUrl(gitRepoUrl))
+                    .setRefSpecs(new RefSpec("+refs/heads/*:refs/heads/*"))
+                    .setTagOpt(TagOpt.FETCH_TAGS).setRemoveDeletedRefs(true).call()
+                    .getMessages();
+        } catch (Exception e) {
+            throw error("fetch", gitRepoUrl, e);
+        } finally {
+            git.close();
+        }
+    }
+
+    /**
+     * Fetches branch from origin, fetched commit is stored in FETCH_HEAD.
+     */
+    public static String gitFetch(File gitLocalPath, URL gitRepoUrl, String gitBranch)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        try {
+            return git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRefSpecs(new RefSpec("+refs/heads/" + gitBranch + ":refs/remotes/" +
+                            Constants.DEFAULT_REMOTE_NAME + "/" + gitBranch)).call()
+                    .getMessages();
+        } catch (Exception e) {
+            throw error("fetch", gitRepoUrl, e);
+        } finally {
+            git.close();
+        }
+    }
+
+    /**
+     * Merges FETCH_HEAD into current branch.
+     * @return "Already up-to-date." if there is nothing to merge
+     */
+    public static String gitMergeFetchHead(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        try {
+            ObjectId fetchHead = git.getRepository().resolve(Constants.FETCH_HEAD);
+            if (fetchHead == null)
+                throw new IllegalStateException("FETCH_HEAD is not found");
+            MergeResult res = git.merge().include(fetchHead).call();
+            return checkMerge(res, gitRepoUrl);
+        } catch (NarrativeMethodStoreInitializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw error("merge FETCH_HEAD", gitRepoUrl, e);
+        } finally {
+            git.close();
+        }
+    }
+
+    /**
+     * Runs a git pull on the local git spec repo.
+     */
+    public static String gitPull(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        try {
+            PullResult res = git.pull().call();
+            if (res.getMergeResult() == null)
+                return res.toString();
+            return checkMerge(res.getMergeResult(), gitRepoUrl);
+        } catch (NarrativeMethodStoreInitializationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw error("pull", gitRepoUrl, e);
+        } finally {
+            git.close();
+        }
+    }
+
+    private static String checkMerge(MergeResult res, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        if (res.getMergeStatus() == MergeResult.MergeStatus.ALREADY_UP_TO_DATE)
+            return "Already up-to-date.";
+        if (!res.getMergeStatus().isSuccessful())
+            throw new NarrativeMethodStoreInitializationException("Cannot merge " + gitRepoUrl +
+                    ": " + res.getMergeStatus());
+        return res.toString();
+    }
+
+    /**
+     * @return hash of commit given revision points to or null if it's not found
+     */
+    public static String resolveCommit(File gitLocalPath, URL gitRepoUrl, String revision)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        try {
+            ObjectId ret = git.getRepository().resolve(revision + "^{commit}");
+            return ret == null ? null : ret.getName();
+        } catch (Exception e) {
+            // missing objects of given hash, ambiguous names and so on
+            return null;
+        } finally {
+            git.close();
+        }
+    }
+
+    public static String getCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        String ret = resolveCommit(gitLocalPath, gitRepoUrl, Constants.HEAD);
+        if (ret == null)
+            throw new NarrativeMethodStoreInitializationException("Cannot rev-parse HEAD " +
+                    gitRepoUrl + ": HEAD is not found");
+        return ret;
+    }
+
+    /**
+     * @return description of HEAD commit in the same format as 'git log -n 1' prints
+     */
+    public static String getCommitInfo(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        RevWalk rw = new RevWalk(git.getRepository());
+        try {
+            RevCommit commit = rw.parseCommit(git.getRepository().resolve(Constants.HEAD));
+            PersonIdent author = commit.getAuthorIdent();
+            SimpleDateFormat dateFormat = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z",
+                    Locale.US);
+            dateFormat.setTimeZone(author.getTimeZone());
+            StringBuilder ret = new StringBuilder();
+            ret.append("commit ").append(commit.getName()).append("\n");
+            ret.append("Author: ").append(author.getName()).append(" <")
+                .append(author.getEmailAddress()).append(">\n");
+            ret.append("Date:   ").append(dateFormat.format(author.getWhen())).append("\n\n");
+            for (String line : commit.getFullMessage().trim().split("\n"))
+                ret.append("    ").append(line).append("\n");
+            return ret.toString();
+        } catch (Exception e) {
+            throw error("log -n 1", gitRepoUrl, e);
+        } finally {
+            rw.close();
+            git.close();
+        }
+    }
+
+    /**
+     * @return lines of 'git ls-tree HEAD' for given folder in form
+     * "&lt;mode&gt; &lt;type&gt; &lt;object&gt;\t&lt;path&gt;", empty string if there is no
+     * such folder
+     */
+    public static String listTree(File gitLocalPath, URL gitRepoUrl, String dirName)
+            throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        Repository repo = git.getRepository();
+        RevWalk rw = new RevWalk(repo);
+        try {
+            RevCommit head = rw.parseCommit(repo.resolve(Constants.HEAD));
+            TreeWalk dir = TreeWalk.forPath(repo, dirName, head.getTree());
+            if (dir == null || !dir.isSubtree())
+                return "";
+            TreeWalk tw = new TreeWalk(repo);
+            try {
+                tw.addTree(dir.getObjectId(0));
+                StringBuilder ret = new StringBuilder();
+                while (tw.next()) {
+                    FileMode mode = tw.getFileMode(0);
+                    ret.append(String.format("%06o", mode.getBits())).append(" ")
+                        .append(Constants.typeString(mode.getObjectType())).append(" ")
+                        .append(tw.getObjectId(0).getName()).append("\t")
+                        .append(dirName).append("/").append(tw.getPathString()).append("\n");
+                }
+                return ret.toString();
+            } finally {
+                tw.close();
+                dir.close();
+            }
+        } catch (Exception e) {
+            throw error("ls-tree", gitRepoUrl, e);
+        } finally {
+            rw.close();
+            git.close();
+        }
+    }
+
+    /**
+     * Writes files of the commit which are stored under given paths (files or folders) into
+     * target folder. Nothing else is written, target folder is not a git repo.
+     */
+    public static void exportFiles(File gitLocalPath, URL gitRepoUrl, String commitHash,
+            List<String> paths, File targetDir) throws NarrativeMethodStoreInitializationException {
+        Git git = open(gitLocalPath, gitRepoUrl);
+        Repository repo = git.getRepository();
+        RevWalk rw = new RevWalk(repo);
+        TreeWalk tw = new TreeWalk(repo);
+        try {
+            tw.addTree(rw.parseCommit(ObjectId.fromString(commitHash)).getTree());
+            tw.setRecursive(true);
+            tw.setFilter(PathFilterGroup.createFromStrings(paths));
+            targetDir.mkdirs();
+            while (tw.next()) {
+                FileMode mode = tw.getFileMode(0);
+                // symlinks and submodules are not used by catalog
+                if (mode != FileMode.REGULAR_FILE && mode != FileMode.EXECUTABLE_FILE)
+                    continue;
+                File f = new File(targetDir, tw.getPathString());
+                f.getParentFile().mkdirs();
+                OutputStream os = new FileOutputStream(f);
+                try {
+                    repo.open(tw.getObjectId(0)).copyTo(os);
+                } finally {
+                    os.close();
+                }
+            }
+        } catch (Exception e) {
+            throw error("checkout", gitRepoUrl, e);
+        } finally {
+            tw.close();
+            rw.close();
+            git.close();
+        }
+    }
+
+    private static Git open(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            return Git.open(gitLocalPath);
+        } catch (IOException e) {
+            throw error("open", gitRepoUrl, e);
+        }
+    }
+
+    private static NarrativeMethodStoreInitializationException error(String nameOfCmd,
+            URL gitRepoUrl, Exception e) {
+        return new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " " +
+                gitRepoUrl + ": " + e.getMessage(), e);
+    }
+}
@@ -1,41 +1,58 @@
 package us.kbase.narrativemethodstore.db.github;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import us.kbase.narrativemethodstore.AppBriefInfo;
 import us.kbase.narrativemethodstore.AppFullInfo;
 import us.kbase.narrativemethodstore.AppSpec;
+import us.kbase.narrativemethodstore.Category;
 import us.kbase.narrativemethodstore.MethodBriefInfo;
 import us.kbase.narrativemethodstore.MethodFullInfo;
 import us.kbase.narrativemethodstore.MethodSpec;
 import us.kbase.narrativemethodstore.RepoDetails;
 import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.CategoriesListing;
+import us.kbase.narrativemethodstore.db.CompactMethodData;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB;
 import us.kbase.narrativemethodstore.db.FileLookup;
 import us.kbase.narrativemethodstore.db.FilePointer;
@@ -43,11 +60,13 @@ import us.kbase.narrativemethodstore.db.NarrativeAppData;
 import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
 import us.kbase.narrativemethodstore.db.NarrativeMethodData;
 import us.kbase.narrativemethodstore.db.NarrativeTypeData;
+import us.kbase.narrativemethodstore.db.PrerenderedJson;
 import us.kbase.narrativemethodstore.db.RepoProvider;
 import us.kbase.narrativemethodstore.db.ServiceUrlTemplateEvaluater;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB.RepoState;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+import us.kbase.narrativemethodstore.metrics.Metrics;
 import us.kbase.narrativemethodstore.util.TextUtils;
 
 public class LocalGitDB {
@@ -57,16 +76,17 @@ public class LocalGitDB {
 	protected final File gitLocalPath;
 	protected final int refreshTimeInMinutes;
 	protected final int cacheSize;
+	protected final CacheSettings cacheSettings;
 	
 	protected final ObjectMapper mapper = new ObjectMapper();
 	
 	protected long lastPullTime = -1;
 	protected String lastCommit = null;
+	protected volatile String lastCommitInfo = null;
 	
-	protected NarrativeCategoriesIndex narCatIndex;
-	protected final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
-	protected final LoadingCache<String, AppFullInfo> appFullInfoCache;
-	protected final LoadingCache<String, AppSpec> appSpecCache;
+	// Categories index together with caches built on top of it. Readers only take 
+	// current reference and never block, refresh replaces the whole generation at once.
+	protected volatile IndexGeneration current;
 	protected static Thread refreshingThread = null;
     protected boolean inGitFetch = false;
     protected boolean gitMergeWasDoneAfterFetch = false;
@@ -76,36 +96,63 @@ public class LocalGitDB {
 	protected final DynamicRepoDB dynamicRepos;
 	protected final ServiceUrlTemplateEvaluater srvUrlTemplEval;
 	protected final RepoTag defaultTagForGetters;
+	protected final ExecutorService indexLoaderPool;
+	protected final File catalogSnapshotDir;
+	protected final ExecutorService snapshotWriter;
+	protected final GitBackend git;
+	// Statistics of caches of generations which were replaced, keyed by cache name
+	protected final Map<String, CacheStats> retiredCacheStats = new LinkedHashMap<String, CacheStats>();
 	
 	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
 	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
 	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters) throws NarrativeMethodStoreInitializationException {
+	    this(gitRepoUrl, branch, localPath, refreshTimeInMinutes, cacheSize, dynamicRepos, tempDir, 
+	            srvUrlTemplEval, defaultTagForGetters, 1, false);
+	}
+	
+	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
+	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        int indexLoaderThreads, boolean useCatalogSnapshot) 
+	                throws NarrativeMethodStoreInitializationException {
+	    this(gitRepoUrl, branch, localPath, refreshTimeInMinutes, cacheSize, dynamicRepos, tempDir, 
+	            srvUrlTemplEval, defaultTagForGetters, indexLoaderThreads, useCatalogSnapshot,
+	            new JGitBackend());
+	}
+	
+	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
+	        int cacheSize, DynamicRepoDB dynamicRepos, File tempDir,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        int indexLoaderThreads, boolean useCatalogSnapshot, GitBackend git) 
+	                throws NarrativeMethodStoreInitializationException {
+	    this(gitRepoUrl, branch, localPath, refreshTimeInMinutes, new CacheSettings(cacheSize),
+	            dynamicRepos, tempDir, srvUrlTemplEval, defaultTagForGetters, indexLoaderThreads,
+	            useCatalogSnapshot, git);
+	}
+	
+	/**
+	 * @param cacheSettings limits of caches of full infos and specs.
+	 * @param indexLoaderThreads number of threads used to load specs when the categories 
+	 * index is rebuilt, 1 means specs are loaded one by one in the rebuilding thread.
+	 * @param useCatalogSnapshot if true then parsed catalog is saved into temp dir after 
+	 * every index rebuild and loaded from there at startup (with validation in background).
+	 * @param git implementation of git operations on local copy of spec-repo.
+	 */
+	public LocalGitDB(URL gitRepoUrl, String branch, File localPath, int refreshTimeInMinutes, 
+	        CacheSettings cacheSettings, DynamicRepoDB dynamicRepos, File tempDir,
+	        ServiceUrlTemplateEvaluater srvUrlTemplEval, RepoTag defaultTagForGetters,
+	        int indexLoaderThreads, boolean useCatalogSnapshot, GitBackend git) 
+	                throws NarrativeMethodStoreInitializationException {
 		this.gitRepoUrl = gitRepoUrl;
+		this.git = git;
 		this.gitBranch = branch;
 		this.gitLocalPath = localPath;
 		this.refreshTimeInMinutes = refreshTimeInMinutes;
-		this.cacheSize = cacheSize;
-        this.methodDataCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-                new CacheLoader<MethodId, NarrativeMethodData>() {
-                    @Override
-                    public NarrativeMethodData load(MethodId methodId) throws NarrativeMethodStoreException {
-                        return loadMethodDataUncached(methodId, narCatIndex);
-                    }
-                });
-		this.appFullInfoCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-				new CacheLoader<String, AppFullInfo>() {
-					@Override
-					public AppFullInfo load(String methodId) throws NarrativeMethodStoreException {
-						return loadAppDataUncached(methodId).getAppFullInfo();
-					}
-				});
-		this.appSpecCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(
-				new CacheLoader<String, AppSpec>() {
-					@Override
-					public AppSpec load(String methodId) throws NarrativeMethodStoreException {
-						return loadAppDataUncached(methodId).getAppSpec();
-					}
-				});
+		this.cacheSize = cacheSettings.getMaxEntries();
+		this.cacheSettings = cacheSettings;
+		this.indexLoaderPool = indexLoaderThreads > 1 ? Executors.newFixedThreadPool(
+		        indexLoaderThreads, new ThreadFactoryBuilder().setDaemon(true)
+		        .setNameFormat("nms-index-loader-%d").build()) : null;
 		if (!localPath.exists())
 			localPath.mkdirs();
 		initializeLocalRepo();
@@ -113,8 +160,14 @@ public class LocalGitDB {
         this.dynamicRepos = dynamicRepos;
         this.srvUrlTemplEval = srvUrlTemplEval;
         this.defaultTagForGetters = defaultTagForGetters;
+        this.catalogSnapshotDir = useCatalogSnapshot && tempDir != null ? 
+                new File(tempDir, "catalog_snapshots") : null;
+        this.snapshotWriter = catalogSnapshotDir == null ? null : 
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("nms-snapshot-writer-%d").build());
         try {
-            loadCategoriesIndex();
+            if (!loadCatalogSnapshot())
+                loadCategoriesIndex();
         } catch (NarrativeMethodStoreInitializationException ex) {
             throw ex;
         } catch(NarrativeMethodStoreException e) {
@@ -132,91 +185,39 @@ public class LocalGitDB {
 		} catch (IOException e) {
 			throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+", error deleting old directory: " + e.getMessage(), e);
 		}
-		String cloneStatus = GitUtils.gitClone(gitRepoUrl, gitBranch, gitLocalPath);
+		String cloneStatus = git.cloneBranch(gitRepoUrl, gitBranch, gitLocalPath);
 		this.lastPullTime = System.currentTimeMillis();
-		this.lastCommit = GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
 		System.out.println(cloneStatus);
 		try {
 		    gitPull();
 		} catch (Exception ex) {
             System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " + ex.getMessage());
 		}
+		this.lastCommit = git.getHeadCommitHash(gitLocalPath, gitRepoUrl);
+		this.lastCommitInfo = git.getCommitInfo(gitLocalPath, gitRepoUrl);
 		startRefreshingThread();
 	}
 
-	/**
-	 * Clones the configured git repo to the target local file location, returns standard output of the command
-	 * if successful, otherwise throws an exception.
-	 */
-	protected String gitClone() throws NarrativeMethodStoreInitializationException {
-		try {
-			return gitCommand("git clone --branch "+gitBranch+" "+gitRepoUrl+" "+gitLocalPath.getAbsolutePath(), 
-					"clone", gitLocalPath.getCanonicalFile().getParentFile());
-		} catch (IOException e) {
-			throw new NarrativeMethodStoreInitializationException("Cannot clone "+gitRepoUrl+": " + e.getMessage(), e);
-		}
-	}
-	
 	/**
 	 * Runs a git pull on the local git spec repo.
 	 */
 	protected String gitPull() throws NarrativeMethodStoreInitializationException {
-		return gitCommand("git pull", "pull", gitLocalPath);
+		return git.pull(gitLocalPath, gitRepoUrl);
 	}
 
 	/**
      * Runs a git fetch on the local git spec repo.
      */
     protected String gitFetch() throws NarrativeMethodStoreInitializationException {
-        return gitCommand("git fetch origin " + gitBranch, "fetch", gitLocalPath);
+        return git.fetch(gitLocalPath, gitRepoUrl, gitBranch);
     }
 
     /**
      * Runs a git merge FETCH_HEAD on the local git spec repo.
      */
     protected String gitMergeFetchHead() throws NarrativeMethodStoreInitializationException {
-        return gitCommand("git merge FETCH_HEAD", "merge FETCH_HEAD", gitLocalPath);
+        return git.mergeFetchHead(gitLocalPath, gitRepoUrl);
     }
-
-	protected String gitCommand(String fullCmd, String nameOfCmd, File curDir) throws NarrativeMethodStoreInitializationException {
-		try {
-			Process p = Runtime.getRuntime().exec(fullCmd, null, curDir);
-			
-			BufferedReader stdOut = new BufferedReader(new InputStreamReader(p.getInputStream()));
-			BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-			StringBuilder out = new StringBuilder();
-			StringBuilder error = new StringBuilder();
-			Thread outT = readInThread(stdOut, out);
-			Thread errT = readInThread(stdError, error);
-			
-			outT.join();
-			errT.join();
-			int exitcode = p.waitFor();
-			
-			if(exitcode!=0) {
-				throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + error);
-			}
-			return out.toString();
-		} catch (Exception e) {
-			throw new NarrativeMethodStoreInitializationException("Cannot " + nameOfCmd + " "+gitRepoUrl+": " + e.getMessage(), e);
-		}
-	}
-
-	private Thread readInThread(final BufferedReader stdOut, final StringBuilder out) {
-		Thread ret = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					String s1 = null;
-					while ((s1 = stdOut.readLine()) != null) { out.append(s1+"\n"); }
-				} catch (IOException ex) {
-					throw new IllegalStateException(ex);
-				}
-			}
-		});
-		ret.start();
-		return ret;
-	}
 	
 	public void stopRefreshingThread() {
 	    needToStopRefreshingThread = true;
@@ -267,29 +268,30 @@ public class LocalGitDB {
 	}
 	
 	/**
-	 * We need to call this method at the beginning of every public access method.
-	 * This method refreshes file copy of specs-repo if it's necessary and clear
-	 * caches in case something was changed.
+	 * This method is called by refreshing thread after each git fetch. It merges fetched 
+	 * changes into file copy of specs-repo if it's necessary and publishes new index 
+	 * generation in case something was changed. Public access methods don't call it, so 
+	 * they never wait for git merge or index rebuild.
 	 */
 	public synchronized void checkForChanges() {
-	    if (refreshingThread == null) {
-            System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing thread wasn't started for some reason");
-	        startRefreshingThread();
-	        return;
-	    }
 		if (inGitFetch || gitMergeWasDoneAfterFetch)
 			return;
 		gitMergeWasDoneAfterFetch = true;
 		try {
+		    // nothing new was fetched, no need to run merge
+		    String fetched = git.getFetchHeadCommitHash(gitLocalPath, gitRepoUrl);
+		    if (fetched != null && fetched.equals(lastCommit))
+		        return;
 			String ret = gitMergeFetchHead();
 			if (ret != null && ret.startsWith("Already up-to-date."))
 				return;
-			String commit = getCommitInfo();
+			String commit = git.getHeadCommitHash(gitLocalPath, gitRepoUrl);
 			if (!commit.equals(lastCommit)) {
 				lastCommit = commit;
+				lastCommitInfo = git.getCommitInfo(gitLocalPath, gitRepoUrl);
 				System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
-				// recreate the categories index
-                reloadAll();
+				// rebuild the categories index for changed files
+                refresh();
 			}
 		} catch (Exception ex) {
 			System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error doing git merge FETCH_HEAD: " + ex.getMessage());
@@ -300,14 +302,105 @@ public class LocalGitDB {
 	    reloadAll();
 	}
 	
-    public void reloadAll() throws NarrativeMethodStoreException {
+    public synchronized void reloadAll() throws NarrativeMethodStoreException {
         System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: refreshing caches");
-        // recreate the categories index
+        // recreate the categories index with empty caches
         loadCategoriesIndex();
-        methodDataCache.invalidateAll();
-        appFullInfoCache.invalidateAll();
-        appSpecCache.invalidateAll();
-    }	
+    }
+    
+    /**
+     * Rebuilds the categories index from the current one re-parsing only methods, apps, 
+     * types and dynamic repos which were changed. New generation of caches gets all 
+     * entries of previous one except those of changed items.
+     */
+    public synchronized void refresh() throws NarrativeMethodStoreException {
+        long time = System.currentTimeMillis();
+        IndexGeneration prev = current;
+        IndexChanges changes = loadCategoriesIndex(prev == null ? null : prev.index);
+        publishChanges(prev, changes, "refresh", time);
+    }
+    
+    /**
+     * Rebuilds the categories index from the current one re-resolving only one dynamic 
+     * repo (only given tag of it or all tags if tag is null). Spec repo and other dynamic 
+     * repos are not checked, their index items and cache entries are copied as is. Falls 
+     * back to {@link #refresh()} if there is no valid index yet.
+     */
+    public synchronized void refreshModule(String moduleName, RepoTag tag) 
+            throws NarrativeMethodStoreException {
+        long time = System.currentTimeMillis();
+        IndexGeneration prev = current;
+        if (prev == null || prev.index.isInvalid() || dynamicRepos == null) {
+            refresh();
+            return;
+        }
+        IndexChanges changes = loadModuleIndex(prev.index, moduleName, tag == null ?
+                RepoTag.values() : Collections.singletonList(tag));
+        publishChanges(prev, changes, "refresh_module", time);
+    }
+    
+    /**
+     * Publishes new generation made of rebuilt index, unaffected entries of previous 
+     * generation caches and data parsed during rebuild.
+     */
+    private void publishChanges(IndexGeneration prev, IndexChanges changes, String metric,
+            long time) {
+        IndexGeneration gen = new IndexGeneration(changes.index);
+        gen.copyUnaffectedEntries(prev, changes);
+        gen.addLoadedEntries(changes);
+        gen.prerenderListings();
+        publish(gen);
+        saveCatalogSnapshotAsync(gen);
+        Metrics.get(Metrics.GROUP_INDEX, metric).record(
+                (System.currentTimeMillis() - time) * 1000000, false);
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: index was " +
+                "refreshed in " + (System.currentTimeMillis() - time) + " ms (reloaded: " + 
+                changes.methods.size() + " methods, " + changes.apps.size() + " apps, " + 
+                changes.repoTags.size() + " repo tags)");
+        StringBuilder stats = new StringBuilder();
+        for (Map.Entry<String, CacheStats> entry : getCacheStats().entrySet()) {
+            CacheStats cs = entry.getValue();
+            stats.append(stats.length() > 0 ? ", " : "").append(entry.getKey())
+                    .append(": hits=").append(cs.hitCount()).append(" misses=")
+                    .append(cs.missCount()).append(" evictions=").append(cs.evictionCount())
+                    .append(" load time=").append(cs.totalLoadTime() / 1000000).append(" ms");
+        }
+        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: cache " +
+                "stats (" + stats + ")");
+    }
+    
+    /**
+     * Makes generation current. Statistics of caches of replaced generation are added 
+     * to totals returned by {@link #getCacheStats()}.
+     */
+    protected void publish(IndexGeneration gen) {
+        synchronized (retiredCacheStats) {
+            IndexGeneration prev = current;
+            current = gen;
+            if (prev != null)
+                for (Map.Entry<String, Cache<?, ?>> entry : prev.getCaches().entrySet())
+                    retiredCacheStats.put(entry.getKey(), plus(
+                            retiredCacheStats.get(entry.getKey()), entry.getValue().stats()));
+        }
+    }
+    
+    /**
+     * Returns hit, miss, eviction and load time statistics of full info and spec caches 
+     * summed over all generations since start.
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> ret = new LinkedHashMap<String, CacheStats>();
+        synchronized (retiredCacheStats) {
+            for (Map.Entry<String, Cache<?, ?>> entry : current.getCaches().entrySet())
+                ret.put(entry.getKey(), plus(retiredCacheStats.get(entry.getKey()), 
+                        entry.getValue().stats()));
+        }
+        return ret;
+    }
+    
+    private static CacheStats plus(CacheStats a, CacheStats b) {
+        return a == null ? b : a.plus(b);
+    }
 	
 	protected File getMethodsDir() {
 		return new File(gitLocalPath, "methods");
@@ -362,25 +455,21 @@ public class LocalGitDB {
 		return ret;
 	}
 
-	public String getCommitInfo() throws NarrativeMethodStoreInitializationException {
-	    return GitUtils.getCommitInfo(gitLocalPath, gitRepoUrl);
+	/**
+	 * @return description of last commit of spec-repo, it's updated by refreshing thread
+	 * when new commit is merged.
+	 */
+	public String getCommitInfo() {
+	    return lastCommitInfo;
 	}
 	
 	public List<String> listMethodIds(boolean withErrors, String tag) {
-		checkForChanges();
-		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, MethodBriefInfo> entry : narCatIndex.getMethods(tag).entrySet()) {
-			if (entry.getValue().getLoadingError() != null && !withErrors)
-				continue;
-			ret.add(entry.getKey());
-		}
-		return ret;
+		return current.index.getMethodIds(tag, withErrors);
 	}
 
 	public List<String> listAppIds(boolean withErrors) {
-		checkForChanges();
 		List<String> ret = new ArrayList<String>();
-		for (Map.Entry<String, AppBriefInfo> entry : narCatIndex.getApps().entrySet()) {
+		for (Map.Entry<String, AppBriefInfo> entry : current.index.getApps().entrySet()) {
 			if (entry.getValue().getLoadingError() != null && !withErrors)
 				continue;
 			ret.add(entry.getKey());
@@ -396,6 +485,16 @@ public class LocalGitDB {
 	
 	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
 	        NarrativeCategoriesIndex narCatIndex) throws NarrativeMethodStoreException {
+	    return loadMethodDataUncached(methodId, null, narCatIndex);
+	}
+	
+	/**
+	 * Loads method data using already requested details of dynamic repo (if taggedRepo 
+	 * is null they are requested here).
+	 */
+	protected NarrativeMethodData loadMethodDataUncached(final MethodId methodId,
+	        RepoProvider taggedRepo, NarrativeCategoriesIndex narCatIndex) 
+	                throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
 			JsonNode spec = null;
@@ -404,14 +503,19 @@ public class LocalGitDB {
 			RepoTag tag = null;
 			FileLookup fl = null;
 			String version = null;
+			long sourceSize = 0;
 			if (methodId.isDynamic()) {
-			    final RepoProvider repo = dynamicRepos.getRepoDetails(methodId.getRepoModuleName(), methodId.getTag());
+			    final RepoProvider repo = taggedRepo != null ? taggedRepo :
+			        dynamicRepos.getRepoDetails(methodId.getRepoModuleName(), methodId.getTag());
 			    if (repo == null)
 			        throw new NarrativeMethodStoreException("Repository " + methodId.getRepoModuleName() + 
 			                " wasn't tagged with " + methodId.getTag() + " tag");
 			    serviceVersion = repo.getGitCommitHash();
-			    spec = mapper.readTree(asText(repo.getUINarrativeMethodSpec(methodId.getMethodId())));
-			    display = YamlUtils.getDocumentAsYamlMap(asText(repo.getUINarrativeMethodDisplay(methodId.getMethodId())));
+			    String specText = asText(repo.getUINarrativeMethodSpec(methodId.getMethodId()));
+			    String displayText = asText(repo.getUINarrativeMethodDisplay(methodId.getMethodId()));
+			    spec = mapper.readTree(specText);
+			    display = YamlUtils.getDocumentAsYamlMap(displayText);
+			    sourceSize = specText.length() + displayText.length();
 			    tag = methodId.getTag();
 			    fl = new FileLookup() {
                     @Override
@@ -434,12 +538,13 @@ public class LocalGitDB {
 			    spec = getResourceAsJson("methods/"+methodId+"/spec.json");
 			    display = getResourceAsYamlMap("methods/"+methodId+"/display.yaml");
 			    fl = createFileLookup(new File(getMethodsDir(), methodId.getMethodId()));
+			    sourceSize = getSourceSize(new File(getMethodsDir(), methodId.getMethodId()));
 			}
 
 			// Initialize the actual data
 			NarrativeMethodData data = new NarrativeMethodData(methodId.getExternalId(), spec, display,
 					fl, methodId.getRepoModuleName(), serviceVersion, srvUrlTemplEval, tag, version);
-			return data;
+			return compact(data.withSourceSize(sourceSize));
 		} catch (NarrativeMethodStoreException ex) {
 			throw ex;
 		} catch (Exception ex) {
@@ -450,6 +555,76 @@ public class LocalGitDB {
 		}
 	}
 
+	/**
+	 * Loads data of several methods. Details of dynamic repos are requested once per module
+	 * and tag, specs are parsed in index loader thread pool. If some of methods can't be 
+	 * loaded the error of the first of them (in order of ids) is thrown.
+	 */
+	protected Map<MethodId, NarrativeMethodData> loadMethodDataUncached(
+	        Iterable<? extends MethodId> methodIds, final NarrativeCategoriesIndex narCatIndex)
+	                throws NarrativeMethodStoreException {
+	    final List<MethodId> ids = new ArrayList<MethodId>();
+	    Map<String, RepoProvider> repos = new HashMap<String, RepoProvider>();
+	    final Map<MethodId, NarrativeMethodStoreException> errors = 
+	            new ConcurrentHashMap<MethodId, NarrativeMethodStoreException>();
+	    List<Callable<NarrativeMethodData>> tasks = new ArrayList<Callable<NarrativeMethodData>>();
+	    for (final MethodId mId : methodIds) {
+	        ids.add(mId);
+	        RepoProvider repo = null;
+	        if (mId.isDynamic()) {
+	            String repoKey = NarrativeCategoriesIndex.getRepoVersionKey(
+	                    mId.getRepoModuleName(), mId.getTag());
+	            if (!repos.containsKey(repoKey)) {
+	                try {
+	                    repos.put(repoKey, dynamicRepos.getRepoDetails(mId.getRepoModuleName(),
+	                            mId.getTag()));
+	                } catch (NarrativeMethodStoreException ex) {
+	                    // Error is reported by loading of each method of this repo
+	                    repos.put(repoKey, null);
+	                }
+	            }
+	            repo = repos.get(repoKey);
+	        }
+	        final RepoProvider taggedRepo = repo;
+	        tasks.add(new Callable<NarrativeMethodData>() {
+	            @Override
+	            public NarrativeMethodData call() {
+	                try {
+	                    return loadMethodDataUncached(mId, taggedRepo, narCatIndex);
+	                } catch (NarrativeMethodStoreException ex) {
+	                    errors.put(mId, ex);
+	                    return null;
+	                }
+	            }
+	        });
+	    }
+	    List<NarrativeMethodData> loaded = runLoaders(tasks);
+	    Map<MethodId, NarrativeMethodData> ret = new LinkedHashMap<MethodId, NarrativeMethodData>();
+	    for (int i = 0; i < ids.size(); i++) {
+	        NarrativeMethodStoreException error = errors.get(ids.get(i));
+	        if (error != null)
+	            throw error;
+	        ret.put(ids.get(i), loaded.get(i));
+	    }
+	    return ret;
+	}
+
+	/**
+	 * Moves full info and spec of method off heap if compact cache storage is configured.
+	 */
+	protected NarrativeMethodData compact(NarrativeMethodData data) throws IOException {
+	    if (!cacheSettings.isCompact() || data instanceof CompactMethodData)
+	        return data;
+	    return new CompactMethodData(data);
+	}
+
+	/**
+	 * Returns total size of spec.json and display.yaml in folder of method or app.
+	 */
+	protected long getSourceSize(File dir) {
+	    return new File(dir, "spec.json").length() + new File(dir, "display.yaml").length();
+	}
+
 	protected FileLookup createFileLookup(final File dir) {
 		return new FileLookup() {
 			@Override
@@ -488,6 +663,41 @@ public class LocalGitDB {
 		}
 	}
 
+	/**
+	 * Loads data of several apps in index loader thread pool. If some of apps can't be 
+	 * loaded the error of the first of them (in order of ids) is thrown.
+	 */
+	protected Map<String, NarrativeAppData> loadAppDataUncached(Iterable<? extends String> appIds)
+	        throws NarrativeMethodStoreException {
+	    final List<String> ids = new ArrayList<String>();
+	    final Map<String, NarrativeMethodStoreException> errors = 
+	            new ConcurrentHashMap<String, NarrativeMethodStoreException>();
+	    List<Callable<NarrativeAppData>> tasks = new ArrayList<Callable<NarrativeAppData>>();
+	    for (final String appId : appIds) {
+	        ids.add(appId);
+	        tasks.add(new Callable<NarrativeAppData>() {
+	            @Override
+	            public NarrativeAppData call() {
+	                try {
+	                    return loadAppDataUncached(appId);
+	                } catch (NarrativeMethodStoreException ex) {
+	                    errors.put(appId, ex);
+	                    return null;
+	                }
+	            }
+	        });
+	    }
+	    List<NarrativeAppData> loaded = runLoaders(tasks);
+	    Map<String, NarrativeAppData> ret = new LinkedHashMap<String, NarrativeAppData>();
+	    for (int i = 0; i < ids.size(); i++) {
+	        NarrativeMethodStoreException error = errors.get(ids.get(i));
+	        if (error != null)
+	            throw error;
+	        ret.put(ids.get(i), loaded.get(i));
+	    }
+	    return ret;
+	}
+
 	protected NarrativeTypeData loadTypeDataUncached(final String typeName) throws NarrativeMethodStoreException {
 		try {
 			// Fetch the resources needed
@@ -509,12 +719,12 @@ public class LocalGitDB {
 
 	public MethodBriefInfo getMethodBriefInfo(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
+		IndexGeneration gen = current;
 		MethodId mId = new MethodId(methodId, notNull(tag));
-		MethodBriefInfo ret = narCatIndex.getAllMethods().get(mId);
+		MethodBriefInfo ret = gen.index.getAllMethods().get(mId);
 		if (ret == null && mId.isDynamic()) {
 	        try {
-	            ret = methodDataCache.get(mId).getMethodBriefInfo();
+	            ret = gen.methodDataCache.get(mId).getMethodBriefInfo();
 	        } catch (ExecutionException e) {
 	            if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 	                throw (NarrativeMethodStoreException)e.getCause();
@@ -526,22 +736,19 @@ public class LocalGitDB {
 
 	public AppBriefInfo getAppBriefInfo(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
-		return narCatIndex.getApps().get(appId);
+		return current.index.getApps().get(appId);
 	}
 
 	public TypeInfo getTypeInfo(String typeName)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
-		return narCatIndex.getTypes().get(typeName);
+		return current.index.getTypes().get(typeName);
 	}
 	
 	public MethodFullInfo getMethodFullInfo(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
         MethodId mId = new MethodId(methodId, notNull(tag));
 		try {
-			return methodDataCache.get(mId).getMethodFullInfo();
+			return current.methodDataCache.get(mId).getMethodFullInfo();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -551,9 +758,8 @@ public class LocalGitDB {
 
 	public AppFullInfo getAppFullInfo(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
 		try {
-			return appFullInfoCache.get(appId);
+			return current.appFullInfoCache.get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -563,9 +769,8 @@ public class LocalGitDB {
 
 	public MethodSpec getMethodSpec(String methodId, String tag)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
 		try {
-			return methodDataCache.get(new MethodId(methodId, notNull(tag))).getMethodSpec();
+			return current.methodDataCache.get(new MethodId(methodId, notNull(tag))).getMethodSpec();
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -575,9 +780,8 @@ public class LocalGitDB {
 
 	public AppSpec getAppSpec(String appId)
 			throws NarrativeMethodStoreException {
-		checkForChanges();
 		try {
-			return appSpecCache.get(appId);
+			return current.appSpecCache.get(appId);
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
 				throw (NarrativeMethodStoreException)e.getCause();
@@ -585,9 +789,95 @@ public class LocalGitDB {
 		}
 	}
 
+	/**
+	 * Returns full infos of methods in the same order as ids. Methods missing in cache 
+	 * are loaded together (see {@link #loadMethodDataUncached(Iterable, NarrativeCategoriesIndex)}).
+	 */
+	public List<MethodFullInfo> getMethodFullInfos(List<String> methodIds, String tag)
+	        throws NarrativeMethodStoreException {
+	    List<MethodFullInfo> ret = new ArrayList<MethodFullInfo>(methodIds.size());
+	    for (NarrativeMethodData data : getMethodData(methodIds, tag))
+	        ret.add(data.getMethodFullInfo());
+	    return ret;
+	}
+
+	/**
+	 * Returns specs of methods in the same order as ids. Methods missing in cache 
+	 * are loaded together.
+	 */
+	public List<MethodSpec> getMethodSpecs(List<String> methodIds, String tag)
+	        throws NarrativeMethodStoreException {
+	    List<MethodSpec> ret = new ArrayList<MethodSpec>(methodIds.size());
+	    for (NarrativeMethodData data : getMethodData(methodIds, tag))
+	        ret.add(data.getMethodSpec());
+	    return ret;
+	}
+
+	/**
+	 * Returns data of methods in the same order as ids, missing in cache are loaded together.
+	 */
+	public List<NarrativeMethodData> getMethodData(List<String> methodIds, String tag)
+	        throws NarrativeMethodStoreException {
+	    RepoTag repoTag = notNull(tag);
+	    List<MethodId> mIds = new ArrayList<MethodId>(methodIds.size());
+	    for (String methodId : methodIds)
+	        mIds.add(new MethodId(methodId, repoTag));
+	    Map<MethodId, NarrativeMethodData> loaded;
+	    try {
+	        loaded = current.methodDataCache.getAll(mIds);
+	    } catch (ExecutionException e) {
+	        if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
+	            throw (NarrativeMethodStoreException)e.getCause();
+	        throw new NarrativeMethodStoreException("Error loading full info for method ids=" + mIds + " (" + e.getMessage() + ")", e);
+	    }
+	    List<NarrativeMethodData> ret = new ArrayList<NarrativeMethodData>(mIds.size());
+	    for (MethodId mId : mIds)
+	        ret.add(loaded.get(mId));
+	    return ret;
+	}
+
+	/**
+	 * Returns full infos of apps in the same order as ids. Apps missing in cache 
+	 * are loaded together.
+	 */
+	public List<AppFullInfo> getAppFullInfos(List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    Map<String, AppFullInfo> loaded;
+	    try {
+	        loaded = current.appFullInfoCache.getAll(appIds);
+	    } catch (ExecutionException e) {
+	        if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
+	            throw (NarrativeMethodStoreException)e.getCause();
+	        throw new NarrativeMethodStoreException("Error loading full info for app ids=" + appIds + " (" + e.getMessage() + ")", e);
+	    }
+	    List<AppFullInfo> ret = new ArrayList<AppFullInfo>(appIds.size());
+	    for (String appId : appIds)
+	        ret.add(loaded.get(appId));
+	    return ret;
+	}
+
+	/**
+	 * Returns specs of apps in the same order as ids. Apps missing in cache 
+	 * are loaded together.
+	 */
+	public List<AppSpec> getAppSpecs(List<String> appIds)
+	        throws NarrativeMethodStoreException {
+	    Map<String, AppSpec> loaded;
+	    try {
+	        loaded = current.appSpecCache.getAll(appIds);
+	    } catch (ExecutionException e) {
+	        if (e.getCause() != null && e.getCause() instanceof NarrativeMethodStoreException)
+	            throw (NarrativeMethodStoreException)e.getCause();
+	        throw new NarrativeMethodStoreException("Error loading full info for app ids=" + appIds + " (" + e.getMessage() + ")", e);
+	    }
+	    List<AppSpec> ret = new ArrayList<AppSpec>(appIds.size());
+	    for (String appId : appIds)
+	        ret.add(loaded.get(appId));
+	    return ret;
+	}
+
 	public List<String> listCategoryIds() throws NarrativeMethodStoreException {
-		checkForChanges();
-		return listCategoryIdsUncached();
+		return new ArrayList<String>(current.index.getCategories().keySet());
 	}
 	
 	protected List<String> listCategoryIdsUncached() throws NarrativeMethodStoreException {
@@ -601,8 +891,70 @@ public class LocalGitDB {
 	
 	
 	public NarrativeCategoriesIndex getCategoriesIndex() {
-		checkForChanges();
-		return narCatIndex;
+		return current.index;
+	}
+	
+	/**
+	 * @return version of current index, it's changed when spec-repo commit or any dynamic 
+	 * repo is changed.
+	 */
+	public String getCatalogVersion() {
+	    return current.version;
+	}
+	
+	/**
+	 * Calculates catalog version as a hash of spec-repo commit and versions of dynamic repos
+	 * index was built from, so the same catalog has the same version in different service 
+	 * instances and after restart.
+	 */
+	protected String getCatalogVersion(NarrativeCategoriesIndex index) {
+	    StringBuilder sources = new StringBuilder();
+	    try {
+	        sources.append(git.getHeadCommitHash(gitLocalPath, gitRepoUrl));
+	    } catch (Exception ex) {
+	        // commit is unknown, version shouldn't match any other one
+	        sources.append(UUID.randomUUID());
+	    }
+	    for (Map.Entry<String, Long> entry : new TreeMap<String, Long>(
+	            index.getDynamicRepoVersions()).entrySet())
+	        sources.append("\n").append(entry.getKey()).append("=").append(entry.getValue());
+	    try {
+	        byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+	                sources.toString().getBytes("UTF-8"));
+	        StringBuilder ret = new StringBuilder();
+	        for (int i = 0; i < 10; i++)
+	            ret.append(String.format("%02x", digest[i] & 0xff));
+	        return ret.toString();
+	    } catch (Exception ex) {
+	        throw new IllegalStateException(ex);
+	    }
+	}
+	
+	/**
+	 * Returns result of list_categories built from current index. Listings of dev, beta 
+	 * and release tags are shared between requests until the index is replaced, so they 
+	 * should not be modified.
+	 */
+	public PrerenderedJson<CategoriesListing> listCategories(String tag, boolean loadMethods,
+	        boolean loadApps, boolean loadTypes) {
+	    return current.getCategoriesListing(notNull(tag), loadMethods, loadApps, loadTypes);
+	}
+	
+	/**
+	 * Returns brief infos of all methods for given tag built from current index. Listings 
+	 * of dev, beta and release tags are shared between requests until the index is 
+	 * replaced, so they should not be modified.
+	 */
+	public PrerenderedJson<List<MethodBriefInfo>> listMethods(String tag) {
+	    return current.getMethodListing(notNull(tag));
+	}
+	
+	/**
+	 * Returns brief infos of all apps built from current index. It's shared between 
+	 * requests until the index is replaced, so it should not be modified.
+	 */
+	public PrerenderedJson<List<AppBriefInfo>> listApps() {
+	    return current.getAppListing();
 	}
 	
 	private File getTempDir() {
@@ -610,31 +962,144 @@ public class LocalGitDB {
 	}
 	
 	/**
-	 * Reloads from files the entire categories index
+	 * Reloads from files the entire categories index and publishes it with empty caches.
 	 */
 	protected synchronized void loadCategoriesIndex() throws NarrativeMethodStoreException {
+	    IndexChanges changes = loadCategoriesIndex(null);
+	    IndexGeneration gen = new IndexGeneration(changes.index);
+	    gen.addLoadedEntries(changes);
+	    gen.prerenderListings();
+	    publish(gen);
+	    saveCatalogSnapshotAsync(gen);
+	}
+	
+	/**
+	 * Publishes index and caches stored in catalog snapshot for current commit of spec-repo
+	 * and starts background validation (incremental refresh) of loaded index.
+	 * @return true if snapshot was loaded
+	 */
+	protected boolean loadCatalogSnapshot() {
+	    if (catalogSnapshotDir == null)
+	        return false;
+	    try {
+	        long time = System.currentTimeMillis();
+	        CatalogSnapshot snapshot = CatalogSnapshot.load(catalogSnapshotDir, 
+	                git.getHeadCommitHash(gitLocalPath, gitRepoUrl), defaultTagForGetters);
+	        if (snapshot == null)
+	            return false;
+	        IndexGeneration gen = new IndexGeneration(snapshot.getIndex());
+	        for (Map.Entry<MethodId, NarrativeMethodData> entry : 
+	                snapshot.getMethodData().entrySet())
+	            gen.methodDataCache.put(entry.getKey(), compact(entry.getValue()));
+	        gen.appFullInfoCache.putAll(snapshot.getAppFullInfos());
+	        gen.appSpecCache.putAll(snapshot.getAppSpecs());
+	        gen.prerenderListings();
+	        publish(gen);
+	        System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: catalog " +
+	                "snapshot for commit " + snapshot.getCommitHash() + " was loaded in " + 
+	                (System.currentTimeMillis() - time) + " ms");
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                "loading catalog snapshot: " + ex.getMessage());
+	        return false;
+	    }
+	    Thread validation = new Thread(new Runnable() {
+	        @Override
+	        public void run() {
+	            try {
+	                refresh();
+	            } catch (Throwable ex) {
+	                System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	                        "error validating catalog snapshot: " + ex.getMessage());
+	                try {
+	                    reloadAll();
+	                } catch (Throwable ex2) {
+	                    System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	                            "error reloading categories index: " + ex2.getMessage());
+	                }
+	            }
+	        }
+	    }, "nms-snapshot-validation");
+	    validation.setDaemon(true);
+	    validation.start();
+	    return true;
+	}
+	
+	/**
+	 * Stores index generation together with everything cached in it into catalog snapshot.
+	 */
+	public void saveCatalogSnapshot() throws NarrativeMethodStoreException {
+	    if (catalogSnapshotDir != null)
+	        saveCatalogSnapshot(current);
+	}
+	
+	protected void saveCatalogSnapshot(IndexGeneration gen) throws NarrativeMethodStoreException {
+	    long time = System.currentTimeMillis();
+	    CatalogSnapshot snapshot = new CatalogSnapshot(
+	            git.getHeadCommitHash(gitLocalPath, gitRepoUrl), gen.index,
+	            new LinkedHashMap<MethodId, NarrativeMethodData>(gen.methodDataCache.asMap()),
+	            new TreeMap<String, AppFullInfo>(gen.appFullInfoCache.asMap()),
+	            new TreeMap<String, AppSpec>(gen.appSpecCache.asMap()));
+	    synchronized (catalogSnapshotDir) {
+	        snapshot.save(catalogSnapshotDir);
+	    }
+	    System.out.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: catalog " +
+	            "snapshot for commit " + snapshot.getCommitHash() + " was saved in " + 
+	            (System.currentTimeMillis() - time) + " ms");
+	}
+	
+	protected void saveCatalogSnapshotAsync(final IndexGeneration gen) {
+	    if (catalogSnapshotDir == null)
+	        return;
+	    snapshotWriter.submit(new Runnable() {
+	        @Override
+	        public void run() {
+	            try {
+	                // only the last published generation is worth saving
+	                if (gen == current)
+	                    saveCatalogSnapshot(gen);
+	            } catch (Throwable ex) {
+	                System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+	                        "error saving catalog snapshot: " + ex.getMessage());
+	            }
+	        }
+	    });
+	}
+	
+	/**
+	 * Builds new categories index. If previous index is defined (and it's not invalidated) 
+	 * then methods, apps and types are parsed only when files in their folders were changed, 
+	 * and dynamic repos are parsed only when their versions were changed. Everything else 
+	 * is copied from previous index. New index is not published here.
+	 * @return new index and keys of index items which were reloaded, added or removed
+	 */
+	protected synchronized IndexChanges loadCategoriesIndex(final NarrativeCategoriesIndex prevIndex) 
+	        throws NarrativeMethodStoreException {
+	    final NarrativeCategoriesIndex prev = prevIndex == null || prevIndex.isInvalid() ? 
+	            null : prevIndex;
+	    final IndexChanges changes = new IndexChanges(prev == null);
+	    long phaseStart = System.nanoTime();
 	    Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>();
 	    Map<String, Exception> dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>();
+	    Map<String, Long> dynamicRepoVersions = new TreeMap<String, Long>();
         if (dynamicRepos != null) {
-            for (String repoMN : dynamicRepos.listRepoModuleNames()) {
-                for (RepoTag tag : RepoTag.values()) {
-                    try {
-                        RepoProvider repo = dynamicRepos.getRepoDetails(repoMN, tag);
-                        if (repo == null)
-                            continue;
-                        for (String methodId : repo.listUINarrativeMethodIDs()) {
-                            dynamicRepoMethods.add(new MethodId(repoMN, methodId, tag));
-                        }
-                    } catch (Exception ex) {
-                        if (tag.equals(RepoTag.dev))
-                            dynamicRepoModuleNameToLoadingError.put(repoMN, ex);
-                    }
-                }
+            for (DynamicRepoState state : loadDynamicRepoStates(prev)) {
+                dynamicRepoMethods.addAll(state.methods);
+                dynamicRepoVersions.putAll(state.versions);
+                changes.repoTags.addAll(state.changedRepoTags);
+                if (state.error != null)
+                    dynamicRepoModuleNameToLoadingError.put(state.moduleName, state.error);
             }
         }
+        if (prev != null)
+            for (String versionKey : prev.getDynamicRepoVersions().keySet())
+                if (!dynamicRepoVersions.containsKey(versionKey))
+                    changes.repoTags.add(versionKey);
+        phaseStart = endIndexPhase("dynamic_repos", phaseStart);
 
-        NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
+        final NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);  // create a new index
         narCatIndex.updateAllDynamicRepoMethods(dynamicRepoMethods, dynamicRepoModuleNameToLoadingError);
+        Map<String, String> fileFingerprints = new HashMap<String, String>();
 		try {
 			List<String> catIds = listCategoryIdsUncached(); // iterate over each category
 			for(String catId : catIds) {
@@ -643,53 +1108,645 @@ public class LocalGitDB {
 				Map<String,Object> display = null;
 				narCatIndex.addOrUpdateCategory(catId, spec, display);
 			}
+			phaseStart = endIndexPhase("categories", phaseStart);
 			
 			List<MethodId> methIds = listMethodIdsUncached(narCatIndex); // iterate over each category
-			for(MethodId mId : methIds) {
-				// TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
-				// idea to check cache first cause narrative engine more likely loads list of all categories 
-				// before any full infos and specs.
-				MethodBriefInfo mbi;
-				try {
-					NarrativeMethodData data = loadMethodDataUncached(mId, narCatIndex);
-					mbi = data.getMethodBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					mbi = ex.getErrorMethod();
-				}
-				narCatIndex.addOrUpdateMethod(mId, mbi);
+			Map<String, String> methodTrees = getFolderTreeHashes("methods");
+			Map<MethodId, MethodBriefInfo> methods = new LinkedHashMap<MethodId, MethodBriefInfo>();
+			List<Callable<MethodBriefInfo>> methodLoaders = new ArrayList<Callable<MethodBriefInfo>>();
+			for(final MethodId mId : methIds) {
+			    boolean changed;
+			    if (mId.isDynamic()) {
+			        changed = changes.repoTags.contains(NarrativeCategoriesIndex.getRepoVersionKey(
+			                mId.getRepoModuleName(), mId.getTag()));
+			    } else {
+			        String key = "methods/" + mId.getMethodId();
+			        String fingerprint = getFolderFingerprint(methodTrees, getMethodsDir(), mId.getMethodId());
+			        fileFingerprints.put(key, fingerprint);
+			        changed = prev == null || !fingerprint.equals(prev.getFileFingerprints().get(key));
+			    }
+			    MethodBriefInfo mbi = changed ? null : prev.getAllMethods().get(mId);
+			    methods.put(mId, mbi);
+			    if (mbi != null)
+			        continue;
+			    // TODO: check cache for data instead of loading it all directly; Roman: I doubt it's a good 
+			    // idea to check cache first cause narrative engine more likely loads list of all categories 
+			    // before any full infos and specs.
+			    methodLoaders.add(new Callable<MethodBriefInfo>() {
+			        @Override
+			        public MethodBriefInfo call() {
+			            try {
+			                NarrativeMethodData data = loadMethodDataUncached(mId, narCatIndex);
+			                changes.loadedMethods.put(mId, data);
+			                return data.getMethodBriefInfo();
+			            } catch (NarrativeMethodStoreException ex) {
+			                return ex.getErrorMethod();
+			            }
+			        }
+			    });
+			    changes.methods.add(mId);
 			}
+			Iterator<MethodBriefInfo> loadedMethods = runLoaders(methodLoaders).iterator();
+			for (Map.Entry<MethodId, MethodBriefInfo> entry : methods.entrySet())
+			    narCatIndex.addOrUpdateMethod(entry.getKey(), entry.getValue() != null ? 
+			            entry.getValue() : loadedMethods.next());
+			phaseStart = endIndexPhase("methods", phaseStart);
 
 			List<String> appIds = listAppIdsUncached(); // iterate over each category
-			for(String appId : appIds) {
-				AppBriefInfo abi;
-				try {
-					NarrativeAppData data = loadAppDataUncached(appId);
-					abi = data.getAppBriefInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					abi = ex.getErrorApp();
-				}
-				narCatIndex.addOrUpdateApp(appId, abi);
+			Map<String, String> appTrees = getFolderTreeHashes("apps");
+			Map<String, AppBriefInfo> apps = new LinkedHashMap<String, AppBriefInfo>();
+			List<Callable<AppBriefInfo>> appLoaders = new ArrayList<Callable<AppBriefInfo>>();
+			for(final String appId : appIds) {
+			    String key = "apps/" + appId;
+			    String fingerprint = getFolderFingerprint(appTrees, getAppsDir(), appId);
+			    fileFingerprints.put(key, fingerprint);
+			    AppBriefInfo abi = null;
+			    if (prev != null && fingerprint.equals(prev.getFileFingerprints().get(key)))
+			        abi = prev.getApps().get(appId);
+			    apps.put(appId, abi);
+			    if (abi != null)
+			        continue;
+			    appLoaders.add(new Callable<AppBriefInfo>() {
+			        @Override
+			        public AppBriefInfo call() {
+			            try {
+			                NarrativeAppData data = loadAppDataUncached(appId);
+			                changes.loadedApps.put(appId, data);
+			                return data.getAppBriefInfo();
+			            } catch (NarrativeMethodStoreException ex) {
+			                return ex.getErrorApp();
+			            }
+			        }
+			    });
+			    changes.apps.add(appId);
 			}
+			Iterator<AppBriefInfo> loadedApps = runLoaders(appLoaders).iterator();
+			for (Map.Entry<String, AppBriefInfo> entry : apps.entrySet())
+			    narCatIndex.addOrUpdateApp(entry.getKey(), entry.getValue() != null ? 
+			            entry.getValue() : loadedApps.next());
+			phaseStart = endIndexPhase("apps", phaseStart);
 
 			List<String> typeNames = listTypeNamesUncached(); // iterate over each category
-			for(String typeName : typeNames) {
-				TypeInfo ti;
-				try {
-					NarrativeTypeData data = loadTypeDataUncached(typeName);
-					ti = data.getTypeInfo();
-				} catch (NarrativeMethodStoreException ex) {
-					ti = ex.getErrorType();
-				}
-				narCatIndex.addOrUpdateType(typeName, ti);
+			Map<String, String> typeTrees = getFolderTreeHashes("types");
+			Map<String, TypeInfo> types = new LinkedHashMap<String, TypeInfo>();
+			List<Callable<TypeInfo>> typeLoaders = new ArrayList<Callable<TypeInfo>>();
+			for(final String typeName : typeNames) {
+			    String key = "types/" + typeName;
+			    String fingerprint = getFolderFingerprint(typeTrees, getTypesDir(), typeName);
+			    fileFingerprints.put(key, fingerprint);
+			    TypeInfo ti = null;
+			    if (prev != null && fingerprint.equals(prev.getFileFingerprints().get(key)))
+			        ti = prev.getTypes().get(typeName);
+			    types.put(typeName, ti);
+			    if (ti != null)
+			        continue;
+			    typeLoaders.add(new Callable<TypeInfo>() {
+			        @Override
+			        public TypeInfo call() {
+			            try {
+			                NarrativeTypeData data = loadTypeDataUncached(typeName);
+			                return data.getTypeInfo();
+			            } catch (NarrativeMethodStoreException ex) {
+			                return ex.getErrorType();
+			            }
+			        }
+			    });
+			}
+			Iterator<TypeInfo> loadedTypes = runLoaders(typeLoaders).iterator();
+			for (Map.Entry<String, TypeInfo> entry : types.entrySet())
+			    narCatIndex.addOrUpdateType(entry.getKey(), entry.getValue() != null ? 
+			            entry.getValue() : loadedTypes.next());
+			endIndexPhase("types", phaseStart);
+
+			if (prev != null) {
+			    for (MethodId mId : prev.getAllMethods().keySet())
+			        if (!narCatIndex.getAllMethods().containsKey(mId))
+			            changes.methods.add(mId);
+			    for (String appId : prev.getApps().keySet())
+			        if (!narCatIndex.getApps().containsKey(appId))
+			            changes.apps.add(appId);
 			}
-			this.narCatIndex = narCatIndex;
+			narCatIndex.updateAllSources(fileFingerprints, dynamicRepoVersions);
+			changes.index = narCatIndex;
 		} catch (IOException e) {
 			throw new NarrativeMethodStoreException("Cannot load category index : "+e.getMessage(),e);
 		}
 		
-		return;
+		return changes;
+	}
+	
+	/**
+	 * Records duration of index rebuild phase, returns start time of the next phase.
+	 */
+	private static long endIndexPhase(String phase, long phaseStart) {
+	    Metrics.record(Metrics.GROUP_INDEX, phase, phaseStart, false);
+	    return System.nanoTime();
+	}
+	
+	/**
+	 * Copies previous index replacing the methods of given tags of one dynamic repo. Only
+	 * the tags which versions were changed (or which are gone because repo was disabled) 
+	 * are reloaded, everything else including categories, apps and types is shared with 
+	 * previous index.
+	 * @return new index and keys of index items which were reloaded, added or removed
+	 */
+	protected synchronized IndexChanges loadModuleIndex(NarrativeCategoriesIndex prev, 
+	        String moduleName, Collection<RepoTag> tags) throws NarrativeMethodStoreException {
+	    final IndexChanges changes = new IndexChanges(false);
+	    DynamicRepoState state = dynamicRepos.getRepoState(moduleName) == RepoState.disabled ?
+	            new DynamicRepoState(moduleName) : loadDynamicRepoState(moduleName, prev, tags);
+	    Set<MethodId> dynamicRepoMethods = new TreeSet<MethodId>(state.methods);
+	    Map<String, Long> dynamicRepoVersions = new TreeMap<String, Long>(state.versions);
+	    changes.repoTags.addAll(state.changedRepoTags);
+	    for (MethodId mId : prev.getDynamicRepoMethods())
+	        if (!isModuleTag(mId.getRepoModuleName(), mId.getTag(), moduleName, tags))
+	            dynamicRepoMethods.add(mId);
+	    for (Map.Entry<String, Long> entry : prev.getDynamicRepoVersions().entrySet()) {
+	        String versionKey = entry.getKey();
+	        boolean affected = false;
+	        for (RepoTag tag : tags)
+	            if (versionKey.equals(NarrativeCategoriesIndex.getRepoVersionKey(moduleName, tag)))
+	                affected = true;
+	        if (!affected)
+	            dynamicRepoVersions.put(versionKey, entry.getValue());
+	        else if (!state.versions.containsKey(versionKey))
+	            changes.repoTags.add(versionKey);
+	    }
+	    Map<String, Exception> dynamicRepoModuleNameToLoadingError = new TreeMap<String, Exception>(
+	            prev.getDynamicRepoModuleNameToLoadingError());
+	    if (tags.contains(RepoTag.dev)) {
+	        dynamicRepoModuleNameToLoadingError.remove(moduleName);
+	        if (state.error != null)
+	            dynamicRepoModuleNameToLoadingError.put(moduleName, state.error);
+	    }
+	    final NarrativeCategoriesIndex narCatIndex = new NarrativeCategoriesIndex(defaultTagForGetters);
+	    narCatIndex.updateAllDynamicRepoMethods(dynamicRepoMethods, dynamicRepoModuleNameToLoadingError);
+	    narCatIndex.updateAllCategories(new HashMap<String, Category>(prev.getCategories()));
+	    narCatIndex.updateAllApps(new HashMap<String, AppBriefInfo>(prev.getApps()));
+	    narCatIndex.updateAllTypes(new HashMap<String, TypeInfo>(prev.getTypes()));
+	    Map<MethodId, MethodBriefInfo> methods = new TreeMap<MethodId, MethodBriefInfo>();
+	    for (Map.Entry<MethodId, MethodBriefInfo> entry : prev.getAllMethods().entrySet()) {
+	        MethodId mId = entry.getKey();
+	        if (!mId.isDynamic() || (dynamicRepoMethods.contains(mId) && 
+	                !changes.affectsMethod(mId))) {
+	            methods.put(mId, entry.getValue());
+	        } else if (!dynamicRepoMethods.contains(mId)) {
+	            changes.methods.add(mId);
+	        }
+	    }
+	    List<MethodId> reloaded = new ArrayList<MethodId>();
+	    List<Callable<MethodBriefInfo>> methodLoaders = new ArrayList<Callable<MethodBriefInfo>>();
+	    for (final MethodId mId : dynamicRepoMethods) {
+	        if (methods.containsKey(mId))
+	            continue;
+	        reloaded.add(mId);
+	        methodLoaders.add(new Callable<MethodBriefInfo>() {
+	            @Override
+	            public MethodBriefInfo call() {
+	                try {
+	                    NarrativeMethodData data = loadMethodDataUncached(mId, narCatIndex);
+	                    changes.loadedMethods.put(mId, data);
+	                    return data.getMethodBriefInfo();
+	                } catch (NarrativeMethodStoreException ex) {
+	                    return ex.getErrorMethod();
+	                }
+	            }
+	        });
+	        changes.methods.add(mId);
+	    }
+	    Iterator<MethodBriefInfo> loadedMethods = runLoaders(methodLoaders).iterator();
+	    for (MethodId mId : reloaded)
+	        methods.put(mId, loadedMethods.next());
+	    narCatIndex.updateAllMethods(methods);
+	    narCatIndex.updateAllSources(new HashMap<String, String>(prev.getFileFingerprints()), 
+	            dynamicRepoVersions);
+	    changes.index = narCatIndex;
+	    return changes;
+	}
+	
+	private static boolean isModuleTag(String repoModuleName, RepoTag repoTag, 
+	        String moduleName, Collection<RepoTag> tags) {
+	    if (!moduleName.equals(repoModuleName))
+	        return false;
+	    return tags.contains(repoTag.isGitCommitHash() ? RepoTag.dev : repoTag);
+	}
+	
+	/**
+	 * Resolves versions of all tags of all dynamic repos and details of versions which were
+	 * changed comparing to previous index by two bulk requests. If bulk loading fails then
+	 * each repo is loaded separately, so that errors are reported for particular repos.
+	 */
+	protected List<DynamicRepoState> loadDynamicRepoStates(final NarrativeCategoriesIndex prev)
+	        throws NarrativeMethodStoreException {
+	    List<DynamicRepoState> ret = new ArrayList<DynamicRepoState>();
+	    try {
+	        Map<String, Map<RepoTag, Long>> tagVersions = dynamicRepos.listRepoTagVersions();
+	        Map<String, Set<Long>> changedVersions = new TreeMap<String, Set<Long>>();
+	        for (Map.Entry<String, Map<RepoTag, Long>> entry : tagVersions.entrySet()) {
+	            Set<Long> versions = new TreeSet<Long>();
+	            for (Map.Entry<RepoTag, Long> tagEntry : entry.getValue().entrySet())
+	                if (prev == null || !tagEntry.getValue().equals(prev.getDynamicRepoVersions()
+	                        .get(NarrativeCategoriesIndex.getRepoVersionKey(entry.getKey(), 
+	                                tagEntry.getKey()))))
+	                    versions.add(tagEntry.getValue());
+	            if (!versions.isEmpty())
+	                changedVersions.put(entry.getKey(), versions);
+	        }
+	        Map<String, Map<Long, RepoProvider>> details = changedVersions.isEmpty() ?
+	                Collections.<String, Map<Long, RepoProvider>>emptyMap() :
+	                dynamicRepos.getRepoDetailsHistory(changedVersions);
+	        for (Map.Entry<String, Map<RepoTag, Long>> entry : tagVersions.entrySet())
+	            ret.add(loadDynamicRepoState(entry.getKey(), prev, RepoTag.values(), 
+	                    entry.getValue(), details.get(entry.getKey())));
+	        return ret;
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                "loading dynamic repos in bulk, they are loaded one by one: " + ex.getMessage());
+	    }
+	    List<Callable<DynamicRepoState>> repoLoaders = new ArrayList<Callable<DynamicRepoState>>();
+	    for (final String repoMN : dynamicRepos.listRepoModuleNames()) {
+	        repoLoaders.add(new Callable<DynamicRepoState>() {
+	            @Override
+	            public DynamicRepoState call() {
+	                return loadDynamicRepoState(repoMN, prev, RepoTag.values());
+	            }
+	        });
+	    }
+	    return runLoaders(repoLoaders);
+	}
+	
+	/**
+	 * Resolves versions of given tags of dynamic repo and lists methods for the tags which 
+	 * versions were changed comparing to previous index (the rest is copied from it). 
+	 */
+	protected DynamicRepoState loadDynamicRepoState(String repoMN, NarrativeCategoriesIndex prev,
+	        Collection<RepoTag> tags) {
+	    return loadDynamicRepoState(repoMN, prev, tags, null, null);
+	}
+	
+	/**
+	 * The same as {@link #loadDynamicRepoState(String, NarrativeCategoriesIndex, Collection)}
+	 * using versions of tags and details of versions loaded before (tags missing in tag 
+	 * versions have no version, missing details are requested here). 
+	 */
+	protected DynamicRepoState loadDynamicRepoState(String repoMN, NarrativeCategoriesIndex prev,
+	        Collection<RepoTag> tags, Map<RepoTag, Long> tagVersions, 
+	        Map<Long, RepoProvider> details) {
+	    DynamicRepoState ret = new DynamicRepoState(repoMN);
+	    for (RepoTag tag : tags) {
+	        String versionKey = NarrativeCategoriesIndex.getRepoVersionKey(repoMN, tag);
+	        try {
+	            Long version = tagVersions != null ? tagVersions.get(tag) : 
+	                dynamicRepos.getRepoLastVersion(repoMN, tag);
+	            if (version == null)
+	                continue;
+	            if (prev != null && version.equals(prev.getDynamicRepoVersions().get(versionKey))) {
+	                ret.methods.addAll(prev.getDynamicRepoMethods(repoMN, tag));
+	            } else {
+	                RepoProvider repo = details == null ? null : details.get(version);
+	                if (repo == null)
+	                    repo = dynamicRepos.getRepoDetailsHistory(repoMN, version);
+	                for (String methodId : repo.listUINarrativeMethodIDs()) {
+	                    ret.methods.add(new MethodId(repoMN, methodId, tag));
+	                }
+	                ret.changedRepoTags.add(versionKey);
+	            }
+	            ret.versions.put(versionKey, version);
+	        } catch (Exception ex) {
+	            ret.changedRepoTags.add(versionKey);
+	            if (tag.equals(RepoTag.dev))
+	                ret.error = ex;
+	        }
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Runs loading tasks in index loader thread pool (or in current thread if pool is not 
+	 * configured). Tasks are expected to catch their own errors. Results are returned in 
+	 * the same order as tasks.
+	 */
+	protected <T> List<T> runLoaders(List<Callable<T>> tasks) throws NarrativeMethodStoreException {
+	    List<T> ret = new ArrayList<T>();
+	    try {
+	        if (indexLoaderPool == null || tasks.size() < 2) {
+	            for (Callable<T> task : tasks)
+	                ret.add(task.call());
+	        } else {
+	            for (Future<T> future : indexLoaderPool.invokeAll(tasks))
+	                ret.add(future.get());
+	        }
+	    } catch (ExecutionException ex) {
+	        Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+	        throw new NarrativeMethodStoreException("Error loading category index: " + 
+	                cause.getMessage(), cause);
+	    } catch (Exception ex) {
+	        throw new NarrativeMethodStoreException("Error loading category index: " + 
+	                ex.getMessage(), ex);
+	    }
+	    return ret;
+	}
+	
+	protected static class DynamicRepoState {
+	    protected final String moduleName;
+	    protected final Set<MethodId> methods = new TreeSet<MethodId>();
+	    protected final Map<String, Long> versions = new TreeMap<String, Long>();
+	    protected final Set<String> changedRepoTags = new HashSet<String>();
+	    protected Exception error = null;
+	    
+	    protected DynamicRepoState(String moduleName) {
+	        this.moduleName = moduleName;
+	    }
+	}
+	
+	/**
+	 * Lists git tree hashes of sub-folders of given spec-repo folder at HEAD. Unlike file 
+	 * fingerprints they don't change when spec-repo is re-cloned, so index loaded from 
+	 * catalog snapshot could be validated without re-parsing everything.
+	 * @return map from sub-folder name to tree hash, empty map in case of git error
+	 */
+	protected Map<String, String> getFolderTreeHashes(String dirName) {
+	    Map<String, String> ret = new HashMap<String, String>();
+	    try {
+	        String out = git.listTree(gitLocalPath, gitRepoUrl, dirName);
+	        for (String line : out.split("\n")) {
+	            // <mode> SP <type> SP <object> TAB <path>
+	            int tabPos = line.indexOf('\t');
+	            if (tabPos < 0)
+	                continue;
+	            String[] parts = line.substring(0, tabPos).split(" ");
+	            if (parts.length < 3 || !parts[1].equals("tree"))
+	                continue;
+	            String path = line.substring(tabPos + 1);
+	            ret.put(path.substring(path.lastIndexOf('/') + 1), "tree:" + parts[2]);
+	        }
+	    } catch (Exception ex) {
+	        System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                "listing git trees of " + dirName + " folder: " + ex.getMessage());
+	    }
+	    return ret;
+	}
+	
+	/**
+	 * Fingerprint of a spec folder: git tree hash if it's known or description of its files.
+	 */
+	protected static String getFolderFingerprint(Map<String, String> treeHashes, 
+	        File parentDir, String name) {
+	    String ret = treeHashes.get(name);
+	    return ret != null ? ret : getFolderFingerprint(new File(parentDir, name));
+	}
+	
+	/**
+	 * Cheap fingerprint of the files in a spec folder (relative paths, sizes and modification 
+	 * times) which is used to detect folders changed by git merge.
+	 */
+	protected static String getFolderFingerprint(File dir) {
+	    StringBuilder ret = new StringBuilder();
+	    appendFingerprint(dir, "", ret);
+	    return ret.toString();
+	}
+	
+	private static void appendFingerprint(File f, String path, StringBuilder ret) {
+	    if (f.isDirectory()) {
+	        File[] subs = f.listFiles();
+	        if (subs == null)
+	            return;
+	        Arrays.sort(subs);
+	        for (File sub : subs)
+	            appendFingerprint(sub, path + "/" + sub.getName(), ret);
+	    } else {
+	        ret.append(path).append(':').append(f.length()).append(':')
+	            .append(f.lastModified()).append(';');
+	    }
+	}
+	
+	/**
+	 * Keys of index items which were reloaded, added or removed during index rebuild.
+	 */
+	protected static class IndexChanges {
+	    protected NarrativeCategoriesIndex index = null;
+	    // data parsed during rebuild, it goes straight into caches of new generation
+	    protected final Map<MethodId, NarrativeMethodData> loadedMethods = 
+	            new ConcurrentHashMap<MethodId, NarrativeMethodData>();
+	    protected final Map<String, NarrativeAppData> loadedApps = 
+	            new ConcurrentHashMap<String, NarrativeAppData>();
+	    protected final boolean full;
+	    protected final Set<MethodId> methods = new HashSet<MethodId>();
+	    protected final Set<String> repoTags = new HashSet<String>();
+	    protected final Set<String> apps = new HashSet<String>();
+	    
+	    protected IndexChanges(boolean full) {
+	        this.full = full;
+	    }
+	    
+	    public boolean affectsMethod(MethodId mId) {
+	        if (full || methods.contains(mId))
+	            return true;
+	        if (!mId.isDynamic())
+	            return false;
+	        // versions marked by git commit hash are resolved through the list of all versions 
+	        // which only changes when new version is registered (which is dev tag).
+	        RepoTag tag = mId.getTag().isGitCommitHash() ? RepoTag.dev : mId.getTag();
+	        return repoTags.contains(NarrativeCategoriesIndex.getRepoVersionKey(
+	                mId.getRepoModuleName(), tag));
+	    }
+	    
+	    public boolean affectsApp(String appId) {
+	        return full || apps.contains(appId);
+	    }
 	}
 
+	/**
+	 * Immutable categories index and caches of full infos and specs loaded according to it.
+	 */
+	protected class IndexGeneration {
+	    // Parts of memory budget given to each cache, methods outnumber apps by far
+	    protected static final double METHOD_DATA_BUDGET_SHARE = 0.8;
+	    protected static final double APP_BUDGET_SHARE = 0.1;
+	    protected final NarrativeCategoriesIndex index;
+	    protected final LoadingCache<MethodId, NarrativeMethodData> methodDataCache;
+	    protected final LoadingCache<String, AppFullInfo> appFullInfoCache;
+	    protected final LoadingCache<String, AppSpec> appSpecCache;
+	    protected final String version;
+	    // list_categories and list_methods results keyed by tag (dev, beta or release only,
+	    // any commit hash is accepted as tag so such listings are not kept) and load flags
+	    protected final ConcurrentHashMap<String, PrerenderedJson<CategoriesListing>> categoriesListings =
+	            new ConcurrentHashMap<String, PrerenderedJson<CategoriesListing>>();
+	    protected final ConcurrentHashMap<RepoTag, PrerenderedJson<List<MethodBriefInfo>>> methodListings =
+	            new ConcurrentHashMap<RepoTag, PrerenderedJson<List<MethodBriefInfo>>>();
+	    // list_apps result, apps don't depend on tag
+	    protected volatile PrerenderedJson<List<AppBriefInfo>> appListing = null;
+	    
+	    protected IndexGeneration(final NarrativeCategoriesIndex index) {
+	        this.index = index;
+	        this.version = getCatalogVersion(index);
+	        this.methodDataCache = cacheSettings.build(METHOD_DATA_BUDGET_SHARE, 
+	                new Weigher<MethodId, NarrativeMethodData>() {
+	                    @Override
+	                    public int weigh(MethodId key, NarrativeMethodData value) {
+	                        // brief info kept on heap by compact data is small part of 
+	                        // parsed files, so their size is counted once
+	                        if (value instanceof CompactMethodData)
+	                            return (int)Math.min(Integer.MAX_VALUE, value.getSourceSize() + 
+	                                    ((CompactMethodData)value).getCompactSize());
+	                        return CacheSettings.estimateSize(value.getSourceSize());
+	                    }
+	                }, new CacheLoader<MethodId, NarrativeMethodData>() {
+	                    @Override
+	                    public NarrativeMethodData load(MethodId methodId) throws NarrativeMethodStoreException {
+	                        return loadMethodDataUncached(methodId, index);
+	                    }
+	                    @Override
+	                    public Map<MethodId, NarrativeMethodData> loadAll(
+	                            Iterable<? extends MethodId> methodIds) throws NarrativeMethodStoreException {
+	                        return loadMethodDataUncached(methodIds, index);
+	                    }
+	                });
+	        this.appFullInfoCache = cacheSettings.build(APP_BUDGET_SHARE, 
+	                new Weigher<String, AppFullInfo>() {
+	                    @Override
+	                    public int weigh(String key, AppFullInfo value) {
+	                        return CacheSettings.estimateSize(getSourceSize(new File(getAppsDir(), key)));
+	                    }
+	                }, new CacheLoader<String, AppFullInfo>() {
+	                    @Override
+	                    public AppFullInfo load(String methodId) throws NarrativeMethodStoreException {
+	                        return loadAppDataUncached(methodId).getAppFullInfo();
+	                    }
+	                    @Override
+	                    public Map<String, AppFullInfo> loadAll(Iterable<? extends String> appIds)
+	                            throws NarrativeMethodStoreException {
+	                        Map<String, AppFullInfo> ret = new LinkedHashMap<String, AppFullInfo>();
+	                        for (Map.Entry<String, NarrativeAppData> entry : 
+	                                loadAppDataUncached(appIds).entrySet())
+	                            ret.put(entry.getKey(), entry.getValue().getAppFullInfo());
+	                        return ret;
+	                    }
+	                });
+	        this.appSpecCache = cacheSettings.build(APP_BUDGET_SHARE, 
+	                new Weigher<String, AppSpec>() {
+	                    @Override
+	                    public int weigh(String key, AppSpec value) {
+	                        return CacheSettings.estimateSize(getSourceSize(new File(getAppsDir(), key)));
+	                    }
+	                }, new CacheLoader<String, AppSpec>() {
+	                    @Override
+	                    public AppSpec load(String methodId) throws NarrativeMethodStoreException {
+	                        return loadAppDataUncached(methodId).getAppSpec();
+	                    }
+	                    @Override
+	                    public Map<String, AppSpec> loadAll(Iterable<? extends String> appIds)
+	                            throws NarrativeMethodStoreException {
+	                        Map<String, AppSpec> ret = new LinkedHashMap<String, AppSpec>();
+	                        for (Map.Entry<String, NarrativeAppData> entry : 
+	                                loadAppDataUncached(appIds).entrySet())
+	                            ret.put(entry.getKey(), entry.getValue().getAppSpec());
+	                        return ret;
+	                    }
+	                });
+	    }
+	    
+	    protected Map<String, Cache<?, ?>> getCaches() {
+	        Map<String, Cache<?, ?>> ret = new LinkedHashMap<String, Cache<?, ?>>();
+	        ret.put("method_data", methodDataCache);
+	        ret.put("app_full_info", appFullInfoCache);
+	        ret.put("app_spec", appSpecCache);
+	        return ret;
+	    }
+	    
+	    protected PrerenderedJson<CategoriesListing> getCategoriesListing(RepoTag tag, 
+	            boolean loadMethods, boolean loadApps, boolean loadTypes) {
+	        if (tag.isGitCommitHash())
+	            return new PrerenderedJson<CategoriesListing>(new CategoriesListing(index, 
+	                    tag.toString(), loadMethods, loadApps, loadTypes), version);
+	        String key = CategoriesListing.getKey(tag.name(), loadMethods, loadApps, loadTypes);
+	        PrerenderedJson<CategoriesListing> ret = categoriesListings.get(key);
+	        if (ret == null) {
+	            ret = new PrerenderedJson<CategoriesListing>(new CategoriesListing(index, 
+	                    tag.name(), loadMethods, loadApps, loadTypes), version);
+	            PrerenderedJson<CategoriesListing> other = categoriesListings.putIfAbsent(key, ret);
+	            if (other != null)
+	                ret = other;
+	        }
+	        return ret;
+	    }
+	    
+	    protected PrerenderedJson<List<MethodBriefInfo>> getMethodListing(RepoTag tag) {
+	        if (tag.isGitCommitHash())
+	            return new PrerenderedJson<List<MethodBriefInfo>>(Collections.unmodifiableList(
+	                    new ArrayList<MethodBriefInfo>(index.getMethods(tag.toString()).values())), 
+	                    version);
+	        PrerenderedJson<List<MethodBriefInfo>> ret = methodListings.get(tag);
+	        if (ret == null) {
+	            ret = new PrerenderedJson<List<MethodBriefInfo>>(Collections.unmodifiableList(
+	                    new ArrayList<MethodBriefInfo>(index.getMethods(tag.name()).values())), 
+	                    version);
+	            PrerenderedJson<List<MethodBriefInfo>> other = methodListings.putIfAbsent(tag, ret);
+	            if (other != null)
+	                ret = other;
+	        }
+	        return ret;
+	    }
+	    
+	    protected PrerenderedJson<List<AppBriefInfo>> getAppListing() {
+	        PrerenderedJson<List<AppBriefInfo>> ret = appListing;
+	        if (ret == null) {
+	            // the same value could be built twice by concurrent calls, it's harmless
+	            ret = new PrerenderedJson<List<AppBriefInfo>>(Collections.unmodifiableList(
+	                    new ArrayList<AppBriefInfo>(index.getApps().values())), version);
+	            appListing = ret;
+	        }
+	        return ret;
+	    }
+	    
+	    /**
+	     * Builds method views of index and renders JSON of listings for default tag with 
+	     * everything loaded (which is what Narrative asks for on every page load) before 
+	     * generation is published.
+	     */
+	    protected void prerenderListings() {
+	        index.prepareTagViews();
+	        try {
+	            // gzipped form is sent by /catalog, deflated one by JSON-RPC calls
+	            getCategoriesListing(defaultTagForGetters, true, true, true).getGzippedJson();
+	            getCategoriesListing(defaultTagForGetters, true, true, true).getDeflatedJson();
+	            getMethodListing(defaultTagForGetters).getGzippedJson();
+	            getMethodListing(defaultTagForGetters).getDeflatedJson();
+	        } catch (Exception ex) {
+	            System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: error " +
+	                    "rendering listings: " + ex.getMessage());
+	        }
+	    }
+	    
+	    /**
+	     * Puts data parsed during index rebuild into caches.
+	     */
+	    protected void addLoadedEntries(IndexChanges changes) {
+	        methodDataCache.putAll(changes.loadedMethods);
+	        for (Map.Entry<String, NarrativeAppData> entry : changes.loadedApps.entrySet()) {
+	            appFullInfoCache.put(entry.getKey(), entry.getValue().getAppFullInfo());
+	            appSpecCache.put(entry.getKey(), entry.getValue().getAppSpec());
+	        }
+	    }
+	    
+	    /**
+	     * Copies cache entries of previous generation which are not affected by index changes.
+	     */
+	    protected void copyUnaffectedEntries(IndexGeneration prev, IndexChanges changes) {
+	        if (prev == null || changes.full)
+	            return;
+	        for (Map.Entry<MethodId, NarrativeMethodData> entry : prev.methodDataCache.asMap().entrySet())
+	            if (!changes.affectsMethod(entry.getKey()))
+	                methodDataCache.put(entry.getKey(), entry.getValue());
+	        for (Map.Entry<String, AppFullInfo> entry : prev.appFullInfoCache.asMap().entrySet())
+	            if (!changes.affectsApp(entry.getKey()))
+	                appFullInfoCache.put(entry.getKey(), entry.getValue());
+	        for (Map.Entry<String, AppSpec> entry : prev.appSpecCache.asMap().entrySet())
+	            if (!changes.affectsApp(entry.getKey()))
+	                appSpecCache.put(entry.getKey(), entry.getValue());
+	    }
+	}
+	
     public String getFullMethodName(String repoModuleName, String shortMethodId) {
         return repoModuleName + "/" + shortMethodId;
     }
@@ -729,9 +1786,22 @@ public class LocalGitDB {
 	}
 
 	public long registerRepo(String userId, String url, String commitHash) throws NarrativeMethodStoreException {
+	    return registerRepo(userId, url, commitHash, null);
+	}
+	
+	/**
+	 * @param registration optional tracker of registration phases.
+	 * @return version of registered repo
+	 */
+	public long registerRepo(String userId, String url, String commitHash, 
+	        RepoRegistrationQueue.Registration registration) throws NarrativeMethodStoreException {
 	    RepoProvider pvd = null;
 	    try {
 	        pvd = new GitHubRepoProvider(new URL(url), commitHash, getTempDir());
+	        if (registration != null) {
+	            registration.setModuleName(pvd.getModuleName());
+	            registration.setState(RepoRegistrationQueue.STATE_PARSING);
+	        }
             String serviceVersion = pvd.getGitCommitHash();
             StringBuilder errors = new StringBuilder();
             for (String methodId : pvd.listUINarrativeMethodIDs()) {
@@ -751,10 +1821,13 @@ public class LocalGitDB {
             }
             if (errors.length() > 0)
                 throw new NarrativeMethodStoreException(errors.toString());
+            if (registration != null)
+                registration.setState(RepoRegistrationQueue.STATE_SAVING);
 	        dynamicRepos.registerRepo(userId, pvd);
-	        // TODO: Index invalidation is temp solution, we need to substitute it by small 
-	        // corrections related to this particular repo.
-	        hardRefresh();
+            if (registration != null)
+                registration.setState(RepoRegistrationQueue.STATE_REFRESHING);
+	        // new version is registered under dev tag only
+	        refreshModule(pvd.getModuleName(), RepoTag.dev);
 	        return dynamicRepos.getRepoLastVersion(pvd.getModuleName(), null);
 	    } catch (MalformedURLException ex) {
 	        throw new NarrativeMethodStoreException("Error parsing repository url: " + 
@@ -829,7 +1902,7 @@ public class LocalGitDB {
 	public void setRepoState(String userId, String moduleName, String repoState)
 	        throws NarrativeMethodStoreException {
 	    dynamicRepos.setRepoState(userId, moduleName, RepoState.valueOf(repoState));
-	    hardRefresh();
+	    refreshModule(moduleName, null);
 	}
 	
 	public String getRepoState(String moduleName) throws NarrativeMethodStoreException {
@@ -842,8 +1915,16 @@ public class LocalGitDB {
 	
 	public void saveScreenshotIntoStream(String moduleName, String methodId, 
 	        String screenshotId, String tag, OutputStream os) throws NarrativeMethodStoreException {
-	    dynamicRepos.getRepoDetails(moduleName, notNull(tag)).getScreenshot(methodId, 
-	            screenshotId).saveToStream(os);
+	    getScreenshot(moduleName, methodId, screenshotId, tag).saveToStream(os);
+	}
+	
+	/**
+	 * Resolves screenshot of dynamic repo method without loading its content.
+	 */
+	public FilePointer getScreenshot(String moduleName, String methodId, 
+	        String screenshotId, String tag) throws NarrativeMethodStoreException {
+	    return dynamicRepos.getRepoDetails(moduleName, notNull(tag)).getScreenshot(methodId, 
+	            screenshotId);
 	}
 	
 	/*public long registerRepo(String userId, String moduleName, MethodSpec methodSpec, 
@@ -867,7 +1948,8 @@ public class LocalGitDB {
 	
     public void pushRepoToTag(String repoModuleName, String tagName, String userId) 
             throws NarrativeMethodStoreException {
-        dynamicRepos.pushRepoToTag(repoModuleName, RepoTag.valueOf(tagName), userId);
-        hardRefresh();
+        RepoTag tag = RepoTag.valueOf(tagName);
+        dynamicRepos.pushRepoToTag(repoModuleName, tag, userId);
+        refreshModule(repoModuleName, tag);
     }
 }
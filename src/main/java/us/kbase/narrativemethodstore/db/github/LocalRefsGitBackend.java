@@ -0,0 +1,93 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Resolves HEAD and FETCH_HEAD by reading ref files of local repo in process, so checks 
+ * for spec-repo changes don't fork git processes. Operations changing repo (clone, fetch,
+ * merge) and reading objects are still done by git commands. In case ref files can't be 
+ * interpreted (unusual repo layout) git commands are used as well.
+ */
+public class LocalRefsGitBackend extends CommandLineGitBackend {
+    private static final Pattern COMMIT_HASH = Pattern.compile("[0-9a-f]{40}([0-9a-f]{24})?");
+    private static final int MAX_SYMREF_DEPTH = 5;
+    
+    @Override
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        try {
+            String ret = resolveRef(new File(gitLocalPath, ".git"), "HEAD");
+            if (ret != null)
+                return ret;
+        } catch (IOException ignore) {}
+        return super.getHeadCommitHash(gitLocalPath, gitRepoUrl);
+    }
+    
+    @Override
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        File fetchHead = new File(new File(gitLocalPath, ".git"), "FETCH_HEAD");
+        if (!fetchHead.exists())
+            return null;
+        try {
+            // <hash> TAB [not-for-merge] TAB <description>
+            for (String line : FileUtils.readLines(fetchHead, "UTF-8")) {
+                String[] parts = line.split("\t");
+                if (parts.length > 1 && parts[1].isEmpty() && isCommitHash(parts[0]))
+                    return parts[0];
+            }
+        } catch (IOException ignore) {}
+        return super.getFetchHeadCommitHash(gitLocalPath, gitRepoUrl);
+    }
+    
+    /**
+     * Resolves symbolic and direct refs using loose ref files and packed-refs.
+     * @return commit hash or null if ref can't be resolved
+     */
+    public static String resolveRef(File gitDir, String refName) throws IOException {
+        for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+            String value = null;
+            File refFile = new File(gitDir, refName);
+            if (refFile.isFile()) {
+                value = FileUtils.readFileToString(refFile, "UTF-8").trim();
+            } else {
+                value = findPackedRef(gitDir, refName);
+                if (value == null)
+                    return null;
+            }
+            if (value.startsWith("ref:")) {
+                refName = value.substring(4).trim();
+                continue;
+            }
+            return isCommitHash(value) ? value : null;
+        }
+        return null;
+    }
+    
+    private static String findPackedRef(File gitDir, String refName) throws IOException {
+        File packedRefs = new File(gitDir, "packed-refs");
+        if (!packedRefs.isFile())
+            return null;
+        List<String> lines = FileUtils.readLines(packedRefs, "UTF-8");
+        for (String line : lines) {
+            if (line.startsWith("#") || line.startsWith("^"))
+                continue;
+            int spacePos = line.indexOf(' ');
+            if (spacePos > 0 && line.substring(spacePos + 1).trim().equals(refName))
+                return line.substring(0, spacePos);
+        }
+        return null;
+    }
+    
+    private static boolean isCommitHash(String text) {
+        return COMMIT_HASH.matcher(text).matches();
+    }
+}
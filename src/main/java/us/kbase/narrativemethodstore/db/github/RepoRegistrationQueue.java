@@ -0,0 +1,227 @@
+package us.kbase.narrativemethodstore.db.github;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import us.kbase.narrativemethodstore.RegistrationStatus;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Runs registrations of dynamic repos in background threads so that server threads
+ * are not blocked by git clone, parsing and index refresh. Synchronous registrations run
+ * in the same threads (caller waits for them), so number of concurrent and queued 
+ * registrations is limited for both kinds. Registration of the same url and commit by 
+ * the same user which is already queued or running is not started twice (registrations
+ * of other users are checked against their own permissions so they are not merged).
+ * Statuses of finished registrations are kept for {@link #FINISHED_STATUS_TTL_HOURS}.
+ */
+public class RepoRegistrationQueue {
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_CLONING = "cloning";
+    public static final String STATE_PARSING = "parsing";
+    public static final String STATE_SAVING = "saving";
+    public static final String STATE_REFRESHING = "refreshing";
+    public static final String STATE_DONE = "done";
+    public static final String STATE_ERROR = "error";
+
+    public static final int FINISHED_STATUS_TTL_HOURS = 24;
+    public static final int MAX_FINISHED_STATUSES = 10000;
+
+    private final Registrar registrar;
+    private final ThreadPoolExecutor executor;
+    // registrations which are queued or running
+    private final Map<String, Registration> active = new LinkedHashMap<String, Registration>();
+    private final Cache<String, RegistrationStatus> finished;
+
+    /**
+     * Does actual registration and reports its phases.
+     */
+    public interface Registrar {
+        public long registerRepo(String userId, String url, String commitHash,
+                Registration registration) throws NarrativeMethodStoreException;
+    }
+
+    /**
+     * @param threads max number of registrations running concurrently.
+     * @param queueSize max number of registrations waiting for a free thread.
+     */
+    public RepoRegistrationQueue(Registrar registrar, int threads, int queueSize) {
+        this.registrar = registrar;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)),
+                new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("nms-repo-registration-%d").build());
+        this.finished = CacheBuilder.newBuilder().maximumSize(MAX_FINISHED_STATUSES)
+                .expireAfterWrite(FINISHED_STATUS_TTL_HOURS, TimeUnit.HOURS).build();
+    }
+
+    /**
+     * Queues registration.
+     * @return id of registration
+     */
+    public String submit(String userId, String url, String commitHash)
+            throws NarrativeMethodStoreException {
+        return enqueue(userId, url, commitHash).id;
+    }
+
+    /**
+     * Queues registration and waits until it's finished.
+     * @return id of registration
+     */
+    public String run(String userId, String url, String commitHash)
+            throws NarrativeMethodStoreException {
+        Registration reg = enqueue(userId, url, commitHash);
+        try {
+            reg.done.await();
+        } catch (InterruptedException ex) {
+            throw new NarrativeMethodStoreException("Waiting for registration " + reg.id +
+                    " was interrupted, it's still running", ex);
+        }
+        NarrativeMethodStoreException error = reg.getError();
+        if (error != null)
+            throw error;
+        return reg.id;
+    }
+
+    private Registration enqueue(String userId, String url, String commitHash)
+            throws NarrativeMethodStoreException {
+        final Registration reg;
+        synchronized (this) {
+            for (Registration other : active.values())
+                if (other.isSameRepo(userId, url, commitHash))
+                    return other;
+            reg = new Registration(userId, url, commitHash);
+            active.put(reg.id, reg);
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runRegistration(reg);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            synchronized (this) {
+                active.remove(reg.id);
+            }
+            throw new NarrativeMethodStoreException("Too many repository registrations are " +
+                    "queued (" + executor.getQueue().size() + "), please try again later");
+        }
+        return reg;
+    }
+
+    private void runRegistration(Registration reg) {
+        reg.start();
+        try {
+            reg.finish(registrar.registerRepo(reg.userId, reg.url, reg.commitHash, reg), null);
+        } catch (NarrativeMethodStoreException ex) {
+            reg.finish(null, ex);
+        } catch (Throwable ex) {
+            reg.finish(null, new NarrativeMethodStoreException(ex.getMessage(), ex));
+        }
+        if (reg.getError() != null)
+            System.err.println("[" + new Date() + "] NarrativeMethodStore.LocalGitDB: " +
+                    "error registering repo " + reg.url + ": " + reg.getError().getMessage());
+        synchronized (this) {
+            finished.put(reg.id, reg.getStatus());
+            active.remove(reg.id);
+        }
+        reg.done.countDown();
+    }
+
+    public RegistrationStatus getStatus(String registrationId)
+            throws NarrativeMethodStoreException {
+        synchronized (this) {
+            Registration reg = active.get(registrationId);
+            if (reg != null)
+                return reg.getStatus();
+            RegistrationStatus ret = finished.getIfPresent(registrationId);
+            if (ret != null)
+                return ret;
+        }
+        throw new NarrativeMethodStoreException("Registration " + registrationId +
+                " is not found");
+    }
+
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Progress of one registration.
+     */
+    public static class Registration {
+        private final String id = UUID.randomUUID().toString();
+        private final String userId;
+        private final String url;
+        private final String commitHash;
+        private final long queuedTime = System.currentTimeMillis();
+        private String moduleName = null;
+        private String state = STATE_QUEUED;
+        private Long startTime = null;
+        private Long finishTime = null;
+        private Long version = null;
+        private NarrativeMethodStoreException error = null;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Registration(String userId, String url, String commitHash) {
+            this.userId = userId;
+            this.url = url;
+            this.commitHash = commitHash;
+        }
+
+        private boolean isSameRepo(String otherUserId, String otherUrl,
+                String otherCommitHash) {
+            return userId.equals(otherUserId) && url.equals(otherUrl) &&
+                    (commitHash == null ? otherCommitHash == null :
+                        commitHash.equals(otherCommitHash));
+        }
+
+        public synchronized void setState(String state) {
+            this.state = state;
+        }
+
+        public synchronized void setModuleName(String moduleName) {
+            this.moduleName = moduleName;
+        }
+
+        private synchronized void start() {
+            startTime = System.currentTimeMillis();
+            state = STATE_CLONING;
+        }
+
+        private synchronized void finish(Long version, NarrativeMethodStoreException error) {
+            finishTime = System.currentTimeMillis();
+            this.version = version;
+            this.error = error;
+            state = error == null ? STATE_DONE : STATE_ERROR;
+        }
+
+        private synchronized NarrativeMethodStoreException getError() {
+            return error;
+        }
+
+        private synchronized RegistrationStatus getStatus() {
+            return new RegistrationStatus().withRegistrationId(id).withGitUrl(url)
+                    .withGitCommitHash(commitHash).withUserId(userId)
+                    .withModuleName(moduleName).withState(state).withQueuedTime(queuedTime)
+                    .withStartTime(startTime).withFinishTime(finishTime).withVersion(version)
+                    .withError(error == null ? null : error.getMessage());
+        }
+    }
+}
@@ -11,7 +11,13 @@ import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class YamlUtils {
-    private static final Yaml yaml = new Yaml();
+    // Yaml instances are not thread-safe and specs may be parsed concurrently
+    private static final ThreadLocal<Yaml> yaml = new ThreadLocal<Yaml>() {
+        @Override
+        protected Yaml initialValue() {
+            return new Yaml();
+        }
+    };
 
     public static Map<String,Object> getDocumentAsYamlMap(String document) throws IOException {
         StringBuilder sb = new StringBuilder();
@@ -23,7 +29,7 @@ public class YamlUtils {
         }
         document = sb.toString();
         @SuppressWarnings("unchecked")
-        Map<String,Object> data = (Map<String, Object>) yaml.load(document);
+        Map<String,Object> data = (Map<String, Object>) yaml.get().load(document);
         return data;
     }
 
@@ -4,20 +4,40 @@ import static us.kbase.narrativemethodstore.db.mongo.MongoUtils.toDBObject;
 import static us.kbase.narrativemethodstore.db.mongo.MongoUtils.toMap;
 import static us.kbase.narrativemethodstore.db.mongo.MongoUtils.toObject;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
@@ -27,20 +47,53 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.mongodb.WriteResult;
+import com.mongodb.gridfs.GridFS;
+import com.mongodb.gridfs.GridFSDBFile;
+import com.mongodb.gridfs.GridFSInputFile;
 
+import us.kbase.common.service.UObject;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB;
 import us.kbase.narrativemethodstore.db.FileId;
 import us.kbase.narrativemethodstore.db.FilePointer;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider;
 import us.kbase.narrativemethodstore.db.RepoProvider;
+import us.kbase.narrativemethodstore.db.JsonRepoProvider.MethodData;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider.RepoData;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
 
 public class MongoDynamicRepoDB implements DynamicRepoDB {
     private final DB db;
+    private final GridFS fileBlobs;
+    // hashing and uploading of files being saved, shared by all instances (tasks don't 
+    // depend on instance state other than its db, threads are daemons)
+    private static final ExecutorService filePool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("nms-repo-files-%d").build());
     private final Set<String> globalAdmins;
     private final boolean isReadOnly;
+    public static final long REPO_INFO_MAX_AGE_MS = 30000;
+    public static final int REPO_PROVIDER_CACHE_SIZE = 1000;
+    public static final int SMALL_FILE_MAX_SIZE = 64 * 1024;
+    public static final long SMALL_FILE_CACHE_BYTES = 32 * 1024 * 1024;
+    // ranges of file ids allocated for one batch of records before giving up
+    private static final int MAX_FILE_ID_ATTEMPTS = 10;
+    // states and tag versions of all repos, reloaded on each listing of repos, after each
+    // change done through this instance and when it gets older than REPO_INFO_MAX_AGE_MS
+    private volatile RepoInfoSnapshot repoInfo = null;
+    private final AtomicLong repoInfoChanges = new AtomicLong(0);
+    // versions of repos never change, so their details are cached by module and version
+    private final Cache<String, RepoProvider> repoProviders = CacheBuilder.newBuilder()
+            .maximumSize(REPO_PROVIDER_CACHE_SIZE).build();
+    // contents of small files (specs, displays, readmes) keyed by file id, they never change
+    private final Cache<String, CachedFile> smallFiles = CacheBuilder.newBuilder()
+            .maximumWeight(SMALL_FILE_CACHE_BYTES).weigher(new Weigher<String, CachedFile>() {
+                @Override
+                public int weigh(String key, CachedFile value) {
+                    return value.data.length;
+                }
+            }).build();
     ////////////////////////////////////////////////////////////////////
     private static final String TABLE_REPO_INFO = "repo_info";
     private static final String FIELD_RI_MODULE_NAME = "module_name";
@@ -62,8 +115,24 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private static final String FIELD_RF_MODULE_NAME = "module_name";
     private static final String FIELD_RF_FILE_NAME = "file_name";
     private static final String FIELD_RF_LENGTH = "length";
-    private static final String FIELD_RF_MD5 = "md5";
-    private static final String FIELD_RF_HEX_DATA = "hex_data";
+    private static final String FIELD_RF_HEX_DATA = "hex_data";  // old format, see migrateHexFile
+    private static final String FIELD_RF_BLOB_ID = "blob_id";
+    private static final String FIELD_RF_SHA256 = "sha256";
+    ////////////////////////////////////////////////////////////////////
+    // one record per distinct file content, counts repo_files records referencing it
+    private static final String TABLE_REPO_FILE_CONTENTS = "repo_file_contents";
+    private static final String FIELD_RC_SHA256 = "sha256";
+    private static final String FIELD_RC_BLOB_ID = "blob_id";
+    private static final String FIELD_RC_LENGTH = "length";
+    private static final String FIELD_RC_REF_COUNT = "ref_count";
+    ////////////////////////////////////////////////////////////////////
+    private static final String TABLE_COUNTERS = "counters";
+    private static final String FIELD_CNT_ID = "_id";
+    private static final String FIELD_CNT_VALUE = "value";
+    private static final String COUNTER_FILE_ID = "file_id";
+    ////////////////////////////////////////////////////////////////////
+    // GridFS bucket with contents of repo_files, referenced by blob_id
+    private static final String BUCKET_REPO_FILE_BLOBS = "repo_file_blobs";
     private static final String FIELD_RF_SHOCK_NODE_ID = "shock_node_id";
 
     public MongoDynamicRepoDB(
@@ -77,6 +146,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         this.isReadOnly = isReadOnly;
         try {
             db = getDB(host, database, dbUser, dbPwd);
+            fileBlobs = new GridFS(db, BUCKET_REPO_FILE_BLOBS);
             if (!isReadOnly)
                 ensureIndeces();
             globalAdmins = new HashSet<String>(globalAdminUserIds);
@@ -117,18 +187,65 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         repoFiles.createIndex(new BasicDBObject(FIELD_RF_FILE_ID, 1), uniq);
         repoFiles.createIndex(new BasicDBObject(FIELD_RF_MODULE_NAME, 1)
                 .append(FIELD_RF_FILE_NAME, 1)
-                .append(FIELD_RF_LENGTH, 1)
-                .append(FIELD_RF_MD5, 1));
+                .append(FIELD_RF_SHA256, 1));
+        
+        final DBCollection repoFileContents = db.getCollection(TABLE_REPO_FILE_CONTENTS);
+        repoFileContents.createIndex(new BasicDBObject(FIELD_RC_SHA256, 1), uniq);
     }
     
     @Override
     public boolean isRepoRegistered(String repoModuleName, boolean withDisabled)
             throws NarrativeMethodStoreException {
-        List<String> dis = MongoUtils.getProjection(db.getCollection(TABLE_REPO_INFO),
-                new BasicDBObject(FIELD_RI_MODULE_NAME, repoModuleName),
-                FIELD_RI_STATE, String.class);
-        return dis.size() > 0 && (withDisabled || 
-                RepoState.valueOf(dis.get(0)) != RepoState.disabled);
+        RepoInfo info = getRepoInfo().get(repoModuleName);
+        return info != null && (withDisabled || 
+                RepoState.valueOf(info.state) != RepoState.disabled);
+    }
+    
+    /**
+     * Returns snapshot of repo_info collection loading it if it's not loaded yet or if 
+     * it's too old (other instances of the service could change it).
+     */
+    private Map<String, RepoInfo> getRepoInfo() {
+        RepoInfoSnapshot ret = repoInfo;
+        if (ret == null || System.currentTimeMillis() - ret.loadTime > REPO_INFO_MAX_AGE_MS)
+            ret = reloadRepoInfo();
+        return ret.repos;
+    }
+    
+    /**
+     * Loads states and tag versions of all repos by single query.
+     */
+    private RepoInfoSnapshot reloadRepoInfo() {
+        long loadTime = System.currentTimeMillis();
+        long changes = repoInfoChanges.get();
+        final DBCursor cur = db.getCollection(TABLE_REPO_INFO).find(
+                new BasicDBObject(),
+                new BasicDBObject(FIELD_RI_MODULE_NAME, 1).append(FIELD_RI_STATE, 1)
+                .append(FIELD_RI_LAST_VERSION, 1).append(FIELD_RI_LAST_BETA_VERSION, 1)
+                .append(FIELD_RI_LAST_RELEASE_VERSION, 1));
+        Map<String, RepoInfo> repos = new LinkedHashMap<String, RepoInfo>();
+        for (final DBObject dbo : cur) {
+            RepoInfo info = new RepoInfo();
+            info.state = (String)dbo.get(FIELD_RI_STATE);
+            info.lastVersion = toLong(dbo.get(FIELD_RI_LAST_VERSION));
+            info.lastBetaVersion = toLong(dbo.get(FIELD_RI_LAST_BETA_VERSION));
+            info.lastReleaseVersion = toLong(dbo.get(FIELD_RI_LAST_RELEASE_VERSION));
+            repos.put((String)dbo.get(FIELD_RI_MODULE_NAME), info);
+        }
+        RepoInfoSnapshot ret = new RepoInfoSnapshot(Collections.unmodifiableMap(repos), loadTime);
+        // snapshot loaded concurrently with a change is not kept
+        if (repoInfoChanges.get() == changes)
+            repoInfo = ret;
+        return ret;
+    }
+    
+    private void invalidateRepoInfo() {
+        repoInfoChanges.incrementAndGet();
+        repoInfo = null;
+    }
+    
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number)value).longValue();
     }
     
     private void checkRepoRegistered(String repoModuleName, List<?> rows)
@@ -164,6 +281,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         checkAdmin(userId);
         String repoModuleName = repoDetails.getModuleName();
         long newVersion = System.currentTimeMillis();
+        reloadRepoInfo();
         boolean wasReg = isRepoRegistered(repoModuleName, true);
         if (wasReg) {
             long oldVersion = getRepoLastVersion(repoModuleName);
@@ -211,6 +329,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
                     .append(FIELD_RI_LAST_VERSION, newVersion)
                     .append(FIELD_RI_STATE, RepoState.ready.toString()));
         }
+        invalidateRepoInfo();
     }
     
     /*private boolean isDockerImageInUse(String dockerImage) 
@@ -223,11 +342,15 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     
     private long getRepoLastVersion(String repoModuleName)
             throws NarrativeMethodStoreException {
-        List<Long> vers = MongoUtils.getProjection(db.getCollection(TABLE_REPO_INFO),
-                new BasicDBObject(FIELD_RI_MODULE_NAME, repoModuleName),
-                FIELD_RI_LAST_VERSION, Long.class);
-        checkRepoRegistered(repoModuleName, vers);
-        return vers.get(0);
+        return getRegisteredRepoInfo(repoModuleName).lastVersion;
+    }
+    
+    private RepoInfo getRegisteredRepoInfo(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        RepoInfo ret = getRepoInfo().get(repoModuleName);
+        if (ret == null)
+            throwRepoWasntRegistered(repoModuleName);
+        return ret;
     }
 
     @Override
@@ -235,25 +358,20 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
             throws NarrativeMethodStoreException {
         if (tag == null || tag.equals(RepoTag.dev))
             return getRepoLastVersion(repoModuleName);
-        List<Long> vers;
         if (tag.isGitCommitHash()) {
-            vers = listRepoVersions(repoModuleName, tag);
+            List<Long> vers = listRepoVersions(repoModuleName, tag);
+            checkRepoRegistered(repoModuleName, vers);
+            return Collections.max(vers);
+        }
+        RepoInfo info = getRegisteredRepoInfo(repoModuleName);
+        if (tag.equals(RepoTag.beta)) {
+            return info.lastBetaVersion;
+        } else if (tag.equals(RepoTag.release)) {
+            return info.lastReleaseVersion;
         } else {
-            String versionField = null;
-            if (tag.equals(RepoTag.beta)) {
-                versionField = FIELD_RI_LAST_BETA_VERSION;
-            } else if (tag.equals(RepoTag.release)) {
-                versionField = FIELD_RI_LAST_RELEASE_VERSION;
-            } else {
-                // this is impossible based on the current RepoTag class
-                throw new NarrativeMethodStoreException("Unsupported tag: " + tag);
-            }
-            vers = MongoUtils.getProjection(db.getCollection(TABLE_REPO_INFO),
-                    new BasicDBObject(FIELD_RI_MODULE_NAME, repoModuleName),
-                    versionField, Long.class);
+            // this is impossible based on the current RepoTag class
+            throw new NarrativeMethodStoreException("Unsupported tag: " + tag);
         }
-        checkRepoRegistered(repoModuleName, vers);
-        return Collections.max(vers);
     }
 
     @Override
@@ -265,13 +383,12 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         // disabled repos
         // As such, that functionality has been removed and the method simplified for now
         
-        final DBCursor cur = db.getCollection(TABLE_REPO_INFO).find(
-                new BasicDBObject(),
-                new BasicDBObject(FIELD_RI_MODULE_NAME, 1).append(FIELD_RI_STATE, 1));
+        // repos are listed when categories index is rebuilt, so versions of all tags asked
+        // next are resolved from the same snapshot
         List<String> ret = new ArrayList<String>();
-        for (final DBObject dbo: cur) {
-            if (RepoState.valueOf((String) dbo.get(FIELD_RI_STATE)) != RepoState.disabled) {
-                ret.add((String) dbo.get(FIELD_RI_MODULE_NAME));
+        for (Map.Entry<String, RepoInfo> entry : reloadRepoInfo().repos.entrySet()) {
+            if (RepoState.valueOf(entry.getValue().state) != RepoState.disabled) {
+                ret.add(entry.getKey());
             }
         }
         return ret;
@@ -317,12 +434,178 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public RepoProvider getRepoDetailsHistory(String repoModuleName,
             long version) throws NarrativeMethodStoreException {
+        String key = getRepoProviderKey(repoModuleName, version);
+        RepoProvider cached = repoProviders.getIfPresent(key);
+        if (cached != null)
+            return cached;
         List<RepoData> ret = MongoUtils.getProjection(db.getCollection(TABLE_REPO_HISTORY),
                 new BasicDBObject(FIELD_RH_MODULE_NAME, repoModuleName)
                         .append(FIELD_RH_VERSION, version),
                 FIELD_RH_REPO_DATA, RepoData.class);
         checkRepoRegistered(repoModuleName, ret);
-        return new JsonRepoProvider(this, ret.get(0));
+        prefetchMethodFiles(ret);
+        RepoProvider provider = new JsonRepoProvider(this, ret.get(0));
+        repoProviders.put(key, provider);
+        return provider;
+    }
+    
+    private static String getRepoProviderKey(String repoModuleName, long version) {
+        return repoModuleName + "/" + version;
+    }
+    
+    @Override
+    public Map<String, Map<RepoTag, Long>> listRepoTagVersions()
+            throws NarrativeMethodStoreException {
+        Map<String, Map<RepoTag, Long>> ret = new LinkedHashMap<String, Map<RepoTag, Long>>();
+        for (Map.Entry<String, RepoInfo> entry : reloadRepoInfo().repos.entrySet()) {
+            RepoInfo info = entry.getValue();
+            if (RepoState.valueOf(info.state) == RepoState.disabled)
+                continue;
+            Map<RepoTag, Long> versions = new LinkedHashMap<RepoTag, Long>();
+            if (info.lastVersion != null)
+                versions.put(RepoTag.dev, info.lastVersion);
+            if (info.lastBetaVersion != null)
+                versions.put(RepoTag.beta, info.lastBetaVersion);
+            if (info.lastReleaseVersion != null)
+                versions.put(RepoTag.release, info.lastReleaseVersion);
+            ret.put(entry.getKey(), versions);
+        }
+        return ret;
+    }
+    
+    @Override
+    public Map<String, Map<Long, RepoProvider>> getRepoDetailsHistory(
+            Map<String, Set<Long>> moduleToVersions) throws NarrativeMethodStoreException {
+        Map<String, Map<Long, RepoProvider>> ret = new LinkedHashMap<String, Map<Long, RepoProvider>>();
+        Set<String> modules = new TreeSet<String>();
+        Set<Long> versions = new TreeSet<Long>();
+        for (Map.Entry<String, Set<Long>> entry : moduleToVersions.entrySet()) {
+            Map<Long, RepoProvider> found = new LinkedHashMap<Long, RepoProvider>();
+            ret.put(entry.getKey(), found);
+            for (Long version : entry.getValue()) {
+                RepoProvider cached = repoProviders.getIfPresent(getRepoProviderKey(
+                        entry.getKey(), version));
+                if (cached != null) {
+                    found.put(version, cached);
+                } else {
+                    modules.add(entry.getKey());
+                    versions.add(version);
+                }
+            }
+        }
+        if (versions.isEmpty())
+            return ret;
+        // all versions are requested for all modules, so the pairs are matched here
+        final DBCursor cur = db.getCollection(TABLE_REPO_HISTORY).find(
+                new BasicDBObject(FIELD_RH_MODULE_NAME, new BasicDBObject("$in", 
+                        new ArrayList<String>(modules)))
+                .append(FIELD_RH_VERSION, new BasicDBObject("$in", new ArrayList<Long>(versions))),
+                new BasicDBObject(FIELD_RH_MODULE_NAME, 1).append(FIELD_RH_VERSION, 1)
+                .append(FIELD_RH_REPO_DATA, 1));
+        List<RepoData> loaded = new ArrayList<RepoData>();
+        for (final DBObject dbo : cur) {
+            String moduleName = (String)dbo.get(FIELD_RH_MODULE_NAME);
+            Long version = toLong(dbo.get(FIELD_RH_VERSION));
+            if (!moduleToVersions.get(moduleName).contains(version))
+                continue;
+            RepoData data = UObject.transformObjectToObject(toMap(dbo).get(FIELD_RH_REPO_DATA),
+                    RepoData.class);
+            loaded.add(data);
+            RepoProvider provider = new JsonRepoProvider(this, data);
+            repoProviders.put(getRepoProviderKey(moduleName, version), provider);
+            ret.get(moduleName).put(version, provider);
+        }
+        prefetchMethodFiles(loaded);
+        return ret;
+    }
+    
+    /**
+     * Loads spec and display files of all methods of given repo versions into small file 
+     * cache by two queries: records of the files and GridFS chunks of their contents (see
+     * {@link #loadSmallBlobs(Map)}). Files saved in old hex format are skipped, they are 
+     * migrated when they are read.
+     */
+    private void prefetchMethodFiles(List<RepoData> repos) {
+        List<String> fileIds = new ArrayList<String>();
+        for (RepoData data : repos) {
+            if (data.uiNarrativeMethods == null)
+                continue;
+            for (MethodData md : data.uiNarrativeMethods.values())
+                for (String fileId : Arrays.asList(md.specFile, md.displayFile))
+                    if (fileId != null && smallFiles.getIfPresent(fileId) == null)
+                        fileIds.add(fileId);
+        }
+        if (fileIds.isEmpty())
+            return;
+        try {
+            final DBCursor cur = db.getCollection(TABLE_REPO_FILES).find(
+                    new BasicDBObject(FIELD_RF_FILE_ID, new BasicDBObject("$in", fileIds)),
+                    new BasicDBObject(FIELD_RF_FILE_ID, 1).append(FIELD_RF_FILE_NAME, 1)
+                    .append(FIELD_RF_LENGTH, 1).append(FIELD_RF_BLOB_ID, 1));
+            // the same content could be referenced by several files
+            Map<ObjectId, List<DBObject>> blobToFiles = new LinkedHashMap<ObjectId, List<DBObject>>();
+            Map<ObjectId, Long> blobLengths = new HashMap<ObjectId, Long>();
+            for (final DBObject dbo : cur) {
+                ObjectId blobId = (ObjectId)dbo.get(FIELD_RF_BLOB_ID);
+                if (blobId == null || toLong(dbo.get(FIELD_RF_LENGTH)) > SMALL_FILE_MAX_SIZE)
+                    continue;
+                List<DBObject> files = blobToFiles.get(blobId);
+                if (files == null) {
+                    files = new ArrayList<DBObject>();
+                    blobToFiles.put(blobId, files);
+                    blobLengths.put(blobId, toLong(dbo.get(FIELD_RF_LENGTH)));
+                }
+                files.add(dbo);
+            }
+            if (blobToFiles.isEmpty())
+                return;
+            Map<ObjectId, byte[]> contents = loadSmallBlobs(blobLengths);
+            for (Map.Entry<ObjectId, List<DBObject>> entry : blobToFiles.entrySet()) {
+                byte[] data = contents.get(entry.getKey());
+                if (data == null)
+                    continue;
+                for (DBObject dbo : entry.getValue())
+                    smallFiles.put((String)dbo.get(FIELD_RF_FILE_ID), new CachedFile(
+                            (String)dbo.get(FIELD_RF_FILE_NAME), data));
+            }
+        } catch (Exception ex) {
+            // files are still loaded one by one when they are requested
+            System.err.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+                    "error prefetching files of repos: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads contents of several GridFS files by one query. The GridFS API of the driver 
+     * (fileBlobs) reads one file per query, so chunks collection is queried directly here.
+     * This is the only place depending on GridFS chunk schema (files_id, n, data) which is
+     * fixed by GridFS specification. Content which doesn't match expected length (file 
+     * isn't completely uploaded or chunks are changed concurrently) is skipped, such file 
+     * is read through GridFS API when it's requested.
+     * @param blobLengths lengths of contents by GridFS ids
+     */
+    private Map<ObjectId, byte[]> loadSmallBlobs(Map<ObjectId, Long> blobLengths)
+            throws IOException {
+        final DBCursor chunks = db.getCollection(BUCKET_REPO_FILE_BLOBS + ".chunks").find(
+                new BasicDBObject("files_id", new BasicDBObject("$in", 
+                        new ArrayList<ObjectId>(blobLengths.keySet()))))
+                .sort(new BasicDBObject("files_id", 1).append("n", 1));
+        Map<ObjectId, ByteArrayOutputStream> contents = new HashMap<ObjectId, ByteArrayOutputStream>();
+        for (final DBObject chunk : chunks) {
+            ObjectId blobId = (ObjectId)chunk.get("files_id");
+            ByteArrayOutputStream content = contents.get(blobId);
+            if (content == null) {
+                content = new ByteArrayOutputStream();
+                contents.put(blobId, content);
+            }
+            Object data = chunk.get("data");
+            content.write(data instanceof Binary ? ((Binary)data).getData() : (byte[])data);
+        }
+        Map<ObjectId, byte[]> ret = new HashMap<ObjectId, byte[]>();
+        for (Map.Entry<ObjectId, ByteArrayOutputStream> entry : contents.entrySet())
+            if (entry.getValue().size() == blobLengths.get(entry.getKey()))
+                ret.put(entry.getKey(), entry.getValue().toByteArray());
+        return ret;
     }
 
     @Override
@@ -370,6 +653,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         data2.update(new BasicDBObject(FIELD_RH_MODULE_NAME, repoModuleName)
                 .append(FIELD_RH_VERSION, changedVer),
                 new BasicDBObject("$set", toDBObject(hist)));
+        invalidateRepoInfo();
     }
     
     @Override
@@ -413,11 +697,7 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public RepoState getRepoState(String repoModuleName)
             throws NarrativeMethodStoreException {
-        List<String> state = MongoUtils.getProjection(db.getCollection(TABLE_REPO_INFO),
-                new BasicDBObject(FIELD_RI_MODULE_NAME, repoModuleName),
-                FIELD_RI_STATE, String.class);
-        checkRepoRegistered(repoModuleName, state);
-        return RepoState.valueOf(state.get(0));
+        return RepoState.valueOf(getRegisteredRepoInfo(repoModuleName).state);
     }
     
     @Override
@@ -439,109 +719,183 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         // race condition
         info.update(new BasicDBObject(FIELD_RI_MODULE_NAME, repoModuleName),
                 new BasicDBObject("$set", obj));
+        invalidateRepoInfo();
     }
     
     @Override
     public FileId saveFile(String moduleName, final File file) throws NarrativeMethodStoreException {
-        return saveFile(moduleName, new FileProvider() {
-            @Override
-            public InputStream openStream() throws NarrativeMethodStoreException {
-                try {
-                    return new FileInputStream(file);
-                } catch (IOException ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
-            }
-            @Override
-            public long length() throws NarrativeMethodStoreException {
-                return file.length();
-            }
-            @Override
-            public String getName() throws NarrativeMethodStoreException {
-                return file.getName();
-            }
-        });
+        return saveFile(moduleName, new LocalFileProvider(file));
     }
     
     @Override
     public FileId saveFile(String moduleName, FileProvider file) 
             throws NarrativeMethodStoreException {
+        return saveFiles(moduleName, Collections.singletonList(file)).get(0);
+    }
+    
+    @Override
+    public List<FileId> saveFiles(String moduleName, final List<FileProvider> files)
+            throws NarrativeMethodStoreException {
         if (isReadOnly)
             throwChangeOperation();
-        String fileName = file.getName();
-        long length = file.length();
-        InputStream is = file.openStream();
-        String md5 = MongoUtils.getMD5(is);
-        try {
-            is.close();
-        } catch (IOException ex) {
-            throw new NarrativeMethodStoreException(ex);
+        final int count = files.size();
+        // hashes of all the files are calculated in parallel
+        List<Callable<String>> hashTasks = new ArrayList<Callable<String>>();
+        for (final FileProvider file : files) {
+            hashTasks.add(new Callable<String>() {
+                @Override
+                public String call() throws NarrativeMethodStoreException {
+                    return getSHA256(file);
+                }
+            });
+        }
+        final List<String> hashes = runInParallel(hashTasks);
+        List<String> names = new ArrayList<String>();
+        for (FileProvider file : files)
+            names.add(file.getName());
+        // files of the same module saved before are found by single query
+        final DBCollection repoFiles = db.getCollection(TABLE_REPO_FILES);
+        Map<String, String> keyToFileId = new HashMap<String, String>();
+        final DBCursor savedCur = repoFiles.find(new BasicDBObject(FIELD_RF_MODULE_NAME, moduleName)
+                .append(FIELD_RF_SHA256, new BasicDBObject("$in", new ArrayList<String>(
+                        new TreeSet<String>(hashes)))),
+                new BasicDBObject(FIELD_RF_FILE_ID, 1).append(FIELD_RF_FILE_NAME, 1)
+                .append(FIELD_RF_SHA256, 1));
+        for (final DBObject dbo : savedCur)
+            keyToFileId.put(getFileKey((String)dbo.get(FIELD_RF_FILE_NAME), 
+                    (String)dbo.get(FIELD_RF_SHA256)), (String)dbo.get(FIELD_RF_FILE_ID));
+        // files which need new records (the same file could appear in the list twice)
+        List<Integer> newPos = new ArrayList<Integer>();
+        Map<String, Long> hashToRefs = new LinkedHashMap<String, Long>();
+        Map<String, Integer> hashToPos = new HashMap<String, Integer>();
+        for (int i = 0; i < count; i++) {
+            String key = getFileKey(names.get(i), hashes.get(i));
+            if (keyToFileId.containsKey(key))
+                continue;
+            keyToFileId.put(key, null);
+            newPos.add(i);
+            Long refs = hashToRefs.get(hashes.get(i));
+            hashToRefs.put(hashes.get(i), refs == null ? 1L : (refs + 1));
+            if (!hashToPos.containsKey(hashes.get(i)))
+                hashToPos.put(hashes.get(i), i);
         }
-        final DBCollection files = db.getCollection(TABLE_REPO_FILES);
-        final DBCursor it = files.find(new BasicDBObject(FIELD_RF_MODULE_NAME, moduleName)
-                .append(FIELD_RF_FILE_NAME, fileName).append(FIELD_RF_LENGTH, length)
-                .append(FIELD_RF_MD5, md5));
-        for (final DBObject dbo: it) {
-            final Map<String, Object> obj = toMap(dbo);
-            is = file.openStream();
+        if (!newPos.isEmpty()) {
+            // references taken so far, they are released if files are not saved
+            Map<String, Long> acquired = Collections.synchronizedMap(new HashMap<String, Long>());
+            boolean saved = false;
             try {
-                OutputComparatorStream ocs = new OutputComparatorStream(is);
-                loadFile(obj, ocs);
-                if (!ocs.isDifferent()) {
-                    String fileId = (String)obj.get(FIELD_RF_FILE_ID);
-                    //System.out.println("File was found: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
-                    return new FileId(fileId);
+                Map<String, ObjectId> hashToBlob = acquireContents(hashToRefs, hashToPos, 
+                        files, acquired);
+                for (int attempt = 1; !saved; attempt++) {
+                    // ids are allocated as one range, records are inserted in one batch
+                    long lastIdNum = nextFileIdNum(newPos.size());
+                    List<DBObject> records = new ArrayList<DBObject>();
+                    List<ObjectId> recordIds = new ArrayList<ObjectId>();
+                    for (int j = 0; j < newPos.size(); j++) {
+                        int i = newPos.get(j);
+                        String fileId = String.valueOf(lastIdNum - newPos.size() + 1 + j);
+                        String shockNodeId = null;
+                        keyToFileId.put(getFileKey(names.get(i), hashes.get(i)), fileId);
+                        ObjectId recordId = new ObjectId();
+                        recordIds.add(recordId);
+                        records.add(new BasicDBObject("_id", recordId)
+                                .append(FIELD_RF_FILE_ID, fileId)
+                                .append(FIELD_RF_MODULE_NAME, moduleName)
+                                .append(FIELD_RF_FILE_NAME, names.get(i))
+                                .append(FIELD_RF_LENGTH, files.get(i).length())
+                                .append(FIELD_RF_SHA256, hashes.get(i))
+                                .append(FIELD_RF_BLOB_ID, hashToBlob.get(hashes.get(i)))
+                                .append(FIELD_RF_SHOCK_NODE_ID, shockNodeId));
+                    }
+                    try {
+                        // complete records only, so there are no partially written records
+                        repoFiles.insert(records);
+                        saved = true;
+                    } catch (DuplicateKeyException ex) {
+                        // id is taken by older version using timestamps as ids, records 
+                        // inserted before the failed one are removed and new range is used
+                        repoFiles.remove(new BasicDBObject("_id", 
+                                new BasicDBObject("$in", recordIds)));
+                        if (attempt >= MAX_FILE_ID_ATTEMPTS)
+                            throw new NarrativeMethodStoreException("Cannot allocate ids " +
+                                    "for files of module " + moduleName + ": " + 
+                                    ex.getMessage(), ex);
+                    }
                 }
             } finally {
-                try {
-                    is.close();
-                } catch (IOException ex) {
-                    throw new NarrativeMethodStoreException(ex);
-                }
+                if (!saved)
+                    for (Map.Entry<String, Long> entry : acquired.entrySet())
+                        releaseContent(entry.getKey(), entry.getValue());
             }
         }
-        // We couldn't find file which is equal to save request. 
-        // Let's store original copy of it.
-        String hexData = null;
-        String shockNodeId = null;
-        is = file.openStream();
-        try {
-            // note that mongo can take ~16MB of data this way tops or it'll throw an error
-            // it's been running in production for years this way so I guess it works...?
-            hexData = MongoUtils.streamToHex(is);
-        } finally {
-            try {
-                is.close();
-            } catch (IOException ex) {
-                throw new NarrativeMethodStoreException(ex);
-            }
+        List<FileId> ret = new ArrayList<FileId>();
+        for (int i = 0; i < count; i++)
+            ret.add(new FileId(keyToFileId.get(getFileKey(names.get(i), hashes.get(i)))));
+        return ret;
+    }
+    
+    private static String getFileKey(String fileName, String sha256) {
+        return fileName + "/" + sha256;
+    }
+    
+    /**
+     * Adds references to contents with given hashes. Contents stored before are found by 
+     * single query and their reference counts are updated in one bulk operation, the rest 
+     * is uploaded into GridFS in parallel.
+     * @param hashToRefs numbers of references to add
+     * @param hashToPos positions of files with given content in files list
+     * @param acquired receives numbers of references added by the moment of failure
+     * @return GridFS ids of the contents
+     */
+    private Map<String, ObjectId> acquireContents(final Map<String, Long> hashToRefs,
+            Map<String, Integer> hashToPos, final List<FileProvider> files,
+            final Map<String, Long> acquired) throws NarrativeMethodStoreException {
+        final DBCollection contents = db.getCollection(TABLE_REPO_FILE_CONTENTS);
+        Map<String, ObjectId> ret = new HashMap<String, ObjectId>();
+        final DBCursor cur = contents.find(new BasicDBObject(FIELD_RC_SHA256, 
+                new BasicDBObject("$in", new ArrayList<String>(hashToRefs.keySet()))),
+                new BasicDBObject(FIELD_RC_SHA256, 1).append(FIELD_RC_BLOB_ID, 1));
+        for (final DBObject dbo : cur)
+            ret.put((String)dbo.get(FIELD_RC_SHA256), (ObjectId)dbo.get(FIELD_RC_BLOB_ID));
+        if (!ret.isEmpty()) {
+            BulkWriteOperation bulk = contents.initializeUnorderedBulkOperation();
+            for (String sha256 : ret.keySet())
+                bulk.find(new BasicDBObject(FIELD_RC_SHA256, sha256)).updateOne(
+                        new BasicDBObject("$inc", new BasicDBObject(FIELD_RC_REF_COUNT, 
+                                hashToRefs.get(sha256))));
+            bulk.execute();
+            for (String sha256 : ret.keySet())
+                acquired.put(sha256, hashToRefs.get(sha256));
         }
-        long fileIdNum = System.currentTimeMillis();
-        while (true) {
-            try {
-                files.insert(new BasicDBObject(FIELD_RF_FILE_ID, "" + fileIdNum));
-                break;
-            } catch (DuplicateKeyException ex) {
-                // there's not really any reasonable way to test this, since saving a file
-                // takes >> 1ms in my tests. Would need multiple threads
-                fileIdNum++;
-            }
+        final List<String> newHashes = new ArrayList<String>();
+        List<Callable<ObjectId>> uploads = new ArrayList<Callable<ObjectId>>();
+        for (final String sha256 : hashToRefs.keySet()) {
+            if (ret.containsKey(sha256))
+                continue;
+            newHashes.add(sha256);
+            final FileProvider file = files.get(hashToPos.get(sha256));
+            uploads.add(new Callable<ObjectId>() {
+                @Override
+                public ObjectId call() throws NarrativeMethodStoreException {
+                    // content is streamed into GridFS chunks, so there is no limit on file size
+                    ObjectId blobId = saveBlob(file.openStream(), file.getName());
+                    ObjectId ret;
+                    try {
+                        ret = insertContent(sha256, file.length(), blobId, 
+                                hashToRefs.get(sha256), file);
+                    } catch (RuntimeException ex) {
+                        fileBlobs.remove(blobId);
+                        throw ex;
+                    }
+                    acquired.put(sha256, hashToRefs.get(sha256));
+                    return ret;
+                }
+            });
         }
-        String fileId = String.valueOf(fileIdNum);
-        // if this fails, there will be an incomplete file record in the DB.
-        // if no shock url is configured the file is saved in a normal mongo object. Since the
-        // file is converted to hex, that means a file > ~8MB will throw a mongo error
-        files.update(new BasicDBObject(FIELD_RF_FILE_ID, fileId),
-                new BasicDBObject("$set",
-                        new BasicDBObject(FIELD_RF_FILE_ID, fileId) // this isn't necessary really
-                        .append(FIELD_RF_MODULE_NAME, moduleName)
-                        .append(FIELD_RF_FILE_NAME, fileName)
-                        .append(FIELD_RF_LENGTH, length)
-                        .append(FIELD_RF_MD5, md5)
-                        .append(FIELD_RF_HEX_DATA, hexData)
-                        .append(FIELD_RF_SHOCK_NODE_ID, shockNodeId)));
-        //System.out.println("File was saved: " + fileName + ", " + length + ", " + md5 + " -> " + fileId);
-        return new FileId(fileId);
+        List<ObjectId> blobIds = runInParallel(uploads);
+        for (int i = 0; i < newHashes.size(); i++)
+            ret.put(newHashes.get(i), blobIds.get(i));
+        return ret;
     }
     
     private Map<String, Object> getFileObject(FileId fileId) 
@@ -557,10 +911,16 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     @Override
     public FilePointer loadFile(FileId fileId)
             throws NarrativeMethodStoreException {
+        CachedFile cached = smallFiles.getIfPresent(fileId.getId());
+        if (cached != null)
+            return new CachedFilePointer(fileId, cached);
         Map<String, Object> obj = getFileObject(fileId);
         String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
         long length = (Long)obj.get(FIELD_RF_LENGTH);
-        return new DbFilePointer(fileId, fileName, length);
+        // record pointing to GridFS doesn't change so there is no need to load it again,
+        // hex records are loaded again since they are migrated on first reading
+        return new DbFilePointer(fileId, fileName, length, 
+                obj.get(FIELD_RF_BLOB_ID) == null ? null : obj);
     }
 
     private void loadFile(FileId fileId, OutputStream target) 
@@ -571,22 +931,181 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
     private void loadFile(Map<String, Object> obj, OutputStream target) 
             throws NarrativeMethodStoreException {
         try {
-            String hexData = (String)obj.get(FIELD_RF_HEX_DATA);
-            target.write(MongoUtils.hexToBytes(hexData));
+            ObjectId blobId = (ObjectId)obj.get(FIELD_RF_BLOB_ID);
+            if (blobId != null) {
+                GridFSDBFile blob = fileBlobs.findOne(blobId);
+                if (blob == null)
+                    throw new NarrativeMethodStoreException("Content of file with id=" + 
+                            obj.get(FIELD_RF_FILE_ID) + " is not found");
+                blob.writeTo(target);
+            } else {
+                byte[] data = MongoUtils.hexToBytes((String)obj.get(FIELD_RF_HEX_DATA));
+                target.write(data);
+                migrateHexFile(obj, data);
+            }
         } catch (IOException ex) {
             throw new NarrativeMethodStoreException(ex);
         }
     }
     
+    /**
+     * Allocates range of file ids using atomic counter. Counter is started from current time 
+     * in milliseconds so that new ids are greater than ids allocated by older versions 
+     * (which used timestamps).
+     * @return last id of the range
+     */
+    private long nextFileIdNum(long rangeSize) {
+        final DBCollection counters = db.getCollection(TABLE_COUNTERS);
+        while (true) {
+            final DBObject ret = counters.findAndModify(
+                    new BasicDBObject(FIELD_CNT_ID, COUNTER_FILE_ID), null, null, false,
+                    new BasicDBObject("$inc", new BasicDBObject(FIELD_CNT_VALUE, rangeSize)), true, false);
+            if (ret != null)
+                return ((Number)ret.get(FIELD_CNT_VALUE)).longValue();
+            try {
+                counters.insert(new BasicDBObject(FIELD_CNT_ID, COUNTER_FILE_ID)
+                        .append(FIELD_CNT_VALUE, System.currentTimeMillis()));
+            } catch (DuplicateKeyException ex) {
+                // counter was created concurrently
+            }
+        }
+    }
+    
+    private static String getSHA256(FileProvider file) throws NarrativeMethodStoreException {
+        InputStream is = file.openStream();
+        try {
+            return MongoUtils.getSHA256(is);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
+    }
+    
+    /**
+     * Finds stored content with given hash (it's single indexed lookup) or stores file into 
+     * GridFS if there is no such content yet. Reference count of the content is incremented 
+     * in both cases.
+     * @return GridFS id of the content
+     */
+    private ObjectId acquireContent(String sha256, long length, FileProvider file, long refs) 
+            throws NarrativeMethodStoreException {
+        final DBCollection contents = db.getCollection(TABLE_REPO_FILE_CONTENTS);
+        final DBObject found = contents.findAndModify(new BasicDBObject(FIELD_RC_SHA256, sha256),
+                new BasicDBObject(FIELD_RC_BLOB_ID, 1), null, false,
+                new BasicDBObject("$inc", new BasicDBObject(FIELD_RC_REF_COUNT, refs)), true, false);
+        if (found != null)
+            return (ObjectId)found.get(FIELD_RC_BLOB_ID);
+        // content is streamed into GridFS chunks, so there is no limit on file size
+        ObjectId blobId = saveBlob(file.openStream(), file.getName());
+        return insertContent(sha256, length, blobId, refs, file);
+    }
+    
+    /**
+     * Registers content uploaded into GridFS. If the same content was registered 
+     * concurrently then uploaded copy is removed and existing content is referenced.
+     * @return GridFS id of the content
+     */
+    private ObjectId insertContent(String sha256, long length, ObjectId blobId, long refs,
+            FileProvider file) throws NarrativeMethodStoreException {
+        try {
+            db.getCollection(TABLE_REPO_FILE_CONTENTS).insert(
+                    new BasicDBObject(FIELD_RC_SHA256, sha256)
+                    .append(FIELD_RC_BLOB_ID, blobId)
+                    .append(FIELD_RC_LENGTH, length)
+                    .append(FIELD_RC_REF_COUNT, refs));
+            return blobId;
+        } catch (DuplicateKeyException ex) {
+            fileBlobs.remove(blobId);
+            return acquireContent(sha256, length, file, refs);
+        }
+    }
+    
+    private <T> List<T> runInParallel(List<Callable<T>> tasks) 
+            throws NarrativeMethodStoreException {
+        List<T> ret = new ArrayList<T>();
+        try {
+            for (Future<T> future : filePool.invokeAll(tasks))
+                ret.add(future.get());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof NarrativeMethodStoreException)
+                throw (NarrativeMethodStoreException)ex.getCause();
+            throw new NarrativeMethodStoreException(ex.getCause() == null ? ex : ex.getCause());
+        } catch (InterruptedException ex) {
+            throw new NarrativeMethodStoreException(ex);
+        }
+        return ret;
+    }
+    
+    private void releaseContent(String sha256, long refs) {
+        db.getCollection(TABLE_REPO_FILE_CONTENTS).update(new BasicDBObject(FIELD_RC_SHA256, sha256),
+                new BasicDBObject("$inc", new BasicDBObject(FIELD_RC_REF_COUNT, -refs)));
+    }
+    
+    private ObjectId saveBlob(InputStream is, String fileName) {
+        GridFSInputFile blob = fileBlobs.createFile(is, fileName, true);
+        blob.save();
+        return (ObjectId)blob.getId();
+    }
+    
+    /**
+     * Files saved by older versions keep content as hex string in repo_files record. Such 
+     * record is moved to GridFS (or linked to the same content stored before) when it's 
+     * read for the first time. If another reader has already migrated the same record 
+     * then our reference to the content is released.
+     */
+    private void migrateHexFile(Map<String, Object> obj, final byte[] data) {
+        if (isReadOnly)
+            return;
+        Object fileId = obj.get(FIELD_RF_FILE_ID);
+        final String fileName = (String)obj.get(FIELD_RF_FILE_NAME);
+        try {
+            FileProvider fp = new FileProvider() {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(data);
+                }
+                @Override
+                public long length() {
+                    return data.length;
+                }
+                @Override
+                public String getName() {
+                    return fileName;
+                }
+            };
+            String sha256 = getSHA256(fp);
+            ObjectId blobId = acquireContent(sha256, data.length, fp, 1);
+            WriteResult wr = db.getCollection(TABLE_REPO_FILES).update(
+                    new BasicDBObject(FIELD_RF_FILE_ID, fileId)
+                    .append(FIELD_RF_HEX_DATA, new BasicDBObject("$exists", true)),
+                    new BasicDBObject("$set", new BasicDBObject(FIELD_RF_BLOB_ID, blobId)
+                            .append(FIELD_RF_SHA256, sha256))
+                    .append("$unset", new BasicDBObject(FIELD_RF_HEX_DATA, "")));
+            if (wr.getN() == 0)
+                releaseContent(sha256, 1);
+        } catch (Exception ex) {
+            // reading still works for not migrated records, so we'll try next time
+            System.err.println("[" + new Date() + "] NarrativeMethodStore.MongoDynamicRepoDB: " +
+                    "error migrating file with id=" + fileId + " into GridFS: " + 
+                    ex.getMessage());
+        }
+    }
+    
     private class DbFilePointer implements FilePointer {
         private final FileId fileId;
         private final String fileName;
         private final long length;
+        private final Map<String, Object> record;
         
-        private DbFilePointer(FileId fileId, String fileName, long length) {
+        private DbFilePointer(FileId fileId, String fileName, long length,
+                Map<String, Object> record) {
             this.fileId = fileId;
             this.fileName = fileName;
             this.length = length;
+            this.record = record;
         }
         
         @Override
@@ -612,7 +1131,94 @@ public class MongoDynamicRepoDB implements DynamicRepoDB {
         @Override
         public void saveToStream(OutputStream os)
                 throws NarrativeMethodStoreException {
-            loadFile(fileId, os);
+            if (length > SMALL_FILE_MAX_SIZE) {
+                loadContent(os);
+                return;
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream((int)length);
+            loadContent(baos);
+            CachedFile cached = new CachedFile(fileName, baos.toByteArray());
+            smallFiles.put(fileId.getId(), cached);
+            cached.writeTo(os);
+        }
+        
+        private void loadContent(OutputStream os) throws NarrativeMethodStoreException {
+            if (record != null) {
+                loadFile(record, os);
+            } else {
+                loadFile(fileId, os);
+            }
+        }
+    }
+    
+    private static class CachedFile {
+        private final String fileName;
+        private final byte[] data;
+        
+        private CachedFile(String fileName, byte[] data) {
+            this.fileName = fileName;
+            this.data = data;
+        }
+        
+        private void writeTo(OutputStream os) throws NarrativeMethodStoreException {
+            try {
+                os.write(data);
+            } catch (IOException ex) {
+                throw new NarrativeMethodStoreException(ex);
+            }
+        }
+    }
+    
+    private static class CachedFilePointer implements FilePointer {
+        private final FileId fileId;
+        private final CachedFile file;
+        
+        private CachedFilePointer(FileId fileId, CachedFile file) {
+            this.fileId = fileId;
+            this.file = file;
+        }
+        
+        @Override
+        public FileId getFileId() {
+            return fileId;
+        }
+        
+        @Override
+        public File getFile() {
+            return null;
+        }
+        
+        @Override
+        public String getName() {
+            return file.fileName;
+        }
+        
+        @Override
+        public long length() {
+            return file.data.length;
+        }
+        
+        @Override
+        public void saveToStream(OutputStream os)
+                throws NarrativeMethodStoreException {
+            file.writeTo(os);
+        }
+    }
+    
+    private static class RepoInfo {
+        private String state;
+        private Long lastVersion;
+        private Long lastBetaVersion;
+        private Long lastReleaseVersion;
+    }
+    
+    private static class RepoInfoSnapshot {
+        private final Map<String, RepoInfo> repos;
+        private final long loadTime;
+        
+        private RepoInfoSnapshot(Map<String, RepoInfo> repos, long loadTime) {
+            this.repos = repos;
+            this.loadTime = loadTime;
         }
     }
     
@@ -170,16 +170,34 @@ public class MongoUtils {
     }
     
     public static byte[] hexToBytes(String hex) {
-        hex = hex.toLowerCase();
+        if (hex.length() % 2 != 0)
+            throw new IllegalArgumentException("Hex string has odd length: " + hex.length());
         byte[] ret = new byte[hex.length() / 2];
         for (int i = 0; i < ret.length; i++)
-            ret[i] = (byte)Integer.parseInt(hex.substring(i * 2, (i + 1) * 2), 16);
+            ret[i] = (byte)((hexDigit(hex, i * 2) << 4) | hexDigit(hex, i * 2 + 1));
+        return ret;
+    }
+    
+    private static int hexDigit(String hex, int pos) {
+        int ret = Character.digit(hex.charAt(pos), 16);
+        if (ret < 0)
+            throw new IllegalArgumentException("Wrong hex digit [" + hex.charAt(pos) + 
+                    "] at position " + pos);
         return ret;
     }
     
     public static String getMD5(InputStream is) throws NarrativeMethodStoreException {
+        return getDigest(is, "MD5");
+    }
+    
+    public static String getSHA256(InputStream is) throws NarrativeMethodStoreException {
+        return getDigest(is, "SHA-256");
+    }
+    
+    private static String getDigest(InputStream is, String algorithm) 
+            throws NarrativeMethodStoreException {
         try {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
             byte[] buffer = new byte[10000];
             while (true) {
                 int len = is.read(buffer);
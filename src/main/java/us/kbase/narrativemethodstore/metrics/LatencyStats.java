@@ -0,0 +1,99 @@
+package us.kbase.narrativemethodstore.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histogram of one kind of operation. Percentiles are estimated
+ * as upper bounds of histogram buckets.
+ */
+public class LatencyStats {
+    // Upper bounds of histogram buckets in milliseconds, last bucket is unbounded
+    public static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 
+        1000, 2000, 5000, 10000, 30000};
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final AtomicLong maxResponseBytes = new AtomicLong();
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+
+    public void record(long nanos, boolean error) {
+        count.incrementAndGet();
+        if (error)
+            errors.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        updateMax(maxNanos, nanos);
+        long ms = nanos / 1000000;
+        int pos = 0;
+        while (pos < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[pos])
+            pos++;
+        buckets.incrementAndGet(pos);
+    }
+
+    public void recordPayload(long requestSize, long responseSize) {
+        requestBytes.addAndGet(requestSize);
+        responseBytes.addAndGet(responseSize);
+        updateMax(maxResponseBytes, responseSize);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        while (true) {
+            long prev = max.get();
+            if (value <= prev || max.compareAndSet(prev, value))
+                return;
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> ret = new LinkedHashMap<String, Long>();
+        long cnt = count.get();
+        long total = totalNanos.get();
+        ret.put("count", cnt);
+        ret.put("errors", errors.get());
+        ret.put("total_ms", total / 1000000);
+        ret.put("mean_ms", cnt == 0 ? 0 : (total / cnt / 1000000));
+        ret.put("max_ms", maxNanos.get() / 1000000);
+        long[] hist = new long[buckets.length()];
+        for (int i = 0; i < hist.length; i++)
+            hist[i] = buckets.get(i);
+        ret.put("p50_ms", percentile(hist, 0.5));
+        ret.put("p90_ms", percentile(hist, 0.9));
+        ret.put("p99_ms", percentile(hist, 0.99));
+        if (requestBytes.get() > 0 || responseBytes.get() > 0) {
+            ret.put("request_bytes", requestBytes.get());
+            ret.put("response_bytes", responseBytes.get());
+            ret.put("max_response_bytes", maxResponseBytes.get());
+        }
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++)
+            ret.put("lt_" + BUCKET_BOUNDS_MS[i] + "ms", hist[i]);
+        ret.put("ge_" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms", 
+                hist[BUCKET_BOUNDS_MS.length]);
+        return ret;
+    }
+
+    private long percentile(long[] hist, double q) {
+        long cnt = 0;
+        for (long c : hist)
+            cnt += c;
+        if (cnt == 0)
+            return 0;
+        long threshold = (long)Math.ceil(cnt * q);
+        long sum = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            sum += hist[i];
+            if (sum >= threshold)
+                return BUCKET_BOUNDS_MS[i];
+        }
+        return maxNanos.get() / 1000000;
+    }
+}
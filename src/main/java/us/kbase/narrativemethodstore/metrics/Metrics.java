@@ -0,0 +1,54 @@
+package us.kbase.narrativemethodstore.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of latency statistics of the service. Names consist of group and operation
+ * separated by dot: rpc.list_categories, mongo.getRepoDetails, git.fetch, index.methods.
+ */
+public class Metrics {
+    public static final String GROUP_RPC = "rpc";
+    public static final String GROUP_MONGO = "mongo";
+    public static final String GROUP_GIT = "git";
+    public static final String GROUP_INDEX = "index";
+
+    private static final ConcurrentHashMap<String, LatencyStats> stats = 
+            new ConcurrentHashMap<String, LatencyStats>();
+
+    public static LatencyStats get(String group, String operation) {
+        String name = group + "." + operation;
+        LatencyStats ret = stats.get(name);
+        if (ret == null) {
+            ret = new LatencyStats();
+            LatencyStats other = stats.putIfAbsent(name, ret);
+            if (other != null)
+                ret = other;
+        }
+        return ret;
+    }
+
+    /**
+     * Records duration of operation started at startNanos (System.nanoTime()).
+     */
+    public static void record(String group, String operation, long startNanos, boolean error) {
+        get(group, operation).record(System.nanoTime() - startNanos, error);
+    }
+
+    /**
+     * Returns statistics of operations of given group keyed by operation name.
+     */
+    public static Map<String, Map<String, Long>> getGroup(String group) {
+        String prefix = group + ".";
+        Map<String, Map<String, Long>> ret = new TreeMap<String, Map<String, Long>>();
+        for (Map.Entry<String, LatencyStats> entry : stats.entrySet())
+            if (entry.getKey().startsWith(prefix))
+                ret.put(entry.getKey().substring(prefix.length()), entry.getValue().toMap());
+        return ret;
+    }
+
+    public static void reset() {
+        stats.clear();
+    }
+}
@@ -0,0 +1,21 @@
+package us.kbase.narrativemethodstore.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of service metrics (registered as us.kbase.narrativemethodstore:type=Metrics).
+ */
+public interface MetricsMXBean {
+
+    public Map<String, Map<String, Long>> getRpc();
+
+    public Map<String, Map<String, Long>> getMongo();
+
+    public Map<String, Map<String, Long>> getGit();
+
+    public Map<String, Map<String, Long>> getIndex();
+
+    public Map<String, Map<String, Long>> getCaches();
+
+    public void reset();
+}
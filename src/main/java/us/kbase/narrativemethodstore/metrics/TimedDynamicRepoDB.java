@@ -0,0 +1,274 @@
+package us.kbase.narrativemethodstore.metrics;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.FileId;
+import us.kbase.narrativemethodstore.db.FilePointer;
+import us.kbase.narrativemethodstore.db.RepoProvider;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+/**
+ * Records number, errors and latency of calls of wrapped dynamic repo storage 
+ * (group {@link Metrics#GROUP_MONGO}).
+ */
+public class TimedDynamicRepoDB implements DynamicRepoDB {
+    private final DynamicRepoDB db;
+
+    public TimedDynamicRepoDB(DynamicRepoDB db) {
+        this.db = db;
+    }
+
+    @Override
+    public boolean isRepoRegistered(String repoModuleName, boolean withDisabled)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            boolean ret = db.isRepoRegistered(repoModuleName, withDisabled);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "isRepoRegistered", start, !ok);
+        }
+    }
+
+    @Override
+    public void registerRepo(String userId, RepoProvider repoDetails)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            db.registerRepo(userId, repoDetails);
+            ok = true;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "registerRepo", start, !ok);
+        }
+    }
+
+    @Override
+    public Long getRepoLastVersion(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Long ret = db.getRepoLastVersion(repoModuleName, tag);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "getRepoLastVersion", start, !ok);
+        }
+    }
+
+    @Override
+    public List<String> listRepoModuleNames()
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<String> ret = db.listRepoModuleNames();
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "listRepoModuleNames", start, !ok);
+        }
+    }
+
+    @Override
+    public RepoProvider getRepoDetails(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            RepoProvider ret = db.getRepoDetails(repoModuleName, tag);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "getRepoDetails", start, !ok);
+        }
+    }
+
+    @Override
+    public List<Long> listRepoVersions(String repoModuleName, RepoTag tag)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<Long> ret = db.listRepoVersions(repoModuleName, tag);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "listRepoVersions", start, !ok);
+        }
+    }
+
+    @Override
+    public RepoProvider getRepoDetailsHistory(String repoModuleName, long version)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            RepoProvider ret = db.getRepoDetailsHistory(repoModuleName, version);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "getRepoDetailsHistory", start, !ok);
+        }
+    }
+
+    @Override
+    public Map<String, Map<RepoTag, Long>> listRepoTagVersions()
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Map<String, Map<RepoTag, Long>> ret = db.listRepoTagVersions();
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "listRepoTagVersions", start, !ok);
+        }
+    }
+
+    @Override
+    public Map<String, Map<Long, RepoProvider>> getRepoDetailsHistory(
+            Map<String, Set<Long>> moduleToVersions) throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Map<String, Map<Long, RepoProvider>> ret = db.getRepoDetailsHistory(moduleToVersions);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "getRepoDetailsHistoryBulk", start, !ok);
+        }
+    }
+
+    @Override
+    public void pushRepoToTag(String repoModuleName, RepoTag tag, String userId)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            db.pushRepoToTag(repoModuleName, tag, userId);
+            ok = true;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "pushRepoToTag", start, !ok);
+        }
+    }
+
+    @Override
+    public Set<String> listRepoOwners(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Set<String> ret = db.listRepoOwners(repoModuleName);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "listRepoOwners", start, !ok);
+        }
+    }
+
+    @Override
+    public boolean isRepoOwner(String repoModuleName, String userId)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            boolean ret = db.isRepoOwner(repoModuleName, userId);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "isRepoOwner", start, !ok);
+        }
+    }
+
+    @Override
+    public RepoState getRepoState(String repoModuleName)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            RepoState ret = db.getRepoState(repoModuleName);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "getRepoState", start, !ok);
+        }
+    }
+
+    @Override
+    public void setRepoState(String userId, String repoModuleName, RepoState state)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            db.setRepoState(userId, repoModuleName, state);
+            ok = true;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "setRepoState", start, !ok);
+        }
+    }
+
+    @Override
+    public FileId saveFile(String moduleName, File file)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            FileId ret = db.saveFile(moduleName, file);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "saveFile", start, !ok);
+        }
+    }
+
+    @Override
+    public FileId saveFile(String moduleName, FileProvider file)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            FileId ret = db.saveFile(moduleName, file);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "saveFile", start, !ok);
+        }
+    }
+
+    @Override
+    public List<FileId> saveFiles(String moduleName, List<FileProvider> files)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<FileId> ret = db.saveFiles(moduleName, files);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "saveFiles", start, !ok);
+        }
+    }
+
+    @Override
+    public FilePointer loadFile(FileId fileId)
+            throws NarrativeMethodStoreException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            FilePointer ret = db.loadFile(fileId);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_MONGO, "loadFile", start, !ok);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package us.kbase.narrativemethodstore.metrics;
+
+import java.io.File;
+import java.net.URL;
+
+import us.kbase.narrativemethodstore.db.github.GitBackend;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+/**
+ * Records number, errors and latency of git operations of wrapped backend 
+ * (group {@link Metrics#GROUP_GIT}).
+ */
+public class TimedGitBackend implements GitBackend {
+    private final GitBackend git;
+
+    public TimedGitBackend(GitBackend git) {
+        this.git = git;
+    }
+
+    @Override
+    public String cloneBranch(URL gitRepoUrl, String gitBranch, File gitLocalPath)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.cloneBranch(gitRepoUrl, gitBranch, gitLocalPath);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "cloneBranch", start, !ok);
+        }
+    }
+
+    @Override
+    public String pull(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.pull(gitLocalPath, gitRepoUrl);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "pull", start, !ok);
+        }
+    }
+
+    @Override
+    public String fetch(File gitLocalPath, URL gitRepoUrl, String gitBranch)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.fetch(gitLocalPath, gitRepoUrl, gitBranch);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "fetch", start, !ok);
+        }
+    }
+
+    @Override
+    public String mergeFetchHead(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.mergeFetchHead(gitLocalPath, gitRepoUrl);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "mergeFetchHead", start, !ok);
+        }
+    }
+
+    @Override
+    public String getHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.getHeadCommitHash(gitLocalPath, gitRepoUrl);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "getHeadCommitHash", start, !ok);
+        }
+    }
+
+    @Override
+    public String getFetchHeadCommitHash(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.getFetchHeadCommitHash(gitLocalPath, gitRepoUrl);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "getFetchHeadCommitHash", start, !ok);
+        }
+    }
+
+    @Override
+    public String getCommitInfo(File gitLocalPath, URL gitRepoUrl)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.getCommitInfo(gitLocalPath, gitRepoUrl);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "getCommitInfo", start, !ok);
+        }
+    }
+
+    @Override
+    public String listTree(File gitLocalPath, URL gitRepoUrl, String dirName)
+            throws NarrativeMethodStoreInitializationException {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            String ret = git.listTree(gitLocalPath, gitRepoUrl, dirName);
+            ok = true;
+            return ret;
+        } finally {
+            Metrics.record(Metrics.GROUP_GIT, "listTree", start, !ok);
+        }
+    }
+}
@@ -9,7 +9,13 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -18,13 +24,20 @@ import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import junit.framework.Assert;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.ini4j.Ini;
@@ -32,6 +45,10 @@ import org.ini4j.Profile.Section;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.kbase.common.service.JsonServerSyslog;
 import us.kbase.common.service.ServerException;
@@ -126,6 +143,77 @@ public class FullServerTest {
 				status.getUpdateInterval().length()>0);
 	}
 
+	@Test
+	public void testCatalogVersion() throws Exception {
+		String ver = CLIENT.getCatalogVersion();
+		assertTrue("Testing that get_catalog_version() returns a hex string",
+				ver.matches("^[0-9a-f]+$"));
+		assertEquals("Testing that catalog version is stable while catalog is not changed",
+				ver, CLIENT.getCatalogVersion());
+	}
+
+
+	private static byte[] getCatalog(String acceptEncoding, String ifNoneMatch,
+			Map<String, String> headers, int[] status) throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getParameter("call")).thenReturn("list_categories");
+		when(request.getParameter("load_methods")).thenReturn("1");
+		when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				body.write(b);
+			}
+		});
+		new CatalogServlet().doGet(request, response);
+		ArgumentCaptor<String> names = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<String> values = ArgumentCaptor.forClass(String.class);
+		verify(response, atLeast(0)).setHeader(names.capture(), values.capture());
+		for (int i = 0; i < names.getAllValues().size(); i++)
+			headers.put(names.getAllValues().get(i), values.getAllValues().get(i));
+		ArgumentCaptor<Integer> sc = ArgumentCaptor.forClass(Integer.class);
+		verify(response, atLeast(0)).setStatus(sc.capture());
+		status[0] = sc.getAllValues().isEmpty() ? 200 : sc.getValue();
+		return body.toByteArray();
+	}
+
+	@Test
+	public void testCatalogEndpoint() throws Exception {
+		String ver = CLIENT.getCatalogVersion();
+		Map<String, String> headers = new HashMap<String, String>();
+		int[] status = new int[1];
+		byte[] json = getCatalog(null, null, headers, status);
+		assertEquals(200, status[0]);
+		String etag = headers.get("ETag");
+		assertEquals("\"" + ver + "\"", etag);
+		assertEquals("no-cache", headers.get("Cache-Control"));
+		assertNull(headers.get("Content-Encoding"));
+		List<Map<String, Object>> listing = new ObjectMapper().readValue(json,
+				new TypeReference<List<Map<String, Object>>>() {});
+		assertEquals(4, listing.size());
+		Tuple4<Map<String, Category>, Map<String, MethodBriefInfo>, Map<String, AppBriefInfo>,
+				Map<String, TypeInfo>> rpc = CLIENT.listCategories(
+						new ListCategoriesParams().withLoadMethods(1L));
+		assertEquals(rpc.getE2().keySet(), listing.get(1).keySet());
+		// polling client with the same tag gets no body
+		headers.clear();
+		byte[] notModified = getCatalog(null, etag, headers, status);
+		assertEquals(304, status[0]);
+		assertEquals(0, notModified.length);
+		// gzipped content is tagged separately and holds the same JSON
+		headers.clear();
+		byte[] gzipped = getCatalog("gzip, deflate", etag, headers, status);
+		assertEquals(200, status[0]);
+		assertEquals("gzip", headers.get("Content-Encoding"));
+		assertEquals("\"" + ver + "-gzip\"", headers.get("ETag"));
+		assertTrue(Arrays.equals(json, IOUtils.toByteArray(new GZIPInputStream(
+				new ByteArrayInputStream(gzipped)))));
+		getCatalog("gzip", "\"" + ver + "-gzip\"", headers, status);
+		assertEquals(304, status[0]);
+	}
 
 	@Test
 	public void testListMethodIds() throws Exception {
@@ -915,6 +1003,25 @@ public class FullServerTest {
 				m.getWidgets().getOutput().equals("KBaseDefaultViewer"));
 	}
 
+	@Test
+	public void testGetMethodSpecBatch() throws Exception {
+		List<String> ids = Arrays.asList("test_method_4", "test_method_1", "test_method_4");
+		List<MethodSpec> specs = CLIENT.getMethodSpec(new GetMethodParams().withIds(ids));
+		assertEquals(3, specs.size());
+		for (int i = 0; i < ids.size(); i++)
+			assertEquals(ids.get(i), specs.get(i).getInfo().getId());
+		List<MethodFullInfo> infos = CLIENT.getMethodFullInfo(new GetMethodParams().withIds(ids));
+		for (int i = 0; i < ids.size(); i++)
+			assertEquals(ids.get(i), infos.get(i).getId());
+		try {
+			CLIENT.getMethodSpec(new GetMethodParams().withIds(Arrays.asList("test_method_1",
+					"test_method_unknown")));
+			fail("Unknown method id shouldn't be accepted");
+		} catch (ServerException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testErrors() throws Exception {
 		Tuple4<Map<String,Category>, Map<String,MethodBriefInfo>, Map<String,AppBriefInfo>, Map<String,TypeInfo>> ret =
@@ -0,0 +1,79 @@
+package us.kbase.test.narrativemethodstore.db;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.db.CategoriesListing;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.PrerenderedJson;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+
+public class CategoriesListingTest {
+
+    @Test
+    public void listingJson() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        index.addOrUpdateMethod(new MethodId("method1"), new MethodBriefInfo().withId("method1"));
+        index.addOrUpdateMethod(new MethodId("Module1", "method2", RepoTag.dev),
+                new MethodBriefInfo().withId("Module1/method2"));
+        index.addOrUpdateApp("app1", new AppBriefInfo().withId("app1"));
+        CategoriesListing listing = new CategoriesListing(index, "dev", true, false, true);
+        Assert.assertEquals(2, listing.getMethods().size());
+        Assert.assertEquals(0, listing.getApps().size());
+        Assert.assertEquals(1, new CategoriesListing(index, null, true, true, false)
+                .getMethods().size());
+        PrerenderedJson<CategoriesListing> json = new PrerenderedJson<CategoriesListing>(listing,
+                "v1");
+        List<Map<String, Object>> parsed = new ObjectMapper().readValue(json.getJson(),
+                new TypeReference<List<Map<String, Object>>>() {});
+        Assert.assertEquals(4, parsed.size());
+        Assert.assertTrue(parsed.get(1).containsKey("Module1/method2"));
+        Assert.assertTrue(parsed.get(2).isEmpty());
+        // the same bytes are returned every time
+        Assert.assertSame(json.getJson(), json.getJson());
+        byte[] unzipped = IOUtils.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(json.getGzippedJson())));
+        Assert.assertArrayEquals(json.getJson(), unzipped);
+    }
+
+    @Test
+    public void gzippedJsonInEnvelope() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        // large enough for several deflate buffers
+        for (int i = 0; i < 5000; i++)
+            index.addOrUpdateMethod(new MethodId("method" + i), new MethodBriefInfo()
+                    .withId("method" + i).withName("Method " + i).withTooltip("Tooltip " + i));
+        PrerenderedJson<CategoriesListing> json = new PrerenderedJson<CategoriesListing>(
+                new CategoriesListing(index, null, true, true, true), "v1");
+        byte[] prefix = "{\"version\":\"1.1\",\"result\":".getBytes("utf-8");
+        byte[] suffix = ",\"id\":\"12345\"}".getBytes("utf-8");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        json.writeGzippedJson(prefix, suffix, baos);
+        byte[] unzipped = IOUtils.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(baos.toByteArray())));
+        Map<String, Object> parsed = new ObjectMapper().readValue(unzipped,
+                new TypeReference<Map<String, Object>>() {});
+        Assert.assertEquals("12345", parsed.get("id"));
+        Assert.assertEquals(4, ((List<?>)parsed.get("result")).size());
+        Assert.assertEquals(5000, ((Map<?, ?>)((List<?>)parsed.get("result")).get(1)).size());
+        // prerendered blocks are reused by other envelopes
+        Assert.assertSame(json.getDeflatedJson(), json.getDeflatedJson());
+        baos = new ByteArrayOutputStream();
+        json.writeGzippedJson(new byte[0], new byte[0], baos);
+        Assert.assertArrayEquals(json.getJson(), IOUtils.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(baos.toByteArray()))));
+    }
+}
@@ -0,0 +1,49 @@
+package us.kbase.test.narrativemethodstore.db;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.MethodParameter;
+import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.db.CompactMethodData;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+
+public class CompactMethodDataTest {
+
+    @Test
+    public void packAndUnpack() throws Exception {
+        MethodBriefInfo brief = new MethodBriefInfo().withId("m1").withName("Method 1");
+        MethodFullInfo full = new MethodFullInfo().withId("m1").withDescription("Descr 1")
+                .withAuthors(Arrays.asList("user1", "user2"));
+        MethodSpec spec = new MethodSpec().withInfo(brief).withParameters(Arrays.asList(
+                new MethodParameter().withId("p1").withUiName("Param 1")));
+        CompactMethodData data = new CompactMethodData(new NarrativeMethodData("m1", brief,
+                full, spec));
+        Assert.assertSame(brief, data.getMethodBriefInfo());
+        Assert.assertEquals("Descr 1", data.getMethodFullInfo().getDescription());
+        Assert.assertEquals(Arrays.asList("user1", "user2"), data.getMethodFullInfo().getAuthors());
+        Assert.assertEquals("Param 1", data.getMethodSpec().getParameters().get(0).getUiName());
+        // every call gives new copy, cached data can't be changed by caller
+        data.getMethodFullInfo().setDescription("Changed");
+        Assert.assertEquals("Descr 1", data.getMethodFullInfo().getDescription());
+        Assert.assertTrue(data.getCompactSize() > 0);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        data.writeMethodSpecJson(os);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new NarrativeMethodData("m1", brief, full, spec).writeMethodSpecJson(expected);
+        ObjectMapper mapper = new ObjectMapper();
+        Assert.assertEquals(mapper.readTree(expected.toByteArray()),
+                mapper.readTree(os.toByteArray()));
+        CompactMethodData empty = new CompactMethodData(new NarrativeMethodData("m2", brief,
+                null, null));
+        Assert.assertNull(empty.getMethodSpec());
+        Assert.assertEquals(0, empty.getCompactSize());
+    }
+}
@@ -0,0 +1,71 @@
+package us.kbase.test.narrativemethodstore.db;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+
+public class NarrativeCategoriesIndexTest {
+
+    @Test
+    public void tagViews() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        index.addOrUpdateMethod(new MethodId("method1"), new MethodBriefInfo().withId("method1")
+                .withName("Method 1"));
+        index.addOrUpdateMethod(new MethodId("Module1", "method2", RepoTag.dev),
+                new MethodBriefInfo().withId("Module1/method2").withName("Method 2")
+                .withLoadingError("error"));
+        Assert.assertEquals(Arrays.asList("method1"), index.getMethodIds(null, true));
+        Assert.assertEquals(Arrays.asList("method1", "Module1/method2"),
+                index.getMethodIds("dev", true));
+        Assert.assertEquals(Arrays.asList("method1"), index.getMethodIds("dev", false));
+        Assert.assertEquals("Method 2", index.getMethodIdsToNames("dev").get("Module1/method2"));
+        // views are shared until methods are changed
+        Assert.assertSame(index.getMethods("dev"), index.getMethods("dev"));
+        index.addOrUpdateMethod(new MethodId("Module1", "method3", RepoTag.beta),
+                new MethodBriefInfo().withId("Module1/method3"));
+        Assert.assertEquals(2, index.getMethods("beta").size());
+        Assert.assertEquals(1, index.getMethods("0123456789abcdef0123456789abcdef01234567").size());
+        // views prepared before publishing are returned by getters as is
+        index.prepareTagViews();
+        Assert.assertSame(index.getMethods("beta"), index.getMethods("beta"));
+        Assert.assertEquals(2, index.getMethods("beta").size());
+        try {
+            index.getMethods("unknown");
+            Assert.fail("Unknown tag shouldn't be accepted");
+        } catch (IllegalArgumentException ex) {
+            Assert.assertTrue(ex.getMessage().contains("unknown"));
+        }
+    }
+
+    @Test
+    public void dynamicRepoMethodsByTag() throws Exception {
+        NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.release);
+        MethodId m1dev = new MethodId("Module1", "method1", RepoTag.dev);
+        MethodId m2dev = new MethodId("Module1", "method2", RepoTag.dev);
+        MethodId m1beta = new MethodId("Module1", "method1", RepoTag.beta);
+        MethodId m3dev = new MethodId("Module10", "method3", RepoTag.dev);
+        index.updateAllDynamicRepoMethods(new TreeSet<MethodId>(Arrays.asList(
+                m1dev, m2dev, m1beta, m3dev)), new TreeMap<String, Exception>());
+        Assert.assertEquals(Arrays.asList(m1dev, m2dev),
+                index.getDynamicRepoMethods("Module1", RepoTag.dev));
+        Assert.assertEquals(Arrays.asList(m1beta),
+                index.getDynamicRepoMethods("Module1", RepoTag.beta));
+        Assert.assertEquals(Arrays.asList(m3dev),
+                index.getDynamicRepoMethods("Module10", RepoTag.dev));
+        Assert.assertTrue(index.getDynamicRepoMethods("Module1", RepoTag.release).isEmpty());
+        // grouping is rebuilt after methods are replaced
+        index.updateAllDynamicRepoMethods(new TreeSet<MethodId>(Arrays.asList(m2dev)),
+                new TreeMap<String, Exception>());
+        Assert.assertEquals(Arrays.asList(m2dev),
+                index.getDynamicRepoMethods("Module1", RepoTag.dev));
+        Assert.assertTrue(index.getDynamicRepoMethods("Module10", RepoTag.dev).isEmpty());
+    }
+}
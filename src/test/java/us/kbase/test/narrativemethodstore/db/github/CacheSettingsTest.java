@@ -0,0 +1,54 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+
+import us.kbase.narrativemethodstore.db.github.CacheSettings;
+
+public class CacheSettingsTest {
+
+    @Test
+    public void estimateSize() throws Exception {
+        Assert.assertEquals(1000 * CacheSettings.HEAP_TO_SOURCE_RATIO,
+                CacheSettings.estimateSize(1000));
+        // unknown size of source files
+        Assert.assertEquals(CacheSettings.DEFAULT_WEIGHT, CacheSettings.estimateSize(0));
+        Assert.assertTrue(CacheSettings.estimateSize(Long.MAX_VALUE / 2) > Integer.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void weightedCache() throws Exception {
+        Weigher<String, String> weigher = new Weigher<String, String>() {
+            @Override
+            public int weigh(String key, String value) {
+                return value.length();
+            }
+        };
+        CacheLoader<String, String> loader = new CacheLoader<String, String>() {
+            @Override
+            public String load(String key) {
+                return Strings.repeat("x", Integer.parseInt(key));
+            }
+        };
+        LoadingCache<String, String> cache = new CacheSettings(1000, 10000, false, false).build(
+                0.5, weigher, loader);
+        cache.get("10");
+        cache.get("10");
+        Assert.assertEquals(1, cache.stats().hitCount());
+        Assert.assertEquals(1, cache.stats().missCount());
+        for (int i = 1; i <= 20; i++)
+            cache.get("" + (1000 + i));
+        Assert.assertTrue(cache.size() <= 5);
+        Assert.assertTrue(cache.stats().evictionCount() >= 15);
+        // without memory budget cache is limited by number of entries
+        cache = new CacheSettings(2).build(1.0, weigher, loader);
+        for (int i = 1; i <= 5; i++)
+            cache.get("" + (i * 1000));
+        Assert.assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,88 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.AppBriefInfo;
+import us.kbase.narrativemethodstore.AppFullInfo;
+import us.kbase.narrativemethodstore.AppSpec;
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.MethodFullInfo;
+import us.kbase.narrativemethodstore.MethodSpec;
+import us.kbase.narrativemethodstore.TypeInfo;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.db.github.CatalogSnapshot;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+
+public class CatalogSnapshotTest {
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        File dir = Files.createTempDirectory("catalog_snapshot_test").toFile();
+        try {
+            String commit1 = "0123456789abcdef0123456789abcdef01234567";
+            String commit2 = "1123456789abcdef0123456789abcdef01234567";
+            NarrativeCategoriesIndex index = new NarrativeCategoriesIndex(RepoTag.dev);
+            MethodId staticId = new MethodId("method1");
+            MethodId dynamicId = new MethodId("Module1", "method2", RepoTag.beta);
+            index.addOrUpdateMethod(staticId, new MethodBriefInfo().withId("method1")
+                    .withName("Method 1").withCategories(Arrays.asList("active")));
+            index.addOrUpdateMethod(dynamicId, new MethodBriefInfo().withId("Module1/method2")
+                    .withName("Method 2"));
+            index.addOrUpdateApp("app1", new AppBriefInfo().withId("app1").withName("App 1"));
+            index.addOrUpdateType("Mod.Type1", new TypeInfo().withTypeName("Mod.Type1"));
+            index.updateAllDynamicRepoMethods(new TreeSet<MethodId>(Arrays.asList(dynamicId)),
+                    new TreeMap<String, Exception>());
+            Map<String, String> fingerprints = new HashMap<String, String>();
+            fingerprints.put("methods/method1", "tree:abc");
+            index.updateAllSources(fingerprints, Collections.singletonMap(
+                    NarrativeCategoriesIndex.getRepoVersionKey("Module1", RepoTag.beta), 5L));
+            Map<MethodId, NarrativeMethodData> methodData =
+                    new TreeMap<MethodId, NarrativeMethodData>();
+            methodData.put(staticId, new NarrativeMethodData("method1",
+                    index.getAllMethods().get(staticId),
+                    new MethodFullInfo().withId("method1").withDescription("Descr 1"),
+                    new MethodSpec()));
+            new CatalogSnapshot(commit1, index, methodData,
+                    Collections.singletonMap("app1", new AppFullInfo().withId("app1")),
+                    Collections.singletonMap("app1", new AppSpec())).save(dir);
+            Assert.assertNull(CatalogSnapshot.load(dir, commit2, RepoTag.dev));
+            CatalogSnapshot loaded = CatalogSnapshot.load(dir, commit1, RepoTag.dev);
+            NarrativeCategoriesIndex index2 = loaded.getIndex();
+            Assert.assertEquals(2, index2.getAllMethods().size());
+            Assert.assertEquals("Method 2", index2.getAllMethods().get(dynamicId).getName());
+            Assert.assertEquals(Arrays.asList("active"),
+                    index2.getMethods("dev").get("method1").getCategories());
+            Assert.assertEquals(1, index2.getMethods("dev").size());
+            Assert.assertEquals(2, index2.getMethods("beta").size());
+            Assert.assertTrue(index2.getDynamicRepoMethods().contains(dynamicId));
+            Assert.assertEquals("App 1", index2.getApps().get("app1").getName());
+            Assert.assertNotNull(index2.getTypes().get("Mod.Type1"));
+            Assert.assertEquals("tree:abc", index2.getFileFingerprints().get("methods/method1"));
+            Assert.assertEquals(5L, (long)index2.getDynamicRepoVersions().get("Module1/beta"));
+            Assert.assertEquals("Descr 1", loaded.getMethodData().get(staticId)
+                    .getMethodFullInfo().getDescription());
+            Assert.assertEquals("app1", loaded.getAppFullInfos().get("app1").getId());
+            // snapshot of another commit replaces previous one
+            new CatalogSnapshot(commit2, index2, loaded.getMethodData(),
+                    loaded.getAppFullInfos(), loaded.getAppSpecs()).save(dir);
+            Assert.assertNull(CatalogSnapshot.load(dir, commit1, RepoTag.dev));
+            Assert.assertNotNull(CatalogSnapshot.load(dir, commit2, RepoTag.dev));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.GitHubRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+
+public class GitHubRepoProviderTest {
+
+    @Test
+    public void cachedSparseCheckout() throws Exception {
+        File dir = Files.createTempDirectory("github_repo_provider_test").toFile();
+        try {
+            File repo = new File(dir, "repo");
+            File tempDir = new File(dir, "temp");
+            tempDir.mkdirs();
+            GitUtils.gitCommand("git init --quiet " + repo.getAbsolutePath(), "init", dir, null);
+            FileUtils.writeStringToFile(new File(repo, "kbase.yml"),
+                    "module-name: Module1\nowners: [user1]\n");
+            FileUtils.writeStringToFile(new File(repo, "README.md"), "Module 1");
+            FileUtils.writeStringToFile(new File(repo, "ui/narrative/methods/m1/spec.json"), "{}");
+            FileUtils.writeStringToFile(new File(repo, "ui/narrative/methods/m1/img/s1.png"), "png");
+            FileUtils.writeStringToFile(new File(repo, "data/large.bin"), "data");
+            String commit1 = commit(repo, "commit1");
+            URL url = new URL("file://" + repo.getAbsolutePath());
+            GitHubRepoProvider pvd = new GitHubRepoProvider(url, null, tempDir);
+            try {
+                Assert.assertEquals(commit1, pvd.getGitCommitHash());
+                Assert.assertEquals("Module1", pvd.getModuleName());
+                Assert.assertEquals(Arrays.asList("m1"), pvd.listUINarrativeMethodIDs());
+                Assert.assertEquals(Arrays.asList("s1.png"), pvd.listScreenshotIDs("m1"));
+                File rootDir = pvd.getReadmeFile().getFile().getParentFile();
+                // only files used by catalog are checked out
+                Assert.assertFalse(new File(rootDir, "data").exists());
+            } finally {
+                pvd.dispose();
+            }
+            File mirrorDir = GitHubRepoProvider.getMirrorDir(url, tempDir);
+            Assert.assertTrue(mirrorDir.exists());
+            FileUtils.writeStringToFile(new File(repo, "ui/narrative/methods/m2/spec.json"), "{}");
+            String commit2 = commit(repo, "commit2");
+            // new commit is fetched into cached copy
+            pvd = new GitHubRepoProvider(url, commit2, tempDir);
+            try {
+                Assert.assertEquals(commit2, pvd.getGitCommitHash());
+                Assert.assertEquals(2, pvd.listUINarrativeMethodIDs().size());
+            } finally {
+                pvd.dispose();
+            }
+            // older commit is checked out from cached copy
+            pvd = new GitHubRepoProvider(url, commit1, tempDir);
+            try {
+                Assert.assertEquals(commit1, pvd.getGitCommitHash());
+                Assert.assertEquals(Arrays.asList("m1"), pvd.listUINarrativeMethodIDs());
+            } finally {
+                pvd.dispose();
+            }
+            try {
+                new GitHubRepoProvider(url, "0123456789abcdef0123456789abcdef01234567", tempDir);
+                Assert.fail("Unknown commit shouldn't be checked out");
+            } catch (Exception ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("Cannot checkout"));
+            }
+            // temporary working copies are removed, cached copies are kept
+            Assert.assertEquals(Collections.singletonList(GitHubRepoProvider.MIRRORS_DIR),
+                    Arrays.asList(tempDir.list()));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void evictUnusedMirrors() throws Exception {
+        File dir = Files.createTempDirectory("github_repo_provider_test").toFile();
+        try {
+            File tempDir = new File(dir, "temp");
+            tempDir.mkdirs();
+            URL url1 = createModuleRepo(dir, "Module1");
+            URL url2 = createModuleRepo(dir, "Module2");
+            new GitHubRepoProvider(url1, null, tempDir).dispose();
+            File mirrorDir1 = GitHubRepoProvider.getMirrorDir(url1, tempDir);
+            Assert.assertTrue(mirrorDir1.exists());
+            new GitHubRepoProvider(url2, null, tempDir).dispose();
+            // recently used copy is kept
+            Assert.assertTrue(mirrorDir1.exists());
+            mirrorDir1.setLastModified(System.currentTimeMillis() -
+                    GitHubRepoProvider.MAX_MIRROR_AGE_MS - 60000);
+            new GitHubRepoProvider(url2, null, tempDir).dispose();
+            Assert.assertFalse(mirrorDir1.exists());
+            Assert.assertTrue(GitHubRepoProvider.getMirrorDir(url2, tempDir).exists());
+            // evicted copy is cloned again when needed
+            GitHubRepoProvider pvd = new GitHubRepoProvider(url1, null, tempDir);
+            try {
+                Assert.assertEquals("Module1", pvd.getModuleName());
+            } finally {
+                pvd.dispose();
+            }
+            Assert.assertTrue(mirrorDir1.exists());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static URL createModuleRepo(File dir, String moduleName) throws Exception {
+        File repo = new File(dir, moduleName);
+        GitUtils.gitCommand("git init --quiet " + repo.getAbsolutePath(), "init", dir, null);
+        FileUtils.writeStringToFile(new File(repo, "kbase.yml"),
+                "module-name: " + moduleName + "\nowners: [user1]\n");
+        commit(repo, "commit1");
+        return new URL("file://" + repo.getAbsolutePath());
+    }
+
+    private static String commit(File repo, String message) throws Exception {
+        GitUtils.gitCommand("git add -A", "add", repo, null);
+        GitUtils.gitCommand("git -c user.name=test -c user.email=test@test commit --quiet -m " +
+                message, "commit", repo, null);
+        return GitUtils.getCommitHash(repo, null);
+    }
+}
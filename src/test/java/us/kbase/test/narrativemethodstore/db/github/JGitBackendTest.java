@@ -0,0 +1,76 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.CommandLineGitBackend;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.JGitBackend;
+
+public class JGitBackendTest {
+
+    @Test
+    public void sameAsCommandLine() throws Exception {
+        File dir = Files.createTempDirectory("jgit_backend_test").toFile();
+        try {
+            File repo = new File(dir, "repo");
+            GitUtils.gitCommand("git init --quiet " + repo.getAbsolutePath(), "init", dir, null);
+            FileUtils.writeStringToFile(new File(repo, "methods/m1/spec.json"), "1");
+            FileUtils.writeStringToFile(new File(repo, "methods/m1/display.yaml"), "1");
+            FileUtils.writeStringToFile(new File(repo, "methods/m2/spec.json"), "2");
+            FileUtils.writeStringToFile(new File(repo, "methods/run.sh"), "#!/bin/sh");
+            new File(repo, "methods/run.sh").setExecutable(true);
+            String commit1 = commit(repo, "commit1");
+            String branch = GitUtils.gitCommand("git rev-parse --abbrev-ref HEAD", "rev-parse",
+                    repo, null).trim();
+            URL url = new URL("file://" + repo.getAbsolutePath());
+            CommandLineGitBackend cmd = new CommandLineGitBackend();
+            JGitBackend jgit = new JGitBackend();
+            File cmdClone = new File(dir, "cmd_clone");
+            cmd.cloneBranch(url, branch, cmdClone);
+            File jgitClone = new File(dir, "jgit_clone");
+            jgit.cloneBranch(url, branch, jgitClone);
+            Assert.assertEquals(commit1, jgit.getHeadCommitHash(jgitClone, url));
+            Assert.assertEquals(cmd.listTree(cmdClone, url, "methods"),
+                    jgit.listTree(jgitClone, url, "methods"));
+            Assert.assertEquals("", jgit.listTree(jgitClone, url, "apps"));
+            Assert.assertEquals(cmd.getCommitInfo(cmdClone, url),
+                    jgit.getCommitInfo(jgitClone, url));
+            // nothing new
+            jgit.fetch(jgitClone, url, branch);
+            Assert.assertEquals(commit1, jgit.getFetchHeadCommitHash(jgitClone, url));
+            Assert.assertTrue(jgit.mergeFetchHead(jgitClone, url).startsWith(
+                    "Already up-to-date."));
+            FileUtils.writeStringToFile(new File(repo, "methods/m2/spec.json"), "3");
+            FileUtils.deleteDirectory(new File(repo, "methods/m1"));
+            String commit2 = commit(repo, "commit2");
+            jgit.fetch(jgitClone, url, branch);
+            Assert.assertEquals(commit2, jgit.getFetchHeadCommitHash(jgitClone, url));
+            Assert.assertEquals(commit1, jgit.getHeadCommitHash(jgitClone, url));
+            jgit.mergeFetchHead(jgitClone, url);
+            Assert.assertEquals(commit2, jgit.getHeadCommitHash(jgitClone, url));
+            Assert.assertFalse(new File(jgitClone, "methods/m1").exists());
+            Assert.assertEquals("3", FileUtils.readFileToString(
+                    new File(jgitClone, "methods/m2/spec.json")));
+            cmd.pull(cmdClone, url);
+            Assert.assertEquals(cmd.listTree(cmdClone, url, "methods"),
+                    jgit.listTree(jgitClone, url, "methods"));
+            Assert.assertTrue(jgit.pull(jgitClone, url).startsWith("Already up-to-date."));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static String commit(File repo, String message) throws Exception {
+        GitUtils.gitCommand("git add -A", "add", repo, null);
+        GitUtils.gitCommand("git -c user.name=test -c user.email=test@test commit --quiet -m " +
+                message, "commit", repo, null);
+        return GitUtils.getCommitHash(repo, null);
+    }
+}
@@ -0,0 +1,473 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.MethodBriefInfo;
+import us.kbase.narrativemethodstore.db.DynamicRepoDB;
+import us.kbase.narrativemethodstore.db.FileId;
+import us.kbase.narrativemethodstore.db.FilePointer;
+import us.kbase.narrativemethodstore.db.NarrativeAppData;
+import us.kbase.narrativemethodstore.db.NarrativeCategoriesIndex;
+import us.kbase.narrativemethodstore.db.NarrativeMethodData;
+import us.kbase.narrativemethodstore.db.RepoProvider;
+import us.kbase.narrativemethodstore.db.github.CacheSettings;
+import us.kbase.narrativemethodstore.db.github.FileRepoProvider;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.JGitBackend;
+import us.kbase.narrativemethodstore.db.github.LocalGitDB;
+import us.kbase.narrativemethodstore.db.github.MethodId;
+import us.kbase.narrativemethodstore.db.github.RepoTag;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreInitializationException;
+
+public class LocalGitDBTest {
+    private static final File TEST_METHOD_DIR =
+            new File("test/data/validation/methods/generate_heatmaps");
+
+    @Test
+    public void incrementalRefresh() throws Exception {
+        File dir = Files.createTempDirectory("local_git_db_test").toFile();
+        CountingLocalGitDB db = null;
+        try {
+            File repo = createSpecRepo(dir, Arrays.asList("method_a", "method_b", "method_c"),
+                    Arrays.asList("app_a", "app_b"));
+            URL url = new URL("file://" + repo.getAbsolutePath());
+            File clone = new File(dir, "clone");
+            db = new CountingLocalGitDB(url, getBranch(repo), clone, new File(dir, "temp"), null);
+            Assert.assertEquals(Arrays.asList("method_a", "method_b", "method_c"),
+                    db.takeParsedMethods());
+            Assert.assertEquals(Arrays.asList("app_a", "app_b"), db.takeParsedApps());
+            // everything parsed during index build is cached
+            for (String methodId : Arrays.asList("method_a", "method_b", "method_c"))
+                db.getMethodFullInfo(methodId, null);
+            db.getAppFullInfo("app_b");
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            Assert.assertTrue(db.takeParsedApps().isEmpty());
+            // one method is changed, one method and one app are removed
+            writeMethod(repo, "method_b", "Method B changed");
+            FileUtils.deleteDirectory(new File(repo, "methods/method_c"));
+            FileUtils.deleteDirectory(new File(repo, "apps/app_b"));
+            commit(repo, "commit2");
+            new JGitBackend().pull(clone, url);
+            db.refresh();
+            Assert.assertEquals(Arrays.asList("method_b"), db.takeParsedMethods());
+            Assert.assertTrue(db.takeParsedApps().isEmpty());
+            NarrativeCategoriesIndex index = db.getCategoriesIndex();
+            Assert.assertEquals(Arrays.asList(new MethodId("method_a"), new MethodId("method_b")),
+                    new ArrayList<MethodId>(index.getAllMethods().keySet()));
+            Assert.assertEquals("Method B changed",
+                    index.getAllMethods().get(new MethodId("method_b")).getName());
+            Assert.assertEquals(Collections.singleton("app_a"), index.getApps().keySet());
+            // entries of unchanged and re-parsed items are in new caches
+            Assert.assertEquals("method_a", db.getMethodFullInfo("method_a", null).getName());
+            Assert.assertEquals("Method B changed",
+                    db.getMethodFullInfo("method_b", null).getName());
+            db.getAppFullInfo("app_a");
+            db.getAppSpec("app_a");
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            Assert.assertTrue(db.takeParsedApps().isEmpty());
+            // removed items are not served from caches
+            try {
+                db.getMethodFullInfo("method_c", null);
+                Assert.fail("Removed method shouldn't be found");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals(Arrays.asList("method_c"), db.takeParsedMethods());
+            }
+            try {
+                db.getAppFullInfo("app_b");
+                Assert.fail("Removed app shouldn't be found");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals(Arrays.asList("app_b"), db.takeParsedApps());
+            }
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void listingsKeyedByTag() throws Exception {
+        File dir = Files.createTempDirectory("local_git_db_test").toFile();
+        CountingLocalGitDB db = null;
+        try {
+            File repo = createSpecRepo(dir, Arrays.asList("method_a"), Arrays.asList("app_a"));
+            db = new CountingLocalGitDB(new URL("file://" + repo.getAbsolutePath()),
+                    getBranch(repo), new File(dir, "clone"), new File(dir, "temp"), null);
+            Assert.assertSame(db.listApps(), db.listApps());
+            Assert.assertEquals("app_a", db.listApps().getValue().get(0).getId());
+            Assert.assertEquals(db.getCatalogVersion(), db.listApps().getCatalogVersion());
+            // default tag given by name and by null is the same listing
+            Assert.assertSame(db.listCategories(null, true, true, true),
+                    db.listCategories("release", true, true, true));
+            Assert.assertSame(db.listMethods(null), db.listMethods("release"));
+            Assert.assertNotSame(db.listMethods("release"), db.listMethods("dev"));
+            // listings of commit hashes are rendered per call and not kept
+            String hash = "0123456789abcdef0123456789abcdef01234567";
+            Assert.assertNotSame(db.listMethods(hash), db.listMethods(hash));
+            Assert.assertNotSame(db.listCategories(hash, true, false, false),
+                    db.listCategories(hash, true, false, false));
+            Assert.assertEquals(Arrays.asList("method_a"), toIds(db.listMethods(hash).getValue()));
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void refreshModule() throws Exception {
+        File dir = Files.createTempDirectory("local_git_db_test").toFile();
+        CountingLocalGitDB db = null;
+        try {
+            File repo = createSpecRepo(dir, Arrays.asList("method_a"),
+                    Collections.<String>emptyList());
+            FakeDynamicRepos dynamicRepos = new FakeDynamicRepos();
+            dynamicRepos.addModule(createModule(dir, "ModuleA", "a1"), 1L, RepoTag.dev);
+            dynamicRepos.addModule(createModule(dir, "ModuleB", "b1"), 2L, RepoTag.dev,
+                    RepoTag.beta);
+            db = new CountingLocalGitDB(new URL("file://" + repo.getAbsolutePath()),
+                    getBranch(repo), new File(dir, "clone"), new File(dir, "temp"), dynamicRepos);
+            Assert.assertEquals(Arrays.asList("ModuleA/a1/dev", "ModuleB/b1/beta",
+                    "ModuleB/b1/dev", "method_a"), db.takeParsedMethods());
+            Assert.assertEquals(Arrays.asList("ModuleA/a1/dev", "ModuleB/b1/beta",
+                    "ModuleB/b1/dev", "method_a"), getFullInfoIds(db));
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            // push replaces only one tag of one module
+            dynamicRepos.queriedModules.clear();
+            db.pushRepoToTag("ModuleA", "beta", "user1");
+            Assert.assertEquals(Collections.singleton("ModuleA"), dynamicRepos.queriedModules);
+            Assert.assertEquals(Arrays.asList("ModuleA/a1/beta"), db.takeParsedMethods());
+            NarrativeCategoriesIndex index = db.getCategoriesIndex();
+            Assert.assertEquals(Arrays.asList("ModuleA/a1/beta", "ModuleA/a1/dev",
+                    "ModuleB/b1/beta", "ModuleB/b1/dev"), toStrings(index.getDynamicRepoMethods()));
+            Assert.assertEquals(Arrays.asList("ModuleA/beta", "ModuleA/dev", "ModuleB/beta",
+                    "ModuleB/dev"), new ArrayList<String>(index.getDynamicRepoVersions().keySet()));
+            Assert.assertEquals(Arrays.asList("ModuleA/a1/beta", "ModuleA/a1/dev",
+                    "ModuleB/b1/beta", "ModuleB/b1/dev", "method_a"), getFullInfoIds(db));
+            // other modules, other tags and spec repo methods stay cached
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            // disabled module is removed with all its tags
+            dynamicRepos.queriedModules.clear();
+            db.setRepoState("user1", "ModuleA", "disabled");
+            Assert.assertFalse(dynamicRepos.queriedModules.contains("ModuleB"));
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            index = db.getCategoriesIndex();
+            Assert.assertEquals(Arrays.asList("ModuleB/b1/beta", "ModuleB/b1/dev"),
+                    toStrings(index.getDynamicRepoMethods()));
+            Assert.assertEquals(Arrays.asList("ModuleB/beta", "ModuleB/dev"),
+                    new ArrayList<String>(index.getDynamicRepoVersions().keySet()));
+            Assert.assertEquals(Arrays.asList("ModuleB/b1/beta", "ModuleB/b1/dev", "method_a"),
+                    getFullInfoIds(db));
+            Assert.assertTrue(db.takeParsedMethods().isEmpty());
+            try {
+                db.getMethodFullInfo("ModuleA/a1", "dev");
+                Assert.fail("Method of disabled module shouldn't be found");
+            } catch (NarrativeMethodStoreException ex) {
+                // it's not served from cache
+                Assert.assertEquals(Arrays.asList("ModuleA/a1/dev"), db.takeParsedMethods());
+            }
+        } finally {
+            if (db != null)
+                db.stopRefreshingThread();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * @return ids of all methods in the index with tags, full info of each one is requested
+     */
+    private static List<String> getFullInfoIds(LocalGitDB db) throws Exception {
+        List<String> ret = new ArrayList<String>();
+        for (MethodId mId : db.getCategoriesIndex().getAllMethods().keySet()) {
+            db.getMethodFullInfo(mId.getExternalId(),
+                    mId.isDynamic() ? mId.getTag().name() : null);
+            ret.add(mId.toString());
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private static List<String> toIds(List<MethodBriefInfo> methods) {
+        List<String> ret = new ArrayList<String>();
+        for (MethodBriefInfo method : methods)
+            ret.add(method.getId());
+        return ret;
+    }
+
+    private static List<String> toStrings(Iterable<MethodId> methodIds) {
+        List<String> ret = new ArrayList<String>();
+        for (MethodId mId : methodIds)
+            ret.add(mId.toString());
+        return ret;
+    }
+
+    private static File createSpecRepo(File dir, List<String> methodIds, List<String> appIds)
+            throws Exception {
+        File repo = new File(dir, "specs");
+        GitUtils.gitCommand("git init --quiet " + repo.getAbsolutePath(), "init", dir, null);
+        FileUtils.writeStringToFile(new File(repo, "categories/active/spec.json"),
+                "{\"name\": \"Active\", \"ver\": \"1.0.0\", \"tooltip\": \"Active\", " +
+                "\"parent\": []}");
+        for (String methodId : methodIds)
+            writeMethod(repo, methodId, methodId);
+        for (String appId : appIds)
+            writeApp(repo, appId);
+        commit(repo, "commit1");
+        return repo;
+    }
+
+    private static String getBranch(File repo) throws Exception {
+        return GitUtils.gitCommand("git rev-parse --abbrev-ref HEAD", "rev-parse",
+                repo, null).trim();
+    }
+
+    private static RepoProvider createModule(File dir, String moduleName, String methodId)
+            throws Exception {
+        File moduleDir = new File(dir, moduleName);
+        FileUtils.writeStringToFile(new File(moduleDir, "kbase.yml"),
+                "module-name: " + moduleName + "\nowners: [user1]\n");
+        writeMethod(new File(moduleDir, "ui/narrative"), methodId, methodId);
+        return new FileRepoProvider(moduleDir);
+    }
+
+    private static void writeMethod(File repo, String methodId, String name) throws Exception {
+        File methodDir = new File(repo, "methods/" + methodId);
+        FileUtils.copyFile(new File(TEST_METHOD_DIR, "spec.json"),
+                new File(methodDir, "spec.json"));
+        String display = FileUtils.readFileToString(new File(TEST_METHOD_DIR, "display.yaml"));
+        FileUtils.writeStringToFile(new File(methodDir, "display.yaml"), display.replace(
+                "name     : Create heatmaps from cuffdiff out", "name     : " + name));
+    }
+
+    private static void writeApp(File repo, String appId) throws Exception {
+        File appDir = new File(repo, "apps/" + appId);
+        FileUtils.writeStringToFile(new File(appDir, "spec.json"), "{\"ver\": \"1.0.0\", " +
+                "\"categories\": [\"active\"], \"contact\": \"test@test\", \"steps\": []}");
+        FileUtils.writeStringToFile(new File(appDir, "display.yaml"), "name: " + appId + "\n" +
+                "subtitle: Subtitle\ntooltip: Tooltip\ndescription: Description\n" +
+                "header: Header\nscreenshots: []\nsuggestions: {}\nstep-descriptions: {}\n");
+    }
+
+    private static String commit(File repo, String message) throws Exception {
+        GitUtils.gitCommand("git add -A", "add", repo, null);
+        GitUtils.gitCommand("git -c user.name=test -c user.email=test@test commit --quiet -m " +
+                message, "commit", repo, null);
+        return GitUtils.getCommitHash(repo, null);
+    }
+
+    /**
+     * Dynamic repos kept in memory, every version of module has the same details. Names of
+     * modules which tags, versions or details were requested are collected.
+     */
+    private static class FakeDynamicRepos implements DynamicRepoDB {
+        private final Map<String, RepoProvider> details = new TreeMap<String, RepoProvider>();
+        private final Map<String, Map<RepoTag, Long>> tagVersions =
+                new TreeMap<String, Map<RepoTag, Long>>();
+        private final Set<String> disabled = new HashSet<String>();
+        public final Set<String> queriedModules =
+                Collections.synchronizedSet(new TreeSet<String>());
+
+        public void addModule(RepoProvider repo, long version, RepoTag... tags)
+                throws NarrativeMethodStoreException {
+            String moduleName = repo.getModuleName();
+            details.put(moduleName, repo);
+            Map<RepoTag, Long> versions = new HashMap<RepoTag, Long>();
+            for (RepoTag tag : tags)
+                versions.put(tag, version);
+            tagVersions.put(moduleName, versions);
+        }
+
+        @Override
+        public synchronized boolean isRepoRegistered(String repoModuleName,
+                boolean withDisabled) {
+            return details.containsKey(repoModuleName) &&
+                    (withDisabled || !disabled.contains(repoModuleName));
+        }
+
+        @Override
+        public void registerRepo(String userId, RepoProvider repoDetails) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized Long getRepoLastVersion(String repoModuleName, RepoTag tag) {
+            queriedModules.add(repoModuleName);
+            return tagVersions.get(repoModuleName).get(tag);
+        }
+
+        @Override
+        public synchronized List<String> listRepoModuleNames() {
+            List<String> ret = new ArrayList<String>();
+            for (String moduleName : details.keySet())
+                if (!disabled.contains(moduleName))
+                    ret.add(moduleName);
+            return ret;
+        }
+
+        @Override
+        public synchronized RepoProvider getRepoDetails(String repoModuleName, RepoTag tag) {
+            queriedModules.add(repoModuleName);
+            if (disabled.contains(repoModuleName) ||
+                    !tagVersions.get(repoModuleName).containsKey(tag))
+                return null;
+            return details.get(repoModuleName);
+        }
+
+        @Override
+        public List<Long> listRepoVersions(String repoModuleName, RepoTag tag) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized RepoProvider getRepoDetailsHistory(String repoModuleName,
+                long version) {
+            queriedModules.add(repoModuleName);
+            return details.get(repoModuleName);
+        }
+
+        @Override
+        public synchronized Map<String, Map<RepoTag, Long>> listRepoTagVersions() {
+            Map<String, Map<RepoTag, Long>> ret = new TreeMap<String, Map<RepoTag, Long>>();
+            for (String moduleName : listRepoModuleNames()) {
+                queriedModules.add(moduleName);
+                ret.put(moduleName, new HashMap<RepoTag, Long>(tagVersions.get(moduleName)));
+            }
+            return ret;
+        }
+
+        @Override
+        public synchronized Map<String, Map<Long, RepoProvider>> getRepoDetailsHistory(
+                Map<String, Set<Long>> moduleToVersions) {
+            Map<String, Map<Long, RepoProvider>> ret =
+                    new TreeMap<String, Map<Long, RepoProvider>>();
+            for (Map.Entry<String, Set<Long>> entry : moduleToVersions.entrySet()) {
+                Map<Long, RepoProvider> versions = new TreeMap<Long, RepoProvider>();
+                for (Long version : entry.getValue())
+                    versions.put(version, getRepoDetailsHistory(entry.getKey(), version));
+                ret.put(entry.getKey(), versions);
+            }
+            return ret;
+        }
+
+        @Override
+        public synchronized void pushRepoToTag(String repoModuleName, RepoTag tag,
+                String userId) {
+            Map<RepoTag, Long> versions = tagVersions.get(repoModuleName);
+            versions.put(tag, versions.get(tag == RepoTag.release ? RepoTag.beta : RepoTag.dev));
+        }
+
+        @Override
+        public Set<String> listRepoOwners(String repoModuleName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isRepoOwner(String repoModuleName, String userId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized RepoState getRepoState(String repoModuleName) {
+            return disabled.contains(repoModuleName) ? RepoState.disabled : RepoState.ready;
+        }
+
+        @Override
+        public synchronized void setRepoState(String userId, String repoModuleName,
+                RepoState state) {
+            if (state == RepoState.disabled)
+                disabled.add(repoModuleName);
+            else
+                disabled.remove(repoModuleName);
+        }
+
+        @Override
+        public FileId saveFile(String moduleName, File file) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileId saveFile(String moduleName, FileProvider file) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<FileId> saveFiles(String moduleName, List<FileProvider> files) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FilePointer loadFile(FileId fileId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Records ids of methods and apps parsed from spec files or dynamic repo details.
+     */
+    private static class CountingLocalGitDB extends LocalGitDB {
+        // No initializers: parsing starts in super constructor before they would run
+        private List<String> parsedMethods;
+        private List<String> parsedApps;
+
+        public CountingLocalGitDB(URL gitRepoUrl, String branch, File localPath, File tempDir,
+                DynamicRepoDB dynamicRepos) throws NarrativeMethodStoreInitializationException {
+            super(gitRepoUrl, branch, localPath, 24 * 60, new CacheSettings(1000), dynamicRepos,
+                    tempDir, null, RepoTag.release, 1, false, new JGitBackend());
+        }
+
+        @Override
+        protected NarrativeMethodData loadMethodDataUncached(MethodId methodId,
+                RepoProvider taggedRepo, NarrativeCategoriesIndex narCatIndex)
+                throws NarrativeMethodStoreException {
+            synchronized (this) {
+                if (parsedMethods == null)
+                    parsedMethods = new ArrayList<String>();
+                parsedMethods.add(methodId.toString());
+            }
+            return super.loadMethodDataUncached(methodId, taggedRepo, narCatIndex);
+        }
+
+        @Override
+        protected NarrativeAppData loadAppDataUncached(String appId)
+                throws NarrativeMethodStoreException {
+            synchronized (this) {
+                if (parsedApps == null)
+                    parsedApps = new ArrayList<String>();
+                parsedApps.add(appId);
+            }
+            return super.loadAppDataUncached(appId);
+        }
+
+        public synchronized List<String> takeParsedMethods() {
+            List<String> ret = parsedMethods == null ? new ArrayList<String>() : parsedMethods;
+            parsedMethods = null;
+            Collections.sort(ret);
+            return ret;
+        }
+
+        public synchronized List<String> takeParsedApps() {
+            List<String> ret = parsedApps == null ? new ArrayList<String>() : parsedApps;
+            parsedApps = null;
+            Collections.sort(ret);
+            return ret;
+        }
+    }
+}
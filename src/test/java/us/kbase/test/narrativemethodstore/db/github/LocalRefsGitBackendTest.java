@@ -0,0 +1,58 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.db.github.CommandLineGitBackend;
+import us.kbase.narrativemethodstore.db.github.GitUtils;
+import us.kbase.narrativemethodstore.db.github.LocalRefsGitBackend;
+
+public class LocalRefsGitBackendTest {
+
+    @Test
+    public void resolveRefs() throws Exception {
+        File dir = Files.createTempDirectory("local_refs_git_backend_test").toFile();
+        try {
+            File repo = new File(dir, "repo");
+            GitUtils.gitCommand("git init --quiet " + repo.getAbsolutePath(), "init", dir, null);
+            FileUtils.writeStringToFile(new File(repo, "file.txt"), "1");
+            commit(repo, "commit1");
+            File clone = new File(dir, "clone");
+            GitUtils.gitCommand("git clone --quiet " + repo.getAbsolutePath() + " " +
+                    clone.getAbsolutePath(), "clone", dir, null);
+            URL url = new URL("file://" + repo.getAbsolutePath());
+            CommandLineGitBackend cmd = new CommandLineGitBackend();
+            LocalRefsGitBackend refs = new LocalRefsGitBackend();
+            // fresh clone keeps refs in packed-refs
+            Assert.assertEquals(cmd.getHeadCommitHash(clone, url),
+                    LocalRefsGitBackend.resolveRef(new File(clone, ".git"), "HEAD"));
+            Assert.assertNull(refs.getFetchHeadCommitHash(clone, url));
+            FileUtils.writeStringToFile(new File(repo, "file.txt"), "2");
+            String commit2 = commit(repo, "commit2");
+            String branch = GitUtils.gitCommand("git rev-parse --abbrev-ref HEAD", "rev-parse",
+                    repo, url).trim();
+            cmd.fetch(clone, url, branch);
+            Assert.assertEquals(commit2, refs.getFetchHeadCommitHash(clone, url));
+            cmd.mergeFetchHead(clone, url);
+            // loose ref after merge
+            Assert.assertEquals(commit2, refs.getHeadCommitHash(clone, url));
+            GitUtils.gitCommand("git pack-refs --all", "pack-refs", clone, url);
+            Assert.assertEquals(commit2, refs.getHeadCommitHash(clone, url));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static String commit(File repo, String message) throws Exception {
+        GitUtils.gitCommand("git add -A", "add", repo, null);
+        GitUtils.gitCommand("git -c user.name=test -c user.email=test@test commit --quiet -m " +
+                message, "commit", repo, null);
+        return GitUtils.getCommitHash(repo, null);
+    }
+}
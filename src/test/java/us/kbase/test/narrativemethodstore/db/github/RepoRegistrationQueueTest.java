@@ -0,0 +1,153 @@
+package us.kbase.test.narrativemethodstore.db.github;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.RegistrationStatus;
+import us.kbase.narrativemethodstore.db.github.RepoRegistrationQueue;
+import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
+
+public class RepoRegistrationQueueTest {
+
+    @Test
+    public void asyncRegistration() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RepoRegistrationQueue queue = new RepoRegistrationQueue(
+                new RepoRegistrationQueue.Registrar() {
+            @Override
+            public long registerRepo(String userId, String url, String commitHash,
+                    RepoRegistrationQueue.Registration registration)
+                    throws NarrativeMethodStoreException {
+                registration.setModuleName("Module1");
+                registration.setState(RepoRegistrationQueue.STATE_PARSING);
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new NarrativeMethodStoreException(ex.getMessage(), ex);
+                }
+                return 123L;
+            }
+        }, 1, 2);
+        try {
+            String id = queue.submit("user1", "https://github.com/kbase/module1", null);
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            // the same repo and commit is not registered twice by the same user
+            Assert.assertEquals(id, queue.submit("user1", "https://github.com/kbase/module1", null));
+            // other user's registration runs separately with their own permissions
+            String otherId = queue.submit("user2", "https://github.com/kbase/module1", null);
+            Assert.assertNotEquals(id, otherId);
+            Assert.assertEquals("user2", queue.getStatus(otherId).getUserId());
+            RegistrationStatus st = queue.getStatus(id);
+            Assert.assertEquals(RepoRegistrationQueue.STATE_PARSING, st.getState());
+            Assert.assertEquals("Module1", st.getModuleName());
+            Assert.assertEquals("user1", st.getUserId());
+            Assert.assertNotNull(st.getStartTime());
+            Assert.assertNull(st.getFinishTime());
+            // one is waiting in queue, next one is rejected
+            String id2 = queue.submit("user1", "https://github.com/kbase/module2", null);
+            Assert.assertEquals(RepoRegistrationQueue.STATE_QUEUED, queue.getStatus(id2).getState());
+            try {
+                queue.submit("user1", "https://github.com/kbase/module3", null);
+                Assert.fail("Registration should be rejected");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith(
+                        "Too many repository registrations are queued"));
+            }
+            // synchronous registrations are limited by the same queue
+            try {
+                queue.run("user1", "https://github.com/kbase/module4", null);
+                Assert.fail("Registration should be rejected");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith(
+                        "Too many repository registrations are queued"));
+            }
+            release.countDown();
+            st = waitForFinish(queue, id2);
+            Assert.assertEquals(RepoRegistrationQueue.STATE_DONE, st.getState());
+            Assert.assertEquals(123L, (long)st.getVersion());
+            Assert.assertEquals(RepoRegistrationQueue.STATE_DONE, queue.getStatus(id).getState());
+            Assert.assertEquals(RepoRegistrationQueue.STATE_DONE,
+                    waitForFinish(queue, otherId).getState());
+            Assert.assertEquals(0, queue.getActiveCount());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void syncRegistration() throws Exception {
+        final String[] threadName = new String[1];
+        RepoRegistrationQueue queue = new RepoRegistrationQueue(
+                new RepoRegistrationQueue.Registrar() {
+            @Override
+            public long registerRepo(String userId, String url, String commitHash,
+                    RepoRegistrationQueue.Registration registration)
+                    throws NarrativeMethodStoreException {
+                threadName[0] = Thread.currentThread().getName();
+                return 5L;
+            }
+        }, 1, 1);
+        try {
+            String id = queue.run("user1", "https://github.com/kbase/module1", null);
+            // caller's thread only waits, registration runs in the pool
+            Assert.assertTrue(threadName[0], threadName[0].startsWith("nms-repo-registration-"));
+            RegistrationStatus st = queue.getStatus(id);
+            Assert.assertEquals(RepoRegistrationQueue.STATE_DONE, st.getState());
+            Assert.assertEquals(5L, (long)st.getVersion());
+            Assert.assertEquals(0, queue.getActiveCount());
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void failedRegistration() throws Exception {
+        RepoRegistrationQueue queue = new RepoRegistrationQueue(
+                new RepoRegistrationQueue.Registrar() {
+            @Override
+            public long registerRepo(String userId, String url, String commitHash,
+                    RepoRegistrationQueue.Registration registration)
+                    throws NarrativeMethodStoreException {
+                throw new NarrativeMethodStoreException("Error cloning " + url);
+            }
+        }, 1, 1);
+        try {
+            String id = queue.submit("user1", "https://github.com/kbase/module1", "abc");
+            RegistrationStatus st = waitForFinish(queue, id);
+            Assert.assertEquals(RepoRegistrationQueue.STATE_ERROR, st.getState());
+            Assert.assertEquals("Error cloning https://github.com/kbase/module1", st.getError());
+            Assert.assertEquals("abc", st.getGitCommitHash());
+            try {
+                queue.run("user1", "https://github.com/kbase/module1", null);
+                Assert.fail("Registration should fail");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals("Error cloning https://github.com/kbase/module1",
+                        ex.getMessage());
+            }
+            try {
+                queue.getStatus("unknown");
+                Assert.fail("Status should not be found");
+            } catch (NarrativeMethodStoreException ex) {
+                Assert.assertEquals("Registration unknown is not found", ex.getMessage());
+            }
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    private static RegistrationStatus waitForFinish(RepoRegistrationQueue queue, String id)
+            throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            RegistrationStatus st = queue.getStatus(id);
+            if (st.getFinishTime() != null)
+                return st;
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Registration " + id + " is not finished");
+    }
+}
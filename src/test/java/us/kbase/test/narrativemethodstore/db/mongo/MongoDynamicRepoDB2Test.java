@@ -9,15 +9,24 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.bson.types.ObjectId;
 import org.ini4j.Ini;
 import org.ini4j.Profile.Section;
 import org.junit.AfterClass;
@@ -27,13 +36,16 @@ import org.junit.Test;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
+import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 
 import us.kbase.narrativemethodstore.db.DynamicRepoDB.FileProvider;
 import us.kbase.narrativemethodstore.db.DynamicRepoDB.RepoState;
 import us.kbase.narrativemethodstore.db.FileId;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider;
+import us.kbase.narrativemethodstore.db.JsonRepoProvider.MethodData;
 import us.kbase.narrativemethodstore.db.JsonRepoProvider.RepoData;
+import us.kbase.narrativemethodstore.db.RepoProvider;
 import us.kbase.narrativemethodstore.db.github.RepoTag;
 import us.kbase.narrativemethodstore.db.mongo.MongoDynamicRepoDB;
 import us.kbase.narrativemethodstore.exceptions.NarrativeMethodStoreException;
@@ -236,6 +248,327 @@ public class MongoDynamicRepoDB2Test {
         }
     }
 
+    @Test
+    public void saveAndLoadBinaryFile() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final byte[] data = new byte[3 * 256 * 1024 + 17];  // a few GridFS chunks
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        final FileProvider fp = mock(FileProvider.class);
+        when(fp.getName()).thenReturn("image.png");
+        when(fp.length()).thenReturn((long) data.length);
+        when(fp.openStream()).thenReturn(new ByteArrayInputStream(data),
+                new ByteArrayInputStream(data));
+        final FileId fid = db.saveFile("somerepo", fp);
+        
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        db.loadFile(fid).saveToStream(baos);
+        assertThat("incorrect data", Arrays.equals(baos.toByteArray(), data), is(true));
+        
+        final DBObject rec = getFileRecord(fid);
+        assertThat("incorrect hex data", rec.get("hex_data"), nullValue());
+        assertThat("incorrect blob id", rec.get("blob_id"), instanceOf(ObjectId.class));
+    }
+    
+    @Test
+    public void saveFileDedup() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final FileId fid1 = db.saveFile("somerepo", getFileProvider("f1.txt", "contents"));
+        final FileId fid2 = db.saveFile("somerepo", getFileProvider("f1.txt", "contents"));
+        final FileId fid3 = db.saveFile("somerepo2", getFileProvider("f2.txt", "contents"));
+        final FileId fid4 = db.saveFile("somerepo", getFileProvider("f1.txt", "contents2"));
+        
+        assertThat("incorrect file id", fid2.getId(), is(fid1.getId()));
+        assertThat("incorrect file id", fid3.getId().equals(fid1.getId()), is(false));
+        assertThat("incorrect file id", fid4.getId().equals(fid1.getId()), is(false));
+        // the same content is stored once
+        assertThat("incorrect blob id", getFileRecord(fid3).get("blob_id"),
+                is(getFileRecord(fid1).get("blob_id")));
+        assertThat("incorrect blob id", getFileRecord(fid4).get("blob_id").equals(
+                getFileRecord(fid1).get("blob_id")), is(false));
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        final DBObject content = mdb.getCollection("repo_file_contents").findOne(
+                new BasicDBObject("sha256", getFileRecord(fid1).get("sha256")));
+        assertThat("incorrect ref count", content.get("ref_count"), is((Object) 2L));
+        
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        db.loadFile(fid3).saveToStream(baos);
+        assertThat("incorrect data", new String(baos.toByteArray()), is("contents"));
+        assertThat("incorrect name", db.loadFile(fid3).getName(), is("f2.txt"));
+    }
+    
+    @Test
+    public void saveFilesBatch() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final FileId saved = db.saveFile("somerepo", getFileProvider("f1.txt", "contents"));
+        final List<FileId> fids = db.saveFiles("somerepo", Arrays.asList(
+                getFileProvider("f2.txt", "contents2"),
+                getFileProvider("f1.txt", "contents"),
+                getFileProvider("f3.txt", "contents"),
+                getFileProvider("f2.txt", "contents2")));
+        
+        assertThat("incorrect size", fids.size(), is(4));
+        assertThat("incorrect file id", fids.get(1).getId(), is(saved.getId()));
+        assertThat("incorrect file id", fids.get(3).getId(), is(fids.get(0).getId()));
+        assertThat("incorrect file id", fids.get(0).getId().equals(fids.get(2).getId()),
+                is(false));
+        assertThat("incorrect file id", fids.get(2).getId().equals(saved.getId()), is(false));
+        assertThat("incorrect blob id", getFileRecord(fids.get(2)).get("blob_id"),
+                is(getFileRecord(saved).get("blob_id")));
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        assertThat("incorrect ref count", mdb.getCollection("repo_file_contents").findOne(
+                new BasicDBObject("sha256", getFileRecord(saved).get("sha256")))
+                .get("ref_count"), is((Object) 2L));
+        assertThat("incorrect ref count", mdb.getCollection("repo_file_contents").findOne(
+                new BasicDBObject("sha256", getFileRecord(fids.get(0)).get("sha256")))
+                .get("ref_count"), is((Object) 1L));
+        
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        db.loadFile(fids.get(0)).saveToStream(baos);
+        assertThat("incorrect data", new String(baos.toByteArray()), is("contents2"));
+        assertThat("incorrect name", db.loadFile(fids.get(2)).getName(), is("f3.txt"));
+    }
+    
+    @Test
+    public void saveFileConcurrently() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final int threads = 8;
+        final int filesPerThread = 20;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<List<FileId>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // mocks are stubbed in main thread, stubbing isn't thread safe
+            final List<FileProvider> fps = new ArrayList<>();
+            for (int i = 0; i < filesPerThread; i++) {
+                fps.add(getFileProvider("f" + t + "_" + i, "contents" + t + "_" + i));
+            }
+            futures.add(pool.submit(new Callable<List<FileId>>() {
+                @Override
+                public List<FileId> call() throws Exception {
+                    final List<FileId> ret = new ArrayList<>();
+                    for (final FileProvider fp: fps) {
+                        ret.add(db.saveFile("somerepo", fp));
+                    }
+                    return ret;
+                }
+            }));
+        }
+        final Set<String> ids = new HashSet<>();
+        for (final Future<List<FileId>> f: futures) {
+            long prevId = -1;
+            for (final FileId fid: f.get()) {
+                ids.add(fid.getId());
+                final long id = Long.parseLong(fid.getId());
+                assertThat("ids are not increasing", id > prevId, is(true));
+                prevId = id;
+                assertThat("incomplete record", getFileRecord(fid).get("blob_id"),
+                        instanceOf(ObjectId.class));
+            }
+        }
+        pool.shutdown();
+        assertThat("incorrect id count", ids.size(), is(threads * filesPerThread));
+    }
+    
+    @Test
+    public void saveFilesIdTaken() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        // ids of the next range are taken by records saved by older versions
+        mdb.getCollection("counters").insert(new BasicDBObject("_id", "file_id")
+                .append("value", 1000L));
+        mdb.getCollection("repo_files").insert(new BasicDBObject("file_id", "1002")
+                .append("module_name", "otherrepo")
+                .append("file_name", "old.txt"));
+        final List<FileId> fids = db.saveFiles("somerepo", Arrays.asList(
+                getFileProvider("f1.txt", "contents1"),
+                getFileProvider("f2.txt", "contents2")));
+        
+        assertThat("incorrect file id", fids.get(0).getId(), is("1003"));
+        assertThat("incorrect file id", fids.get(1).getId(), is("1004"));
+        assertThat("incorrect record", getFileRecord(new FileId("1001")), nullValue());
+        assertThat("incorrect record", getFileRecord(new FileId("1002")).get("module_name"),
+                is((Object) "otherrepo"));
+        assertThat("incorrect record count", mdb.getCollection("repo_files").count(
+                new BasicDBObject("module_name", "somerepo")), is(2L));
+        assertThat("incorrect ref count", mdb.getCollection("repo_file_contents").findOne(
+                new BasicDBObject("sha256", getFileRecord(fids.get(0)).get("sha256")))
+                .get("ref_count"), is((Object) 1L));
+    }
+    
+    @Test
+    public void saveFilesFailReleasesContents() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final FileId saved = db.saveFile("somerepo", getFileProvider("f1.txt", "contents"));
+        final FileProvider broken = mock(FileProvider.class);
+        when(broken.getName()).thenReturn("f3.txt");
+        when(broken.length()).thenReturn(9L);
+        when(broken.openStream()).thenReturn(getBAIS("contents3"))
+            .thenThrow(new IllegalStateException("disk failure"));
+        try {
+            db.saveFiles("somerepo", Arrays.asList(
+                    getFileProvider("f2.txt", "contents"),
+                    getFileProvider("f4.txt", "contents4"),
+                    broken));
+            fail("expected exception");
+        } catch (NarrativeMethodStoreException ex) {
+            assertThat("incorrect exception", ex.getCause().getMessage(), is("disk failure"));
+        }
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        assertThat("incorrect ref count", mdb.getCollection("repo_file_contents").findOne(
+                new BasicDBObject("sha256", getFileRecord(saved).get("sha256")))
+                .get("ref_count"), is((Object) 1L));
+        for (final DBObject content: mdb.getCollection("repo_file_contents").find()) {
+            assertThat("incorrect ref count", content.get("ref_count"), is((Object)
+                    (content.get("sha256").equals(getFileRecord(saved).get("sha256")) ? 1L : 0L)));
+        }
+        assertThat("incorrect record count", mdb.getCollection("repo_files").count(), is(1L));
+    }
+    
+    private FileProvider getFileProvider(final String name, final String contents)
+            throws Exception {
+        final FileProvider fp = mock(FileProvider.class);
+        when(fp.getName()).thenReturn(name);
+        when(fp.length()).thenReturn((long) contents.length());
+        when(fp.openStream()).thenReturn(getBAIS(contents), getBAIS(contents));
+        return fp;
+    }
+    
+    @Test
+    public void loadHexFileAndMigrate() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        // records saved by older versions keep file content as hex string
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        mdb.getCollection("repo_files").insert(new BasicDBObject("file_id", "12345")
+                .append("module_name", "somerepo")
+                .append("file_name", "readme.md")
+                .append("length", 4L)
+                .append("md5", "whatever")
+                .append("hex_data", "00ff7f41"));
+        final FileId fid = new FileId("12345");
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            db.loadFile(fid).saveToStream(baos);
+            assertThat("incorrect data", Arrays.equals(baos.toByteArray(),
+                    new byte[] {0, (byte) 0xff, 0x7f, 0x41}), is(true));
+            final DBObject rec = getFileRecord(fid);
+            assertThat("incorrect hex data", rec.get("hex_data"), nullValue());
+            assertThat("incorrect blob id", rec.get("blob_id"), instanceOf(ObjectId.class));
+        }
+    }
+    
+    @Test
+    public void repoDetailsAndSmallFilesCached() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        registerRepo(db, "someModule");
+        final Long ver = db.getRepoLastVersion("someModule", null);
+        final RepoProvider details = db.getRepoDetails("someModule", RepoTag.dev);
+        
+        // details of the same version are shared, tag changes are seen right away
+        assertThat("incorrect details", db.getRepoDetailsHistory("someModule", ver) == details,
+                is(true));
+        db.pushRepoToTag("someModule", RepoTag.beta, "nmsadmin");
+        assertThat("incorrect details", db.getRepoDetails("someModule", RepoTag.beta) == details,
+                is(true));
+        Thread.sleep(2); // DB uses millisecond timestamp as the version...
+        registerRepo(db, "someModule");
+        assertThat("incorrect details", db.getRepoDetails("someModule", RepoTag.dev) == details,
+                is(false));
+        db.setRepoState("nmsadmin", "someModule", RepoState.disabled);
+        assertThat("incorrect state", db.getRepoState("someModule"), is(RepoState.disabled));
+        assertThat("incorrect repos", db.listRepoModuleNames(), is(Collections.<String>emptyList()));
+        
+        // content of small file is read from DB once
+        final FileId fid = db.saveFile("somerepo", getFileProvider("f1.txt", "contents"));
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        db.loadFile(fid).saveToStream(baos);
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        mdb.getCollection("repo_files").remove(new BasicDBObject("file_id", fid.getId()));
+        final ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+        db.loadFile(fid).saveToStream(baos2);
+        assertThat("incorrect data", new String(baos2.toByteArray()), is("contents"));
+        assertThat("incorrect name", db.loadFile(fid).getName(), is("f1.txt"));
+    }
+    
+    @Test
+    public void bulkRepoDetails() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        registerRepo(db, "module1", "aaaaaaaaaabbbbbbbbbbccccccccccdddddddddd");
+        Thread.sleep(2); // DB uses millisecond timestamp as the version...
+        registerRepo(db, "module2", "bbbbbbbbbbccccccccccddddddddddeeeeeeeeee");
+        registerRepo(db, "module3");
+        db.pushRepoToTag("module1", RepoTag.beta, "nmsadmin");
+        db.setRepoState("nmsadmin", "module3", RepoState.disabled);
+        final Long ver1 = db.getRepoLastVersion("module1", null);
+        final Long ver2 = db.getRepoLastVersion("module2", null);
+        
+        final Map<String, Map<RepoTag, Long>> tagVersions = db.listRepoTagVersions();
+        assertThat("incorrect modules", tagVersions.keySet(), is(set("module1", "module2")));
+        final Map<RepoTag, Long> exp1 = new HashMap<RepoTag, Long>();
+        exp1.put(RepoTag.dev, ver1);
+        exp1.put(RepoTag.beta, ver1);
+        assertThat("incorrect versions", tagVersions.get("module1"), is(exp1));
+        assertThat("incorrect versions", tagVersions.get("module2"),
+                is(Collections.singletonMap(RepoTag.dev, ver2)));
+        
+        // version of another module is not found
+        final Map<String, Set<Long>> req = new HashMap<String, Set<Long>>();
+        req.put("module1", set(ver1, ver2));
+        req.put("module2", set(ver2));
+        final Map<String, Map<Long, RepoProvider>> details = db.getRepoDetailsHistory(req);
+        assertThat("incorrect versions", details.get("module1").keySet(), is(set(ver1)));
+        assertThat("incorrect commit", details.get("module1").get(ver1).getGitCommitHash(),
+                is("aaaaaaaaaabbbbbbbbbbccccccccccdddddddddd"));
+        assertThat("incorrect commit", details.get("module2").get(ver2).getGitCommitHash(),
+                is("bbbbbbbbbbccccccccccddddddddddeeeeeeeeee"));
+        // loaded details are shared with single version requests
+        assertThat("incorrect details", db.getRepoDetailsHistory("module2", ver2) ==
+                details.get("module2").get(ver2), is(true));
+    }
+    
+    @Test
+    public void prefetchMethodFiles() throws Exception {
+        final MongoDynamicRepoDB db = getDB(Arrays.asList("nmsadmin"));
+        final FileId readme = db.saveFile("someModule", getFileProvider("README.md", "readme"));
+        final FileId spec = db.saveFile("someModule", getFileProvider("spec.json", "{}"));
+        final FileId display = db.saveFile("someModule", getFileProvider("display.yaml", "x"));
+        final MethodData md = new MethodData();
+        md.specFile = spec.getId();
+        md.displayFile = display.getId();
+        md.imageFileRefs = Collections.emptyList();
+        final RepoData repoData = new RepoData();
+        repoData.moduleName = "someModule";
+        repoData.readmeFile = readme.getId();
+        repoData.owners = Arrays.asList("o1");
+        repoData.uiNarrativeMethodIds = Arrays.asList("m1");
+        repoData.uiNarrativeMethods = Collections.singletonMap("m1", md);
+        db.registerRepo("nmsadmin", new JsonRepoProvider(db, repoData));
+        
+        // spec and display are loaded together with repo details, readme is not
+        final MongoDynamicRepoDB db2 = getDB(Arrays.asList("nmsadmin"));
+        final RepoProvider details = db2.getRepoDetails("someModule", RepoTag.dev);
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        mdb.getCollection("repo_files").remove(new BasicDBObject());
+        final ByteArrayOutputStream specData = new ByteArrayOutputStream();
+        details.getUINarrativeMethodSpec("m1").saveToStream(specData);
+        assertThat("incorrect spec", new String(specData.toByteArray()), is("{}"));
+        final ByteArrayOutputStream displayData = new ByteArrayOutputStream();
+        details.getUINarrativeMethodDisplay("m1").saveToStream(displayData);
+        assertThat("incorrect display", new String(displayData.toByteArray()), is("x"));
+        try {
+            details.getReadmeFile();
+            fail("expected exception");
+        } catch (NarrativeMethodStoreException e) {
+            // record of readme is removed
+        }
+    }
+    
+    private DBObject getFileRecord(final FileId fid) {
+        final DB mdb = new MongoClient("localhost:" + MONGO.getMongoPort()).getDB(DB_NAME);
+        return mdb.getCollection("repo_files").findOne(
+                new BasicDBObject("file_id", fid.getId()));
+    }
+
     private void registerRepo(
             final MongoDynamicRepoDB db,
             final String repoName)
@@ -0,0 +1,42 @@
+package us.kbase.test.narrativemethodstore.metrics;
+
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.metrics.LatencyStats;
+import us.kbase.narrativemethodstore.metrics.Metrics;
+
+public class LatencyStatsTest {
+
+    @Test
+    public void histogram() throws Exception {
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < 100; i++)
+            stats.record((i < 98 ? 3 : 700) * 1000000L, i == 5);
+        stats.recordPayload(10, 2000);
+        Map<String, Long> map = stats.toMap();
+        Assert.assertEquals(100L, (long)map.get("count"));
+        Assert.assertEquals(1L, (long)map.get("errors"));
+        Assert.assertEquals(700L, (long)map.get("max_ms"));
+        Assert.assertEquals(5L, (long)map.get("p50_ms"));
+        Assert.assertEquals(1000L, (long)map.get("p99_ms"));
+        Assert.assertEquals(98L, (long)map.get("lt_5ms"));
+        Assert.assertEquals(2000L, (long)map.get("response_bytes"));
+    }
+
+    @Test
+    public void groups() throws Exception {
+        Metrics.reset();
+        Metrics.record(Metrics.GROUP_GIT, "fetch", System.nanoTime(), false);
+        Metrics.record(Metrics.GROUP_GIT, "fetch", System.nanoTime(), true);
+        Metrics.record(Metrics.GROUP_MONGO, "getRepoDetails", System.nanoTime(), false);
+        Assert.assertEquals(1, Metrics.getGroup(Metrics.GROUP_GIT).size());
+        Assert.assertEquals(2L, (long)Metrics.getGroup(Metrics.GROUP_GIT).get("fetch").get("count"));
+        Assert.assertEquals(1L, (long)Metrics.getGroup(Metrics.GROUP_GIT).get("fetch").get("errors"));
+        Assert.assertTrue(Metrics.getGroup(Metrics.GROUP_RPC).isEmpty());
+        Metrics.reset();
+        Assert.assertTrue(Metrics.getGroup(Metrics.GROUP_GIT).isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package us.kbase.test.narrativemethodstore.metrics;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import us.kbase.narrativemethodstore.RpcMetrics;
+import us.kbase.narrativemethodstore.metrics.Metrics;
+
+public class RpcMetricsTest {
+
+    private static HttpServletRequest getRequest(byte[] body) throws Exception {
+        final ByteArrayInputStream is = new ByteArrayInputStream(body);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() {
+                return is.read();
+            }
+        });
+        when(request.getContentLength()).thenReturn(body.length);
+        return request;
+    }
+
+    @Test
+    public void smallBodyIsBuffered() throws Exception {
+        Metrics.reset();
+        byte[] body = "{\"method\":\"NarrativeMethodStore.ver\",\"params\":[]}".getBytes("utf-8");
+        RpcMetrics.Call call = RpcMetrics.start(getRequest(body),
+                mock(HttpServletResponse.class));
+        Assert.assertArrayEquals(body, call.getBody());
+        // buffered body is read again by servlet
+        Assert.assertArrayEquals(body, IOUtils.toByteArray(call.getRequest().getInputStream()));
+        Assert.assertArrayEquals(body, IOUtils.toByteArray(call.getRequest().getInputStream()));
+        call.finish();
+        Assert.assertEquals((long)body.length, (long)Metrics.getGroup(Metrics.GROUP_RPC)
+                .get("ver").get("request_bytes"));
+    }
+
+    @Test
+    public void largeBodyIsStreamed() throws Exception {
+        Metrics.reset();
+        byte[] head = "{\"method\":\"NarrativeMethodStore.ver\",\"params\":[\"".getBytes("utf-8");
+        byte[] body = new byte[3 * RpcMetrics.MAX_BUFFERED_BODY];
+        Arrays.fill(body, (byte)'a');
+        System.arraycopy(head, 0, body, 0, head.length);
+        RpcMetrics.Call call = RpcMetrics.start(getRequest(body),
+                mock(HttpServletResponse.class));
+        Assert.assertNull(call.getBody());
+        Assert.assertEquals(body.length, call.getRequest().getContentLength());
+        Assert.assertArrayEquals(body, IOUtils.toByteArray(call.getRequest().getInputStream()));
+        call.finish();
+        // method name is found in buffered beginning of the body
+        Assert.assertEquals((long)body.length, (long)Metrics.getGroup(Metrics.GROUP_RPC)
+                .get("ver").get("request_bytes"));
+    }
+}